@@ -0,0 +1,63 @@
+/**
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * You may not use this file except in compliance with the License. A copy of the License is located the "LICENSE.txt"
+ * file accompanying this source. This file is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.amazon.alexa.avs;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import javax.sound.sampled.AudioFormat;
+
+/**
+ * Cost of converting one 10 ms frame of native microphone audio to the 16 kHz mono format sent to
+ * AVS. Run it on the target device to see the per frame CPU cost of capturing in a format other
+ * than 16 kHz mono.
+ */
+@State(Scope.Thread)
+public class AudioFormatConverterBenchmark {
+    private static final int FRAMES = 100;
+    private static final int FRAMES_PER_SECOND = 100;
+
+    @Param({ "48000", "44100", "16000" })
+    public int sampleRate;
+
+    @Param({ "1", "2" })
+    public int channels;
+
+    private byte[] pcm;
+    private byte[] output;
+    private int frameSize;
+    private AudioFormatConverter converter;
+    private int next;
+
+    @Setup
+    public void setup() {
+        AudioFormat source = new AudioFormat(sampleRate, 16, channels, true, false);
+        converter = new AudioFormatConverter(source, AudioInputFormat.LPCM.getAudioFormat());
+        frameSize = (sampleRate / FRAMES_PER_SECOND) * source.getFrameSize();
+        // Duplicate the mono speech into every channel
+        byte[] mono = BenchmarkPayloads.speechLikePcm((FRAMES * frameSize) / source.getFrameSize());
+        pcm = new byte[FRAMES * frameSize];
+        for (int i = 0; i < pcm.length; i += 2) {
+            int sample = ((i / 2) / channels) * 2;
+            pcm[i] = mono[sample];
+            pcm[i + 1] = mono[sample + 1];
+        }
+        output = new byte[converter.getMaxOutputBytes(frameSize)];
+    }
+
+    @Benchmark
+    public int convertFrame() {
+        int converted = converter.convert(pcm, next * frameSize, frameSize, output, 0);
+        next = (next + 1) % FRAMES;
+        return converted;
+    }
+}
@@ -0,0 +1,45 @@
+/**
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * You may not use this file except in compliance with the License. A copy of the License is located the "LICENSE.txt"
+ * file accompanying this source. This file is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.amazon.alexa.avs;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Cost of measuring the level of one 10 ms chunk of microphone audio.
+ */
+@State(Scope.Thread)
+public class AudioLevelMeterBenchmark {
+    private static final int CHUNKS = 100;
+
+    @Param({ "1", "2", "4" })
+    public int decimation;
+
+    private byte[] pcm;
+    private int chunkSize;
+    private AudioLevelMeter meter;
+    private int next;
+
+    @Setup
+    public void setup() {
+        chunkSize = AudioInputFormat.LPCM.getChunkSizeBytes();
+        pcm = BenchmarkPayloads.speechLikePcm((CHUNKS * chunkSize) / 2);
+        meter = new AudioLevelMeter(decimation, AudioLevelMeter.DEFAULT_SMOOTHING_WINDOW);
+    }
+
+    @Benchmark
+    public int measureChunk() {
+        meter.measure(pcm, next * chunkSize, chunkSize);
+        next = (next + 1) % CHUNKS;
+        return meter.getSmoothedRms();
+    }
+}
@@ -0,0 +1,69 @@
+/**
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * You may not use this file except in compliance with the License. A copy of the License is located the "LICENSE.txt"
+ * file accompanying this source. This file is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.amazon.alexa.avs;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Cost of passing one 10 ms chunk of microphone audio through {@link AudioStateOutputStream},
+ * which computes the level shown by the audio visualizer for every chunk. The variant without an
+ * RMS listener is the baseline cost of the ring buffer itself.
+ */
+@State(Scope.Thread)
+public class AudioStateOutputStreamBenchmark {
+    private static final int CHUNKS = 100;
+
+    @Param({ "true", "false" })
+    public boolean rmsListener;
+
+    private byte[][] chunks;
+    private byte[] drain;
+    private AudioRingBuffer ringBuffer;
+    private InputStream input;
+    private AudioStateOutputStream output;
+    private int next;
+
+    @Setup
+    public void setup(final Blackhole blackhole) throws IOException {
+        int chunkSize = AudioInputFormat.LPCM.getChunkSizeBytes();
+        byte[] pcm = BenchmarkPayloads.speechLikePcm((CHUNKS * chunkSize) / 2);
+        chunks = new byte[CHUNKS][chunkSize];
+        for (int i = 0; i < CHUNKS; i++) {
+            System.arraycopy(pcm, i * chunkSize, chunks[i], 0, chunkSize);
+        }
+        drain = new byte[chunkSize];
+        ringBuffer = new AudioRingBuffer(chunkSize, false);
+        input = ringBuffer.getInputStream();
+        output = new AudioStateOutputStream(ringBuffer, null,
+                rmsListener ? rms -> blackhole.consume(rms) : null);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        output.close();
+        input.close();
+    }
+
+    @Benchmark
+    public int writeChunk() throws IOException {
+        byte[] chunk = chunks[next];
+        next = (next + 1) % CHUNKS;
+        output.write(chunk, 0, chunk.length);
+        return input.read(drain);
+    }
+}
@@ -0,0 +1,129 @@
+/**
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * You may not use this file except in compliance with the License. A copy of the License is located the "LICENSE.txt"
+ * file accompanying this source. This file is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.amazon.alexa.avs;
+
+import com.amazon.alexa.avs.message.request.RequestBody;
+import com.amazon.alexa.avs.message.request.RequestFactory;
+import com.amazon.alexa.avs.message.request.context.AlertsStatePayload;
+import com.amazon.alexa.avs.message.request.context.PlaybackStatePayload;
+import com.amazon.alexa.avs.message.request.context.SpeechStatePayload;
+import com.amazon.alexa.avs.message.request.context.VolumeStatePayload;
+import com.amazon.alexa.avs.message.response.alerts.SetAlert.AlertType;
+
+import org.apache.commons.io.IOUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.ZonedDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+
+/**
+ * Recorded payloads shared by the benchmarks.
+ */
+public final class BenchmarkPayloads {
+    public static final String BOUNDARY = "------abcde123";
+    public static final String SPEAK_DIRECTIVE = "payloads/speak.json";
+    public static final String PLAY_DIRECTIVE = "payloads/play.json";
+    public static final String SET_ALERT_DIRECTIVE = "payloads/setAlert.json";
+    // An earcon of the sample client, standing in for a Speak attachment
+    public static final String MP3_ATTACHMENT = "res/alarm.mp3";
+
+    private static final String TIMER_TOKEN =
+            "amzn1.as-ct.v1.Domain:Application:Notifications#ACRI#3a5e2c1d-4b6f-4e8a-9c0d";
+    private static final String STREAM_TOKEN =
+            "amzn1.as-ct.v1.Domain:Application:DailyBriefing#ACRI#https://www.example.com/news.mp3";
+
+    private BenchmarkPayloads() {
+    }
+
+    public static byte[] read(String resource) throws IOException {
+        try (InputStream stream =
+                BenchmarkPayloads.class.getClassLoader().getResourceAsStream(resource)) {
+            if (stream == null) {
+                throw new IOException("Missing resource " + resource);
+            }
+            return IOUtils.toByteArray(stream);
+        }
+    }
+
+    /**
+     * @return The directive in the given resource with its dialogRequestId replaced.
+     */
+    public static byte[] directive(String resource, String dialogRequestId) throws IOException {
+        String json = new String(read(resource), StandardCharsets.UTF_8);
+        json = json.replaceFirst("\"dialogRequestId\": \"[^\"]*\"",
+                "\"dialogRequestId\": \"" + dialogRequestId + "\"");
+        return json.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return A Recognize event with the context of a device that is playing a news stream and has
+     *         one timer set.
+     */
+    public static RequestBody recognizeRequest(String dialogRequestId) {
+        Alert timer = new Alert(TIMER_TOKEN, AlertType.TIMER,
+                ZonedDateTime.parse("2016-03-01T18:35:00Z"));
+        return RequestFactory.createSpeechRegonizerRecognizeRequest(dialogRequestId,
+                SpeechProfile.CLOSE_TALK, "AUDIO_L16_RATE_16000_CHANNELS_1",
+                new PlaybackStatePayload(STREAM_TOKEN, 73500, "PLAYING"),
+                new SpeechStatePayload("", 0, "FINISHED"),
+                new AlertsStatePayload(Arrays.asList(timer), Collections.<Alert> emptyList()),
+                new VolumeStatePayload(50, false));
+    }
+
+    /**
+     * @return A multipart response body with the Speak directive and its MP3 attachment, framed
+     *         the way AVS frames them, delimited by {@link #BOUNDARY}.
+     */
+    public static byte[] speakResponse() throws IOException {
+        ByteArrayOutputStream response = new ByteArrayOutputStream();
+        writePart(response, "application/json; charset=UTF-8", null, read(SPEAK_DIRECTIVE));
+        writePart(response, "application/octet-stream",
+                "DailyBriefingPrompt.Introduction:0ea4bbc6-0d3c-4b6f-8f61-2bf2a7b2c6d0_1308741842",
+                read(MP3_ATTACHMENT));
+        response.write(("--" + BOUNDARY + "--\r\n").getBytes(StandardCharsets.US_ASCII));
+        return response.toByteArray();
+    }
+
+    /**
+     * @return 16 kHz, 16 bit, mono little endian PCM of a voiced signal with a slowly varying
+     *         envelope, similar in level to speech captured by a close talk microphone.
+     */
+    public static byte[] speechLikePcm(int samples) {
+        byte[] pcm = new byte[samples * 2];
+        for (int i = 0; i < samples; i++) {
+            double t = i / 16000.0;
+            double envelope = 0.5 + (0.5 * Math.sin(2 * Math.PI * 3 * t));
+            double voiced = Math.sin(2 * Math.PI * 140 * t)
+                    + (0.5 * Math.sin(2 * Math.PI * 280 * t))
+                    + (0.25 * Math.sin(2 * Math.PI * 1200 * t));
+            short sample = (short) (envelope * voiced * 6000);
+            pcm[2 * i] = (byte) sample;
+            pcm[(2 * i) + 1] = (byte) (sample >> 8);
+        }
+        return pcm;
+    }
+
+    private static void writePart(ByteArrayOutputStream response, String contentType,
+            String contentId, byte[] body) throws IOException {
+        StringBuilder headers = new StringBuilder();
+        headers.append("--").append(BOUNDARY).append("\r\n");
+        headers.append("Content-Type: ").append(contentType).append("\r\n");
+        if (contentId != null) {
+            headers.append("Content-ID: <").append(contentId).append(">\r\n");
+        }
+        headers.append("\r\n");
+        response.write(headers.toString().getBytes(StandardCharsets.US_ASCII));
+        response.write(body);
+        response.write("\r\n".getBytes(StandardCharsets.US_ASCII));
+    }
+}
@@ -0,0 +1,80 @@
+/**
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * You may not use this file except in compliance with the License. A copy of the License is located the "LICENSE.txt"
+ * file accompanying this source. This file is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.amazon.alexa.avs;
+
+import com.amazon.alexa.avs.config.ObjectMapperFactory;
+import com.amazon.alexa.avs.message.response.Directive;
+import com.amazon.alexa.avs.message.response.ResponseBody;
+
+import org.codehaus.jackson.map.ObjectReader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.LinkedList;
+import java.util.Queue;
+
+/**
+ * Matching a Speak directive with its attachment and triaging it, for the two orders in which the
+ * parts can arrive.
+ */
+@State(Scope.Thread)
+public class DirectiveEnqueuerBenchmark {
+    private static final String CONTENT_ID =
+            "DailyBriefingPrompt.Introduction:0ea4bbc6-0d3c-4b6f-8f61-2bf2a7b2c6d0_1308741842";
+
+    private byte[] speakMetadata;
+    private byte[] attachment;
+    private ObjectReader reader;
+    private Queue<Directive> dependentQueue;
+    private Queue<Directive> independentQueue;
+    private DirectiveEnqueuer enqueuer;
+    private Directive speak;
+
+    @Setup
+    public void setup() throws IOException {
+        String dialogRequestId = DialogRequestIdAuthority.getInstance().createNewDialogRequestId();
+        speakMetadata =
+                BenchmarkPayloads.directive(BenchmarkPayloads.SPEAK_DIRECTIVE, dialogRequestId);
+        attachment = BenchmarkPayloads.read(BenchmarkPayloads.MP3_ATTACHMENT);
+        reader = ObjectMapperFactory.getObjectReader(ResponseBody.class);
+        dependentQueue = new LinkedList<>();
+        independentQueue = new LinkedList<>();
+        enqueuer = new DirectiveEnqueuer(DialogRequestIdAuthority.getInstance(), dependentQueue,
+                independentQueue);
+    }
+
+    /**
+     * Attaching content mutates the payload, so every invocation gets a freshly parsed directive.
+     * Parsing is kept out of the measurement.
+     */
+    @Setup(Level.Invocation)
+    public void parseSpeak() throws IOException {
+        ResponseBody body = reader.readValue(speakMetadata);
+        speak = body.getDirective();
+    }
+
+    @Benchmark
+    public Directive directiveThenAttachment() {
+        enqueuer.onDirective(speak);
+        enqueuer.onDirectiveAttachment(CONTENT_ID, new ByteArrayInputStream(attachment));
+        return dependentQueue.poll();
+    }
+
+    @Benchmark
+    public Directive attachmentThenDirective() {
+        enqueuer.onDirectiveAttachment(CONTENT_ID, new ByteArrayInputStream(attachment));
+        enqueuer.onDirective(speak);
+        return dependentQueue.poll();
+    }
+}
@@ -0,0 +1,63 @@
+/**
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * You may not use this file except in compliance with the License. A copy of the License is located the "LICENSE.txt"
+ * file accompanying this source. This file is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.amazon.alexa.avs;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Cost of running a {@link WakeWordDetector} over one frame of the audio captured between
+ * recordings, which is spent on the capture thread for every frame while the client is idle.
+ *
+ * By default the {@link EnergyTemplateDetector} is measured with a template of the given length.
+ * Other engines can be measured on the same audio by putting them on the class path and passing
+ * their class name, e.g. -p detectorClass=com.example.Detector. They need a public no argument
+ * constructor.
+ */
+@State(Scope.Thread)
+public class WakeWordDetectorBenchmark {
+    private static final int STREAM_SAMPLES = 3 * 16000;
+
+    @Param({ "" })
+    public String detectorClass;
+
+    @Param({ "400", "800" })
+    public int templateMs;
+
+    private byte[] pcm;
+    private int frameSize;
+    private int frames;
+    private WakeWordDetector detector;
+    private int next;
+
+    @Setup
+    public void setup() throws ReflectiveOperationException {
+        if (detectorClass.isEmpty()) {
+            byte[] template = BenchmarkPayloads.speechLikePcm(templateMs * 16);
+            detector = new EnergyTemplateDetector(16000, template,
+                    EnergyTemplateDetector.DEFAULT_THRESHOLD);
+        } else {
+            detector = Class.forName(detectorClass).asSubclass(WakeWordDetector.class)
+                    .getDeclaredConstructor().newInstance();
+        }
+        frameSize = detector.getFrameSizeBytes();
+        pcm = BenchmarkPayloads.speechLikePcm(STREAM_SAMPLES);
+        frames = pcm.length / frameSize;
+    }
+
+    @Benchmark
+    public int processFrame() {
+        int detected = detector.process(pcm, next * frameSize);
+        next = (next + 1) % frames;
+        return detected;
+    }
+}
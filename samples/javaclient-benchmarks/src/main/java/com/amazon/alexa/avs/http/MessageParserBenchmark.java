@@ -0,0 +1,98 @@
+/**
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * You may not use this file except in compliance with the License. A copy of the License is located the "LICENSE.txt"
+ * file accompanying this source. This file is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.amazon.alexa.avs.http;
+
+import com.amazon.alexa.avs.BenchmarkPayloads;
+import com.amazon.alexa.avs.config.ObjectMapperFactory;
+import com.amazon.alexa.avs.message.request.RequestBody;
+import com.amazon.alexa.avs.message.response.ResponseBody;
+
+import org.codehaus.jackson.map.ObjectReader;
+import org.codehaus.jackson.map.ObjectWriter;
+import org.eclipse.jetty.client.util.StringContentProvider;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * CPU cost of turning one directive's metadata part into a {@link ResponseBody}, and of an event
+ * into its metadata part. Each path is measured next to a baseline copy of the code it replaced,
+ * which rendered the pretty printed JSON for the log whether or not it was logged.
+ *
+ * Logging is pinned to WARN by the log4j2.xml of this module, so the INFO messages of both paths
+ * are disabled as they are in the sample app. The setup fails if INFO is enabled.
+ */
+@State(Scope.Thread)
+public class MessageParserBenchmark {
+    private static final Logger log = LoggerFactory.getLogger(MessageParserBenchmark.class);
+
+    @Param({ BenchmarkPayloads.SPEAK_DIRECTIVE, BenchmarkPayloads.PLAY_DIRECTIVE,
+            BenchmarkPayloads.SET_ALERT_DIRECTIVE })
+    public String directive;
+
+    private MessageParser parser;
+    private byte[] metadata;
+    private RequestBody event;
+
+    @Setup
+    public void setup() throws IOException {
+        if (LoggerFactory.getLogger(MessageParser.class).isInfoEnabled()
+                || LoggerFactory.getLogger(AVSClient.class).isInfoEnabled()) {
+            throw new IllegalStateException("INFO logging must be disabled for this benchmark");
+        }
+        parser = new MessageParser();
+        metadata = BenchmarkPayloads.read(directive);
+        event = BenchmarkPayloads.recognizeRequest("e2d7b7c8-02f8-4b3c-9d52-8a0e3c7d4f16");
+    }
+
+    @Benchmark
+    public ResponseBody parse() throws IOException {
+        return parser.parse(metadata, ResponseBody.class);
+    }
+
+    /**
+     * The former MessageParser.parse: parse into an Object, pretty print it, then parse the bytes
+     * again into the target type.
+     */
+    @Benchmark
+    public ResponseBody parseBaseline() throws IOException {
+        ObjectReader reader = ObjectMapperFactory.getObjectReader();
+        Object logBody = reader.withType(Object.class).readValue(metadata);
+        log.info("Response metadata: \n{}", ObjectMapperFactory
+                .getObjectWriter()
+                .withDefaultPrettyPrinter()
+                .writeValueAsString(logBody));
+        return reader.withType(ResponseBody.class).readValue(metadata);
+    }
+
+    @Benchmark
+    public StringContentProvider metadataContent() throws IOException {
+        return AVSClient.createMetadataContent(event);
+    }
+
+    /**
+     * The former AVSClient.createMetadataContent: serialise the event twice, once pretty printed
+     * for the log and once for the request.
+     */
+    @Benchmark
+    public StringContentProvider metadataContentBaseline() throws IOException {
+        ObjectWriter writer = ObjectMapperFactory.getObjectWriter();
+        log.info("Request metadata: \n{}",
+                writer.withDefaultPrettyPrinter().writeValueAsString(event));
+        String json = writer.writeValueAsString(event);
+        return new StringContentProvider(ContentTypes.JSON, json, StandardCharsets.UTF_8);
+    }
+}
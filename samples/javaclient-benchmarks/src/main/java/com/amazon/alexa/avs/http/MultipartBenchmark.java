@@ -0,0 +1,119 @@
+/**
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * You may not use this file except in compliance with the License. A copy of the License is located the "LICENSE.txt"
+ * file accompanying this source. This file is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.amazon.alexa.avs.http;
+
+import com.amazon.alexa.avs.BenchmarkPayloads;
+import com.amazon.alexa.avs.config.ObjectMapperFactory;
+import com.amazon.alexa.avs.http.MultipartParser.MultipartParserConsumer;
+import com.amazon.alexa.avs.message.response.Directive;
+
+import org.apache.commons.io.IOUtils;
+import org.eclipse.jetty.client.util.BytesContentProvider;
+import org.eclipse.jetty.client.util.StringContentProvider;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+
+/**
+ * Encoding a Recognize request body and decoding a Speak response, the two multipart paths of
+ * every interaction.
+ */
+@State(Scope.Thread)
+public class MultipartBenchmark {
+    // Three seconds of 16 kHz LPCM in the 10 ms chunks the microphone produces
+    private static final int AUDIO_CHUNKS = 300;
+    private static final int AUDIO_CHUNK_SIZE_BYTES = 320;
+
+    private String metadata;
+    private byte[][] audioChunks;
+    private byte[] speakResponse;
+    private byte[] attachmentBuffer;
+
+    @Setup
+    public void setup() throws IOException {
+        metadata = ObjectMapperFactory.getObjectWriter().writeValueAsString(
+                BenchmarkPayloads.recognizeRequest("e2d7b7c8-02f8-4b3c-9d52-8a0e3c7d4f16"));
+        byte[] pcm = BenchmarkPayloads.speechLikePcm((AUDIO_CHUNKS * AUDIO_CHUNK_SIZE_BYTES) / 2);
+        audioChunks = new byte[AUDIO_CHUNKS][];
+        for (int i = 0; i < AUDIO_CHUNKS; i++) {
+            audioChunks[i] = new byte[AUDIO_CHUNK_SIZE_BYTES];
+            System.arraycopy(pcm, i * AUDIO_CHUNK_SIZE_BYTES, audioChunks[i], 0,
+                    AUDIO_CHUNK_SIZE_BYTES);
+        }
+        speakResponse = BenchmarkPayloads.speakResponse();
+        attachmentBuffer = new byte[4096];
+    }
+
+    @Benchmark
+    public long encodeRecognizeRequest() {
+        MultipartContentProvider content = new MultipartContentProvider();
+        content.addPart(AVSClient.METADATA_NAME,
+                new StringContentProvider(ContentTypes.JSON, metadata, StandardCharsets.UTF_8));
+        content.addPart(AVSClient.AUDIO_NAME, ContentTypes.AUDIO,
+                new BytesContentProvider(audioChunks));
+
+        long bytes = 0;
+        Iterator<ByteBuffer> iterator = content.iterator();
+        while (iterator.hasNext()) {
+            bytes += iterator.next().remaining();
+        }
+        content.close();
+        return bytes;
+    }
+
+    @Benchmark
+    public void decodeSpeakResponse(final Blackhole blackhole) throws IOException {
+        MultipartParser parser = new MultipartParser(new MultipartParserConsumer() {
+            @Override
+            public void onDirective(Directive directive) {
+                blackhole.consume(directive);
+            }
+
+            @Override
+            public void onDirectiveAttachment(String contentId, InputStream attachmentContent) {
+                blackhole.consume(attachmentContent);
+            }
+        });
+        parser.parseStream(new ByteArrayInputStream(speakResponse), BenchmarkPayloads.BOUNDARY);
+    }
+
+    @Benchmark
+    public long decodeAndDrainSpeakResponse() throws IOException {
+        final InputStream[] attachment = new InputStream[1];
+        MultipartParser parser = new MultipartParser(new MultipartParserConsumer() {
+            @Override
+            public void onDirective(Directive directive) {
+            }
+
+            @Override
+            public void onDirectiveAttachment(String contentId, InputStream attachmentContent) {
+                attachment[0] = attachmentContent;
+            }
+        });
+        parser.parseStream(new ByteArrayInputStream(speakResponse), BenchmarkPayloads.BOUNDARY);
+
+        // The attachment is complete once parseStream returns
+        long bytes = 0;
+        for (int read = attachment[0].read(attachmentBuffer); read != -1; read =
+                attachment[0].read(attachmentBuffer)) {
+            bytes += read;
+        }
+        IOUtils.closeQuietly(attachment[0]);
+        return bytes;
+    }
+}
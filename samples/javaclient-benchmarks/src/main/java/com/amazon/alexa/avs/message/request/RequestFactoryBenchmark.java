@@ -0,0 +1,51 @@
+/**
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * You may not use this file except in compliance with the License. A copy of the License is located the "LICENSE.txt"
+ * file accompanying this source. This file is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.amazon.alexa.avs.message.request;
+
+import com.amazon.alexa.avs.BenchmarkPayloads;
+import com.amazon.alexa.avs.config.ObjectMapperFactory;
+
+import org.codehaus.jackson.map.ObjectWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+
+/**
+ * Building and serialising the metadata of the events sent most often.
+ */
+@State(Scope.Thread)
+public class RequestFactoryBenchmark {
+    private ObjectWriter writer;
+
+    @Setup
+    public void setup() {
+        writer = ObjectMapperFactory.getObjectWriter();
+    }
+
+    @Benchmark
+    public String recognize() throws IOException {
+        return writer.writeValueAsString(
+                BenchmarkPayloads.recognizeRequest("e2d7b7c8-02f8-4b3c-9d52-8a0e3c7d4f16"));
+    }
+
+    @Benchmark
+    public String progressReportIntervalElapsed() throws IOException {
+        return writer.writeValueAsString(RequestFactory
+                .createAudioPlayerProgressReportIntervalElapsedEvent("stream-token", 15000));
+    }
+
+    @Benchmark
+    public String speechFinished() throws IOException {
+        return writer.writeValueAsString(
+                RequestFactory.createSpeechSynthesizerSpeechFinishedEvent("speak-token"));
+    }
+}
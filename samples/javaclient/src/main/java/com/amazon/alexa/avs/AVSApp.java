@@ -14,6 +14,7 @@ import com.amazon.alexa.avs.auth.companionservice.RegCodeDisplayHandler;
 import com.amazon.alexa.avs.config.DeviceConfig;
 import com.amazon.alexa.avs.config.DeviceConfigUtils;
 import com.amazon.alexa.avs.http.AVSClientFactory;
+import com.amazon.alexa.avs.metrics.ProcessStats;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -37,11 +38,12 @@ import javax.swing.JPanel;
 import javax.swing.JProgressBar;
 import javax.swing.JTextArea;
 import javax.swing.JTextField;
+import javax.swing.SwingUtilities;
 import javax.swing.SwingWorker;
 
 @SuppressWarnings("serial")
 public class AVSApp extends JFrame implements ExpectSpeechListener, RecordingRMSListener,
-        RegCodeDisplayHandler, AccessTokenListener {
+        RegCodeDisplayHandler, AccessTokenListener, WakeWordListener {
 
     private static final Logger log = LoggerFactory.getLogger(AVSApp.class);
 
@@ -58,12 +60,10 @@ public class AVSApp extends JFrame implements ExpectSpeechListener, RecordingRMS
     private JButton playPauseButton;
     private JTextField tokenTextField;
     private JProgressBar visualizer;
-    private Thread autoEndpoint = null; // used to auto-endpoint while listening
     private final DeviceConfig deviceConfig;
-    // minimum audio level threshold under which is considered silence
-    private static final int ENDPOINT_THRESHOLD = 5;
-    private static final int ENDPOINT_SECONDS = 2; // amount of silence time before endpointing
     private String accessToken;
+    // Where the next recording starts, only used on the event dispatch thread
+    private long recordingStart = -1;
 
     private AuthSetup authSetup;
 
@@ -86,7 +86,8 @@ public class AVSApp extends JFrame implements ExpectSpeechListener, RecordingRMS
     private AVSApp(DeviceConfig config) throws Exception {
         deviceConfig = config;
         controller = new AVSController(this, new AVSAudioPlayerFactory(), new AlertManagerFactory(),
-                getAVSClientFactory(deviceConfig), DialogRequestIdAuthority.getInstance());
+                getAVSClientFactory(deviceConfig), DialogRequestIdAuthority.getInstance(),
+                deviceConfig.getAudioCaptureInfo());
 
         authSetup = new AuthSetup(config, this);
         authSetup.addAccessTokenListener(this);
@@ -105,6 +106,10 @@ public class AVSApp extends JFrame implements ExpectSpeechListener, RecordingRMS
         setSize(400, 200);
         setVisible(true);
         controller.startHandlingDirectives();
+        if (controller.setWakeWordListener(this)) {
+            log.info("Listening for the wake word");
+        }
+        ProcessStats.recordStartup(AVSApp.class.getSimpleName());
     }
 
     private String getAppVersion() {
@@ -183,6 +188,8 @@ public class AVSApp extends JFrame implements ExpectSpeechListener, RecordingRMS
                 controller.onUserActivity();
                 if (actionButton.getText().equals(START_LABEL)) { // if in idle mode
                     actionButton.setText(STOP_LABEL);
+                    long startPosition = recordingStart;
+                    recordingStart = -1;
 
                     RequestListener requestListener = new RequestListener() {
 
@@ -201,7 +208,18 @@ public class AVSApp extends JFrame implements ExpectSpeechListener, RecordingRMS
                         }
                     };
 
-                    controller.startRecording(rmsListener, requestListener);
+                    controller.startRecording(rmsListener, requestListener,
+                            new EndOfSpeechListener() {
+                                @Override
+                                public void onEndOfSpeech() {
+                                    // hit stop unless the user already did
+                                    SwingUtilities.invokeLater(() -> {
+                                        if (actionButton.getText().equals(STOP_LABEL)) {
+                                            actionButton.doClick();
+                                        }
+                                    });
+                                }
+                            }, startPosition);
                 } else { // else we must already be in listening
                     actionButton.setText(PROCESSING_LABEL); // go into processing mode
                     actionButton.setEnabled(false);
@@ -288,51 +306,30 @@ public class AVSApp extends JFrame implements ExpectSpeechListener, RecordingRMS
 
     @Override
     public void rmsChanged(int rms) { // AudioRMSListener callback
-        // if greater than threshold or not recording, kill the autoendpoint thread
-        if ((rms == 0) || (rms > ENDPOINT_THRESHOLD)) {
-            if (autoEndpoint != null) {
-                autoEndpoint.interrupt();
-                autoEndpoint = null;
-            }
-        } else if (rms < ENDPOINT_THRESHOLD) {
-            // start the autoendpoint thread if it isn't already running
-            if (autoEndpoint == null) {
-                autoEndpoint = new Thread() {
-                    @Override
-                    public void run() {
-                        try {
-                            Thread.sleep(ENDPOINT_SECONDS * 1000);
-                            actionButton.doClick(); // hit stop if we get through the autoendpoint
-                                                    // time
-                        } catch (InterruptedException e) {
-                            return;
-                        }
-                    }
-                };
-                autoEndpoint.start();
-            }
-        }
-
         visualizer.setValue(rms); // update the visualizer
     }
 
     @Override
     public void onExpectSpeechDirective() {
-        Thread thread = new Thread() {
-            @Override
-            public void run() {
-                while (!actionButton.isEnabled() || !actionButton.getText().equals(START_LABEL)
-                        || controller.isSpeaking()) {
-                    try {
-                        Thread.sleep(500);
-                    } catch (Exception e) {
-                    }
-                }
+        // The controller only calls this once the previous request has finished
+        SwingUtilities.invokeLater(() -> {
+            if (actionButton.isEnabled() && actionButton.getText().equals(START_LABEL)) {
                 actionButton.doClick();
+            } else {
+                log.warn("Not listening for the expected speech, the client is busy");
             }
-        };
-        thread.start();
+        });
+    }
 
+    @Override
+    public void onWakeWordDetected(final long wakeWordStart, long wakeWordEnd) {
+        SwingUtilities.invokeLater(() -> {
+            // Like pressing the button, unless a request is already in progress
+            if (actionButton.isEnabled() && actionButton.getText().equals(START_LABEL)) {
+                recordingStart = wakeWordStart;
+                actionButton.doClick();
+            }
+        });
     }
 
     public void showDialog(String message) {
@@ -11,6 +11,8 @@ package com.amazon.alexa.avs;
 import com.amazon.alexa.avs.AudioPlayerStateMachine.AudioPlayerState;
 import com.amazon.alexa.avs.exception.DirectiveHandlingException;
 import com.amazon.alexa.avs.exception.DirectiveHandlingException.ExceptionType;
+import com.amazon.alexa.avs.http.AttachmentServer;
+import com.amazon.alexa.avs.http.StreamPrefetcher;
 import com.amazon.alexa.avs.message.request.RequestFactory;
 import com.amazon.alexa.avs.message.request.context.PlaybackStatePayload;
 import com.amazon.alexa.avs.message.request.context.SpeechStatePayload;
@@ -22,22 +24,25 @@ import com.amazon.alexa.avs.message.response.audioplayer.Stream;
 import com.amazon.alexa.avs.message.response.speaker.SetMute;
 import com.amazon.alexa.avs.message.response.speaker.VolumePayload;
 import com.amazon.alexa.avs.message.response.speechsynthesizer.Speak;
+import com.amazon.alexa.avs.metrics.LatencyRecorder;
+import com.amazon.alexa.avs.metrics.Metrics;
 
 import org.apache.commons.io.IOUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
-import java.nio.file.Files;
-import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Queue;
 import java.util.Set;
-import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 import javazoom.jl.player.Player;
 import uk.co.caprica.vlcj.component.AudioMediaPlayerComponent;
@@ -49,10 +54,11 @@ public class AVSAudioPlayer {
     private static final Logger log = LoggerFactory.getLogger(AVSAudioPlayer.class);
 
     // callback to send audio events
-    private final AVSController controller;
-    // vlc instance to play media
-    private AudioMediaPlayerComponent audioPlayer;
-    // queue of listen directive media
+    private final EventSender eventSender;
+    // vlc instance to play media, used for all items
+    private final MediaPlayer mediaPlayer;
+    // queue of listen directive media, changed by the directive thread, the content channel and
+    // the vlc callbacks, so loops work on a snapshot
     private final Queue<Stream> playQueue;
     // queue of speak directive media
     private final Queue<SpeakItem> speakQueue;
@@ -60,27 +66,37 @@ public class AVSAudioPlayer {
     private Set<String> streamUrls;
     // Urls associated with the current stream that we've already tried to play
     private Set<String> attemptedUrls;
-    // Alarm thread
-    private Thread alarmThread;
-    // Speaker thread
-    private Thread playThread;
-    // Object on which to lock
-    private Object playLock = new Object();
-    // How long the thread should block on waiting for audio to finish playing
-    private static final int TIMEOUT_IN_MS = 3000;
+    // Plays speech, earcons and alarms through the default audio player, one after the other
+    private final AudioOutputChannel speakerChannel;
+    // Starts the media in the play queue
+    private final AudioOutputChannel contentChannel;
+    // Whether the next media item waits for the speech queue to drain, guarded by speakQueue
+    private boolean playbackWaitingForSpeech;
+    // Incremented whenever the alarm is started, so a stopped alarm does not repeat
+    private volatile int alarmGeneration;
+    // Incremented whenever speech is interrupted, so queued speech is not played, guarded by this
+    private volatile int speechGeneration;
 
     // VLCJ volumes are between 0-200. Alexa volumes are from 0-100. These constants are used to
     // convert and limit volume values.
     private static final long VLCJ_VOLUME_SCALAR = 2;
     private static final int VLCJ_MIN_VOLUME = 0;
     private static final int VLCJ_MAX_VOLUME = 200;
+    // PlaybackNearlyFinished is reported this long before the end of an item of known length, so
+    // that the next item is enqueued and prefetched while the current one is still playing
+    private static final long NEARLY_FINISHED_MS = 10000;
+    private static final long PREFETCH_MAX_BYTES = 32L * 1024 * 1024;
+    // vlc buffers this much of media served from the loopback interface, instead of its default
+    // network caching of a second
+    private static final int LOCAL_CACHING_MS = 100;
 
     private long stopOffset;
-    // track the last progressReport sent time
-    private boolean waitForPlaybackFinished;
     // used for speak directives and earcons
     private Player speaker = null;
     private final ClassLoader resLoader; // used to load resource files
+    // decoded earcons and the alarm, played instead of decoding the resource every time
+    private final EarconCache earcons;
+    private static final String ALARM_SOUND = "res/alarm.mp3";
 
     private String latestStreamToken = "";
 
@@ -100,6 +116,27 @@ public class AVSAudioPlayer {
 
     private final AudioPlayerProgressReporter progressReporter;
 
+    // Serves attached content to vlc while it is being received
+    private final AttachmentServer attachmentServer;
+    // Downloads the next item through the attachment server before the current one ends
+    private final StreamPrefetcher prefetcher;
+    // Prefetches of enqueued items, until the item is removed from the play queue
+    private final Map<Stream, CompletableFuture<String>> prefetches;
+    // Whether PlaybackNearlyFinished has been reported for the current item
+    private volatile boolean nearlyFinishedReported;
+    // The original url of the current item if it is played from its prefetch, otherwise null
+    private volatile String fallbackUrl;
+    // From the end of an item to the start of the next one
+    private final LatencyRecorder interTrackGap;
+    private volatile long itemFinishedNanos;
+    // From receiving a Play directive to the start of playback, if nothing else was playing
+    private final LatencyRecorder firstAudioLatency;
+    private volatile long playDirectiveNanos;
+    private final LatencyRecorder pendingEventsWait;
+    private final LatencyRecorder speechToContentGap;
+    // When the last speech finished, if content has not been resumed since, otherwise 0
+    private volatile long speechFinishedNanos;
+
     private enum SpeechState {
         PLAYING,
         FINISHED;
@@ -118,26 +155,48 @@ public class AVSAudioPlayer {
     private boolean currentlyMuted;
 
     public AVSAudioPlayer(AVSController controller) {
-        this.controller = controller;
+        this(controller, new AudioMediaPlayerComponent().getMediaPlayer());
+    }
+
+    /**
+     * @param eventSender
+     *            Sends the SpeechSynthesizer, Speaker and AudioPlayer events
+     * @param mediaPlayer
+     *            Plays the media of the Play directives
+     */
+    AVSAudioPlayer(EventSender eventSender, MediaPlayer mediaPlayer) {
+        this.eventSender = eventSender;
+        this.mediaPlayer = mediaPlayer;
         resLoader = Thread.currentThread().getContextClassLoader();
         stopOffset = -1;
-        waitForPlaybackFinished = false;
-        playQueue = new LinkedList<Stream>();
+        playQueue = new ConcurrentLinkedQueue<Stream>();
         speakQueue = new LinkedList<SpeakItem>();
+        speakerChannel = new AudioOutputChannel("speaker");
+        earcons = new EarconCache(resLoader);
+        earcons.load(ALARM_SOUND);
+        contentChannel = new AudioOutputChannel("content");
         streamUrls = new HashSet<String>();
         attemptedUrls = new HashSet<String>();
         setupAudioPlayer();
 
-        currentVolume = audioPlayer.getMediaPlayer().getVolume();
-        currentlyMuted = audioPlayer.getMediaPlayer().isMute();
+        currentVolume = mediaPlayer.getVolume();
+        currentlyMuted = mediaPlayer.isMute();
 
-        audioPlayerStateMachine = new AudioPlayerStateMachine(this, controller);
+        audioPlayerStateMachine = new AudioPlayerStateMachine(this, eventSender);
 
         progressReporter = new AudioPlayerProgressReporter(
                 new ProgressReportDelayEventRunnable(audioPlayerStateMachine),
                 new ProgressReportIntervalEventRunnable(audioPlayerStateMachine));
 
         listeners = new HashSet<>();
+
+        attachmentServer = new AttachmentServer();
+        prefetcher = new StreamPrefetcher(attachmentServer, PREFETCH_MAX_BYTES);
+        prefetches = new IdentityHashMap<>();
+        interTrackGap = Metrics.getInstance().latency("audioPlayer.interTrackGap");
+        firstAudioLatency = Metrics.getInstance().latency("audioPlayer.directiveToFirstAudio");
+        pendingEventsWait = Metrics.getInstance().latency("audioPlayer.pendingEventsWait");
+        speechToContentGap = Metrics.getInstance().latency("audioPlayer.speechToContentGap");
     }
 
     public void registerAlexaSpeechListener(AlexaSpeechListener listener) {
@@ -147,9 +206,13 @@ public class AVSAudioPlayer {
     public void handleSpeak(Speak speak) {
         SpeakItem speakItem = new SpeakItem(speak.getToken(), speak.getAttachedContent());
 
-        speakQueue.add(speakItem);
+        boolean start;
+        synchronized (speakQueue) {
+            speakQueue.add(speakItem);
+            start = speakQueue.size() == 1;
+        }
         // if not already speaking, start speech
-        if (speakQueue.size() == 1) {
+        if (start) {
             startSpeech();
         }
     }
@@ -170,18 +233,19 @@ public class AVSAudioPlayer {
         log.info("StreamId: {}", streamId);
         log.info("Offset: {}", offset);
 
+        if (playQueue.isEmpty()) {
+            playDirectiveNanos = System.nanoTime();
+        }
+
         if (stream.hasAttachedContent()) {
             try {
-                File tmp = File.createTempFile(UUID.randomUUID().toString(), ".mp3");
-                Files.copy(stream.getAttachedContent(), tmp.toPath(),
-                        StandardCopyOption.REPLACE_EXISTING);
-
-                stream.setUrl(tmp.getAbsolutePath());
+                // Let vlc play the attachment while it is still being received
+                stream.setUrl(attachmentServer.serve(stream.getAttachedContent()));
                 add(stream);
             } catch (IOException e) {
-                log.error("Error while saving audio to a file", e);
+                log.error("Error while serving attached audio", e);
                 throw new DirectiveHandlingException(ExceptionType.INTERNAL_ERROR,
-                        "Error saving attached content to disk, unable to handle Play directive.");
+                        "Error serving attached content, unable to handle Play directive.");
             }
         } else {
             add(stream);
@@ -205,8 +269,8 @@ public class AVSAudioPlayer {
 
     public void handleSetVolume(VolumePayload volumePayload) {
         currentVolume = (int) (volumePayload.getVolume() * VLCJ_VOLUME_SCALAR);
-        audioPlayer.getMediaPlayer().setVolume(currentVolume);
-        controller.sendRequest(
+        mediaPlayer.setVolume(currentVolume);
+        eventSender.sendRequest(
                 RequestFactory.createSpeakerVolumeChangedEvent(getVolume(), isMuted()));
     }
 
@@ -214,22 +278,20 @@ public class AVSAudioPlayer {
         int adjustVolumeBy = (int) (volumePayload.getVolume() * VLCJ_VOLUME_SCALAR);
         currentVolume = Math.min(VLCJ_MAX_VOLUME,
                 Math.max(VLCJ_MIN_VOLUME, currentVolume + adjustVolumeBy));
-        audioPlayer.getMediaPlayer().setVolume(currentVolume);
-        controller.sendRequest(
+        mediaPlayer.setVolume(currentVolume);
+        eventSender.sendRequest(
                 RequestFactory.createSpeakerVolumeChangedEvent(getVolume(), isMuted()));
     }
 
     public void handleSetMute(SetMute setMutePayload) {
         currentlyMuted = setMutePayload.getMute();
-        audioPlayer.getMediaPlayer().mute(currentlyMuted);
-        controller
+        mediaPlayer.mute(currentlyMuted);
+        eventSender
                 .sendRequest(RequestFactory.createSpeakerMuteChangedEvent(getVolume(), isMuted()));
     }
 
     private void setupAudioPlayer() {
-        audioPlayer = new AudioMediaPlayerComponent();
-
-        audioPlayer.getMediaPlayer().addMediaPlayerEventListener(new MediaPlayerEventAdapter() {
+        mediaPlayer.addMediaPlayerEventListener(new MediaPlayerEventAdapter() {
 
             private boolean playbackStartedSuccessully;
 
@@ -242,6 +304,23 @@ public class AVSAudioPlayer {
                 log.debug("newMedia: {}", mediaPlayer.mrl());
                 playbackStartedSuccessully = false;
                 bufferUnderrunInProgress = false;
+                isPaused = false;
+            }
+
+            @Override
+            public void timeChanged(MediaPlayer mediaPlayer, long newTime) {
+                long length = mediaPlayer.getLength();
+                if (!nearlyFinishedReported && (length > 0)
+                        && ((length - newTime) <= NEARLY_FINISHED_MS)) {
+                    nearlyFinishedReported = true;
+                    contentChannel.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            audioPlayerStateMachine.playbackNearlyFinished();
+                            prefetchNext();
+                        }
+                    });
+                }
             }
 
             @Override
@@ -252,8 +331,13 @@ public class AVSAudioPlayer {
             @Override
             public void playing(MediaPlayer mediaPlayer) {
                 log.debug("playing: {}", mediaPlayer.mrl());
-                long length = audioPlayer.getMediaPlayer().getLength();
+                long length = mediaPlayer.getLength();
                 log.debug("    length: {}", length);
+                long speechNanos = speechFinishedNanos;
+                if (speechNanos != 0) {
+                    speechToContentGap.recordSince(speechNanos);
+                    speechFinishedNanos = 0;
+                }
 
                 if (isPaused && playbackStartedSuccessully) {
                     audioPlayerStateMachine.playbackResumed();
@@ -280,6 +364,16 @@ public class AVSAudioPlayer {
                     // We have successfully buffered the first time and started playback
                     playbackStartedSuccessully = true;
                     audioPlayerStateMachine.playbackStarted();
+                    long directiveNanos = playDirectiveNanos;
+                    if (directiveNanos != 0) {
+                        firstAudioLatency.recordSince(directiveNanos);
+                        playDirectiveNanos = 0;
+                    }
+                    long finishedNanos = itemFinishedNanos;
+                    if (finishedNanos != 0) {
+                        interTrackGap.recordSince(finishedNanos);
+                        itemFinishedNanos = 0;
+                    }
 
                     if (isPaused) {
                         audioPlayerStateMachine.playbackPaused();
@@ -318,27 +412,29 @@ public class AVSAudioPlayer {
                     }
                 }
 
-                // wait for any pending events to finish(playbackStarted/progressReport)
-                while (controller.eventRunning()) {
-                    try {
-                        Thread.sleep(100);
-                    } catch (Exception e) {
-                    }
-                }
+                itemFinishedNanos = (playQueue.size() > 1) ? System.nanoTime() : 0;
+                // finish once any pending events (playbackStarted/progressReport) have been sent,
+                // without blocking the vlc event thread
+                afterPendingEvents(new Runnable() {
+                    @Override
+                    public void run() {
+                        // remove the item from the queue since it has finished playing
+                        Stream finishedStream = playQueue.poll();
 
-                // remove the item from the queue since it has finished playing
-                playQueue.poll();
+                        progressReporter.stop();
+                        if (!nearlyFinishedReported) {
+                            nearlyFinishedReported = true;
+                            audioPlayerStateMachine.playbackNearlyFinished();
+                        }
+                        audioPlayerStateMachine.playbackFinished();
+                        releaseAttachment(finishedStream);
 
-                progressReporter.stop();
-                audioPlayerStateMachine.playbackNearlyFinished();
-                audioPlayerStateMachine.playbackFinished();
-
-                // unblock playback now that playbackFinished has been sent
-                waitForPlaybackFinished = false;
-                if (!playQueue.isEmpty()) {
-                    // start playback if it wasn't the last item
-                    startPlayback();
-                }
+                        if (!playQueue.isEmpty()) {
+                            // start playback if it wasn't the last item
+                            startPlayback();
+                        }
+                    }
+                });
             }
 
             @Override
@@ -353,22 +449,42 @@ public class AVSAudioPlayer {
                         return;
                     }
                 }
-
-                // wait for any pending events to finish(playbackStarted/progressReport)
-                while (controller.eventRunning()) {
-                    try {
-                        Thread.sleep(100);
-                    } catch (Exception e) {
-                    }
+                String fallback = fallbackUrl;
+                if ((fallback != null) && !attemptedUrls.contains(fallback)) {
+                    log.info("Playing {} instead of its prefetched copy", fallback);
+                    mediaPlayer.playMedia(fallback);
+                    return;
                 }
-                progressReporter.stop();
-                playQueue.clear();
-                audioPlayerStateMachine.playbackFailed();
 
+                // fail once any pending events (playbackStarted/progressReport) have been sent
+                afterPendingEvents(new Runnable() {
+                    @Override
+                    public void run() {
+                        progressReporter.stop();
+                        releaseAttachments();
+                        playQueue.clear();
+                        audioPlayerStateMachine.playbackFailed();
+                    }
+                });
             }
         });
     }
 
+    /**
+     * Run the command on the content channel once the events that are currently being sent have
+     * been sent, so the playback events are sent in order.
+     */
+    private void afterPendingEvents(Runnable command) {
+        final long waitStart = System.nanoTime();
+        eventSender.whenEventsSent().thenRunAsync(new Runnable() {
+            @Override
+            public void run() {
+                pendingEventsWait.recordSince(waitStart);
+                command.run();
+            }
+        }, contentChannel);
+    }
+
     /**
      * Returns true if Alexa is currently speaking
      */
@@ -395,11 +511,21 @@ public class AVSAudioPlayer {
      * Interrupt all audio - Alarms, speech, and media
      */
     public void interruptAllAlexaOutput() {
+        synchronized (this) {
+            speechGeneration++;
+        }
         if (isSpeaking()) {
             // Then we are interrupting some speech
             interruptCurrentlyPlaying();
+            if (isSpeaking()) {
+                // the speech was still waiting for the speaker
+                speechState = SpeechState.FINISHED;
+                notifyAlexaSpeechFinished();
+            }
+        }
+        synchronized (speakQueue) {
+            speakQueue.clear();
         }
-        speakQueue.clear();
 
         interruptAlertsAndContent();
     }
@@ -410,6 +536,8 @@ public class AVSAudioPlayer {
     private void interruptAlertsAndContent() {
         if (isAlarming()) {
             alertState = AlertState.INTERRUPTED;
+            // the alarm shares the default audio player with speech, stop the current repetition
+            stopPlayer();
         }
 
         interruptContent();
@@ -420,11 +548,11 @@ public class AVSAudioPlayer {
      */
     private void interruptContent() {
 
-        synchronized (audioPlayer.getMediaPlayer()) {
+        synchronized (mediaPlayer) {
             if (!playQueue.isEmpty() && (stopOffset == -1)
-                    && audioPlayer.getMediaPlayer().isPlaying()) {
+                    && mediaPlayer.isPlaying()) {
                 progressReporter.pause();
-                audioPlayer.getMediaPlayer().pause();
+                mediaPlayer.pause();
             }
         }
     }
@@ -454,13 +582,13 @@ public class AVSAudioPlayer {
      * Resume any content
      */
     private void resumeContent() {
-        synchronized (audioPlayer.getMediaPlayer()) {
+        synchronized (mediaPlayer) {
             if (!playQueue.isEmpty() && (stopOffset == -1)
-                    && !audioPlayer.getMediaPlayer().isPlaying()) {
+                    && !mediaPlayer.isPlaying()) {
                 progressReporter.resume();
                 // Pause toggles the pause state of the media player, if it was previously paused it
                 // will be resumed.
-                audioPlayer.getMediaPlayer().pause();
+                mediaPlayer.pause();
             }
         }
     }
@@ -483,9 +611,49 @@ public class AVSAudioPlayer {
 
         if (startPlaying) {
             startPlayback();
+        } else if (nearlyFinishedReported) {
+            // enqueued after the current item reported that it is nearly finished
+            contentChannel.execute(new Runnable() {
+                @Override
+                public void run() {
+                    prefetchNext();
+                }
+            });
+        }
+    }
+
+    /**
+     * Start downloading the item after the current one, unless it is attached content, which is
+     * already being received, or its download has already been started. Items that start at an
+     * offset are left to vlc, which seeks in them with range requests instead of downloading the
+     * part before the offset.
+     */
+    private void prefetchNext() {
+        List<Stream> items = new ArrayList<>(playQueue);
+        Stream next = (items.size() > 1) ? items.get(1) : null;
+        if ((next == null) || next.hasAttachedContent()
+                || (next.getOffsetInMilliseconds() != 0)) {
+            return;
+        }
+        synchronized (prefetches) {
+            if (!prefetches.containsKey(next)) {
+                prefetches.put(next, prefetcher.prefetch(next.getUrl()));
+            }
         }
     }
 
+    /**
+     * @return The url the prefetched copy of the stream is served at, or null if its download has
+     *         not been started or did not start in time.
+     */
+    private String getPrefetchedUrl(Stream stream) {
+        CompletableFuture<String> prefetch;
+        synchronized (prefetches) {
+            prefetch = prefetches.get(stream);
+        }
+        return (prefetch == null) ? null : prefetch.getNow(null);
+    }
+
     /**
      * Play media in the play queue
      */
@@ -494,20 +662,19 @@ public class AVSAudioPlayer {
             return;
         }
 
-        Thread thread = new Thread() {
+        synchronized (speakQueue) {
+            // wait for any speech to complete before starting playback, the last speech item
+            // starts it
+            if (!speakQueue.isEmpty()) {
+                playbackWaitingForSpeech = true;
+                return;
+            }
+        }
+
+        contentChannel.execute(new Runnable() {
 
             @Override
             public void run() {
-                // wait for any speech to complete before starting playback
-                // also wait for playbackFinished to be called after getNextItem
-                while (!speakQueue.isEmpty() || waitForPlaybackFinished) {
-                    try {
-                        Thread.sleep(100);
-                    } catch (InterruptedException e) {
-                        log.error("Interupted while waiting to start playback", e);
-                    }
-                }
-
                 Stream stream = playQueue.peek();
 
                 if (stream == null) {
@@ -515,9 +682,32 @@ public class AVSAudioPlayer {
                     return;
                 }
 
+                if (stream.hasAttachedContent() && (stream.getOffsetInMilliseconds() > 0)) {
+                    CompletableFuture<Void> spooled =
+                            attachmentServer.whenSpooled(stream.getUrl());
+                    if (!spooled.isDone()) {
+                        // vlc can only seek in an attachment once it has been received completely
+                        spooled.thenRunAsync(() -> {
+                            if (playQueue.peek() == stream) {
+                                startPlayback();
+                            }
+                        }, contentChannel);
+                        return;
+                    }
+                }
+
                 latestStreamToken = stream.getToken();
 
-                if (!playItem(stream.getUrl(), stream.getOffsetInMilliseconds())) {
+                String url = stream.getUrl();
+                String fallback = null;
+                String prefetchedUrl = getPrefetchedUrl(stream);
+                if (prefetchedUrl != null) {
+                    // keep the original url in case vlc cannot play the prefetched copy
+                    fallback = url;
+                    url = prefetchedUrl;
+                }
+
+                if (!playItem(url, stream.getOffsetInMilliseconds(), fallback)) {
                     // an error will be reported from the vlcj listener
                     return;
                 }
@@ -532,8 +722,7 @@ public class AVSAudioPlayer {
                     interruptContent();
                 }
             }
-        };
-        thread.start();
+        });
     }
 
     /**
@@ -543,26 +732,31 @@ public class AVSAudioPlayer {
      *            Media item to play
      * @param offset
      *            Offset from the start to play at in milliseconds
+     * @param fallback
+     *            Url to play if the media player fails to play the given one, may be null
      * @return true if played successfully, false otherwise
      */
-    private boolean playItem(final String url, final long offset) {
-        synchronized (audioPlayer.getMediaPlayer()) {
+    private boolean playItem(final String url, final long offset, String fallback) {
+        synchronized (mediaPlayer) {
             // we are no longer in "PAUSED" state
             stopOffset = -1;
 
             // Reset url caches and state information
             streamUrls = new HashSet<String>();
             attemptedUrls = new HashSet<String>();
-
-            setupAudioPlayer();
+            fallbackUrl = fallback;
+            nearlyFinishedReported = false;
 
             log.debug("playing {}", url);
 
-            if (audioPlayer.getMediaPlayer().startMedia(url)) {
-                audioPlayer.getMediaPlayer().setVolume(currentVolume);
-                audioPlayer.getMediaPlayer().mute(currentlyMuted);
+            // the media is local, so vlc does not need to buffer as much of it
+            String[] options = attachmentServer.isServed(url)
+                    ? new String[] { ":network-caching=" + LOCAL_CACHING_MS } : new String[0];
+            if (mediaPlayer.startMedia(url, options)) {
+                mediaPlayer.setVolume(currentVolume);
+                mediaPlayer.mute(currentlyMuted);
                 if (offset > 0) {
-                    audioPlayer.getMediaPlayer().setTime(offset);
+                    mediaPlayer.setTime(offset);
                 }
 
                 return true;
@@ -575,63 +769,84 @@ public class AVSAudioPlayer {
      * Stop all media playback
      */
     public void stop() {
-        synchronized (audioPlayer.getMediaPlayer()) {
+        synchronized (mediaPlayer) {
             if (!playQueue.isEmpty() && (stopOffset == -1)) {
                 stopOffset = getProgress();
 
                 progressReporter.stop();
-                audioPlayer.getMediaPlayer().stop();
+                mediaPlayer.stop();
             }
         }
     }
 
+    /**
+     * Release the audio resources of the player on exit
+     */
+    public void shutdown() {
+        speakerChannel.shutdown();
+        contentChannel.shutdown();
+        prefetcher.shutdown();
+        earcons.close();
+        attachmentServer.stop();
+    }
+
     /**
      * Play items from the speech play queue
      */
     private void startSpeech() {
         notifyAlexaSpeechStarted();
-        final SpeakItem speak = speakQueue.peek();
+        // before speech is playing, so stopping the alarm does not finish the speech
+        interruptAlertsAndContent();
+
+        final SpeakItem speak;
+        synchronized (speakQueue) {
+            speak = speakQueue.peek();
+        }
         speechState = SpeechState.PLAYING;
         latestToken = speak.getToken();
 
-        controller
+        eventSender
                 .sendRequest(RequestFactory.createSpeechSynthesizerSpeechStartedEvent(latestToken));
 
-        interruptAlertsAndContent();
-
-        Thread thread = new Thread() {
+        final int generation = speechGeneration;
+        speakerChannel.execute(new Runnable() {
             @Override
             public void run() {
-                synchronized (playLock) {
-                    try {
-                        InputStream inpStream = speak.getAudio();
-                        play(inpStream);
-                        while (inpStream.available() > 0) {
-                            playLock.wait(TIMEOUT_IN_MS);
-                        }
-                    } catch (InterruptedException | IOException e) {
-                    }
-
+                playOnSpeaker(speak.getAudio(), generation);
+                if (generation == speechGeneration) {
                     finishedSpeechItem();
                 }
             }
-        };
-        thread.start();
+        });
     }
 
     /**
      * When a speech item is finished, perform the necessary actions
      */
     private void finishedSpeechItem() {
-        // remove the finished item
-        speakQueue.poll();
+        boolean finished;
+        boolean startPlayback = false;
+        synchronized (speakQueue) {
+            // remove the finished item
+            speakQueue.poll();
+            finished = speakQueue.isEmpty();
+            if (finished) {
+                startPlayback = playbackWaitingForSpeech;
+                playbackWaitingForSpeech = false;
+            }
+        }
 
-        if (speakQueue.isEmpty()) {
+        if (finished) {
+            // content that was interrupted by the speech, or waited for it, starts playing next
+            speechFinishedNanos = playQueue.isEmpty() ? 0 : System.nanoTime();
             speechState = SpeechState.FINISHED;
-            controller.sendRequest(
+            eventSender.sendRequest(
                     RequestFactory.createSpeechSynthesizerSpeechFinishedEvent(latestToken));
 
             notifyAlexaSpeechFinished();
+            if (startPlayback) {
+                startPlayback();
+            }
         } else {
             // if not done start the next speech
             startSpeech();
@@ -645,6 +860,7 @@ public class AVSAudioPlayer {
         // save the top item
         Stream top = playQueue.poll();
         // clear the queue and re-add the top item
+        releaseAttachments();
         playQueue.clear();
         if (top != null) {
             playQueue.add(top);
@@ -657,17 +873,45 @@ public class AVSAudioPlayer {
     public void clearAll() {
         // stop playback and clear all
         stop();
+        releaseAttachments();
         playQueue.clear();
     }
 
+    /**
+     * Delete the spooled attachment or prefetched copy of a stream that has been removed from the
+     * play queue.
+     */
+    private void releaseAttachment(Stream stream) {
+        if (stream == null) {
+            return;
+        }
+        if (stream.hasAttachedContent()) {
+            attachmentServer.release(stream.getUrl());
+        }
+        CompletableFuture<String> prefetch;
+        synchronized (prefetches) {
+            prefetch = prefetches.remove(stream);
+        }
+        if (prefetch != null) {
+            // also releases downloads that are still being started
+            prefetch.thenAccept(attachmentServer::release);
+        }
+    }
+
+    private void releaseAttachments() {
+        for (Stream stream : new ArrayList<>(playQueue)) {
+            releaseAttachment(stream);
+        }
+    }
+
     /**
      * Get the position of the currently playing media item
      *
      * @return The position in milliseconds of the stream
      */
     private long getProgress() {
-        synchronized (audioPlayer.getMediaPlayer()) {
-            return audioPlayer.getMediaPlayer().getTime();
+        synchronized (mediaPlayer) {
+            return mediaPlayer.getTime();
         }
     }
 
@@ -741,12 +985,35 @@ public class AVSAudioPlayer {
     }
 
     /**
-     * plays MP3 data from a resource asynchronously. will stop any previous playback and start the
-     * new audio
+     * Decode the given MP3 resources now, so that playing them later starts without delay
      */
-    public synchronized void playMp3FromResource(String resource) {
-        final InputStream inpStream = resLoader.getResourceAsStream(resource);
-        play(inpStream);
+    public void preloadEarcons(String... resources) {
+        for (String resource : resources) {
+            earcons.load(resource);
+        }
+    }
+
+    /**
+     * Plays MP3 data from a resource asynchronously, after any speech or earcon that is already
+     * queued on the default audio player
+     */
+    public void playMp3FromResource(final String resource) {
+        speakerChannel.execute(new Runnable() {
+            @Override
+            public void run() {
+                playResource(resource);
+            }
+        });
+    }
+
+    /**
+     * Play an MP3 resource from the earcon cache, or decode it if it is not cached. Must only be
+     * called on the speaker channel.
+     */
+    private void playResource(String resource) {
+        if (!earcons.play(resource)) {
+            playOnSpeaker(resLoader.getResourceAsStream(resource));
+        }
     }
 
     /**
@@ -760,36 +1027,32 @@ public class AVSAudioPlayer {
                 alertState = AlertState.INTERRUPTED;
             } else {
                 alertState = AlertState.PLAYING;
-
-                alarmThread = new Thread() {
-                    @Override
-                    public void run() {
-                        while (isAlarming() && !isSpeaking()) {
-                            if (Thread.interrupted()) {
-                                break;
-                            }
-                            InputStream inpStream = resLoader.getResourceAsStream("res/alarm.mp3");
-                            synchronized (playLock) {
-                                try {
-                                    play(inpStream);
-                                    while (inpStream.available() > 0) {
-                                        playLock.wait(TIMEOUT_IN_MS);
-                                    }
-                                } catch (InterruptedException | IOException e) {
-                                }
-                            }
-                        }
-                    }
-                };
-                alarmThread.start();
+                playAlarm(++alarmGeneration);
             }
         }
     }
 
+    /**
+     * Queue one repetition of the alarm sound on the default audio player. Each repetition queues
+     * the next one for as long as the alarm started with the given generation is active.
+     */
+    private void playAlarm(final int generation) {
+        speakerChannel.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (isAlarming() && !isSpeaking() && (generation == alarmGeneration)) {
+                    playResource(ALARM_SOUND);
+                    playAlarm(generation);
+                }
+            }
+        });
+    }
+
     /**
      * Stop the alarm
      */
     public void stopAlert() {
+        alarmGeneration++;
         interruptCurrentlyPlaying();
         alertState = AlertState.FINISHED;
     }
@@ -797,10 +1060,7 @@ public class AVSAudioPlayer {
     /**
      * Interrupt whatever audio is currently playing through the default audio player
      */
-    private synchronized void interruptCurrentlyPlaying() {
-        if (playThread != null) {
-            playThread.interrupt();
-        }
+    private void interruptCurrentlyPlaying() {
         stopPlayer();
     }
 
@@ -808,6 +1068,7 @@ public class AVSAudioPlayer {
      * Ends playback of the default audio player
      */
     private synchronized void stopPlayer() {
+        earcons.stop();
         if (speaker != null) {
             speaker.close();
             speaker = null;
@@ -819,33 +1080,44 @@ public class AVSAudioPlayer {
     }
 
     /**
-     * Play a generic input stream through the default audio player without blocking
+     * Play a generic input stream through the default audio player. Must only be called on the
+     * speaker channel, and blocks until the audio has been played or the player has been stopped.
      */
-    private synchronized void play(final InputStream inpStream) {
-        play(inpStream, false);
+    private void playOnSpeaker(InputStream inpStream) {
+        playOnSpeaker(inpStream, null);
     }
 
     /**
-     * Play a generic input stream through the default audio player
+     * Play an input stream on the speaker, as {@link #playOnSpeaker(InputStream)} does.
+     *
+     * @param generation
+     *            The speech generation the audio belongs to, it is not played if speech has been
+     *            interrupted since. Null if the audio is not speech.
      */
-    private synchronized void play(final InputStream inpStream, boolean block) {
-        playThread = new Thread() {
-            @Override
-            public void run() {
-                synchronized (playLock) {
-                    try {
-                        speaker = new Player(inpStream);
-                        speaker.play();
-                    } catch (Exception e) {
-                        log.error("An error occurred while trying to play audio", e);
-                    } finally {
-                        IOUtils.closeQuietly(inpStream);
-                    }
-                    playLock.notifyAll();
+    private void playOnSpeaker(InputStream inpStream, Integer generation) {
+        // devices without software mixing cannot open the speaker while the earcon line is open
+        earcons.closeLine();
+        Player player = null;
+        try {
+            player = new Player(inpStream);
+            synchronized (this) {
+                if ((generation != null) && (generation != speechGeneration)) {
+                    player.close();
+                    return;
+                }
+                speaker = player;
+            }
+            player.play();
+        } catch (Exception e) {
+            log.error("An error occurred while trying to play audio", e);
+        } finally {
+            synchronized (this) {
+                if (speaker == player) {
+                    speaker = null;
                 }
             }
-        };
-        playThread.start();
+            IOUtils.closeQuietly(inpStream);
+        }
     }
 
     private void notifyAlexaSpeechStarted() {
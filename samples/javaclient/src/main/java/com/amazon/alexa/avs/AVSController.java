@@ -11,6 +11,7 @@ package com.amazon.alexa.avs;
 import com.amazon.alexa.avs.AVSAudioPlayer.AlexaSpeechListener;
 import com.amazon.alexa.avs.AlertManager.ResultListener;
 import com.amazon.alexa.avs.auth.AccessTokenListener;
+import com.amazon.alexa.avs.config.DeviceConfig.AudioCaptureInformation;
 import com.amazon.alexa.avs.exception.DirectiveHandlingException;
 import com.amazon.alexa.avs.exception.DirectiveHandlingException.ExceptionType;
 import com.amazon.alexa.avs.http.AVSClient;
@@ -31,34 +32,39 @@ import com.amazon.alexa.avs.message.response.speechsynthesizer.Speak;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
 import java.io.InputStream;
 import java.time.ZonedDateTime;
-import java.util.Arrays;
-import java.util.HashSet;
 import java.util.Set;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedBlockingDeque;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 
+import javax.sound.sampled.LineUnavailableException;
+
 public class AVSController
         implements RecordingStateListener, AlertHandler, AlertEventListener, AccessTokenListener,
-        DirectiveDispatcher, AlexaSpeechListener, ParsingFailedHandler, UserActivityListener {
+        DirectiveDispatcher, AlexaSpeechListener, ParsingFailedHandler, UserActivityListener,
+        EventSender {
     private final AudioCapture microphone;
     private final AVSClient avsClient;
     private final DialogRequestIdAuthority dialogRequestIdAuthority;
+    private final RecognizeLatencyTracker recognizeLatencyTracker;
     private AlertManager alertManager;
 
-    private boolean eventRunning = false; // is an event currently being sent
+    // one future per event that is being sent, completed and removed once it has been sent
+    private final Set<CompletableFuture<Void>> eventsBeingSent = ConcurrentHashMap.newKeySet();
 
     private static final AudioInputFormat AUDIO_TYPE = AudioInputFormat.LPCM;
     private static final String START_SOUND = "res/start.mp3";
     private static final String END_SOUND = "res/stop.mp3";
     private static final String ERROR_SOUND = "res/error.mp3";
     private static final SpeechProfile PROFILE = SpeechProfile.CLOSE_TALK;
-    private static final String FORMAT = "AUDIO_L16_RATE_16000_CHANNELS_1";
 
     private static final Logger log = LoggerFactory.getLogger(AVSController.class);
     private static final long MILLISECONDS_PER_SECOND = 1000;
@@ -75,28 +81,70 @@ public class AVSController
 
     private AtomicLong lastUserInteractionTimestampSeconds;
 
-    private final Set<ExpectSpeechListener> expectSpeechListeners;
+    private final RecordingSession recordingSession;
+
+    private final int endpointHangoverMs;
+    // Null to upload the captured audio as is
+    private final Class<? extends AudioEncoder> audioEncoderClass;
+    private final AudioInputFormat uploadFormat;
+    private volatile EndOfSpeechListener endOfSpeechListener;
+    // Null if no wake word detector is configured
+    private final WakeWordDetector wakeWordDetector;
 
     public AVSController(ExpectSpeechListener listenHandler, AVSAudioPlayerFactory audioFactory,
             AlertManagerFactory alarmFactory, AVSClientFactory avsClientFactory,
             DialogRequestIdAuthority dialogRequestIdAuthority) throws Exception {
+        this(listenHandler, audioFactory, alarmFactory, avsClientFactory,
+                dialogRequestIdAuthority, new AudioCaptureInformation());
+    }
 
-        this.microphone = AudioCapture.getAudioHardware(AUDIO_TYPE.getAudioFormat(),
-                new MicrophoneLineFactory());
+    /**
+     * @param listenHandler
+     *            Notified when it is time to listen for the answer to an ExpectSpeech directive,
+     *            i.e. once the request that returned it has been processed, see
+     *            {@link #processingFinished()}, and Alexa has stopped speaking.
+     */
+    public AVSController(ExpectSpeechListener listenHandler, AVSAudioPlayerFactory audioFactory,
+            AlertManagerFactory alarmFactory, AVSClientFactory avsClientFactory,
+            DialogRequestIdAuthority dialogRequestIdAuthority,
+            AudioCaptureInformation audioCaptureInfo) throws Exception {
+
+        this.microphone = AudioCapture.getAudioHardware(AUDIO_TYPE,
+                new MicrophoneLineFactory(audioCaptureInfo.getMicrophone(),
+                        new File(MicrophoneCache.FILE_NAME)),
+                audioCaptureInfo.getCaptureLatencyMs());
+        this.endpointHangoverMs = audioCaptureInfo.getEndpointHangoverMs();
+        this.audioEncoderClass = loadAudioEncoderClass(audioCaptureInfo.getEncoderClass());
+        this.uploadFormat = (audioEncoderClass == null) ? AUDIO_TYPE
+                : audioEncoderClass.getDeclaredConstructor().newInstance().getFormat();
+        boolean continuous = false;
+        if (audioCaptureInfo.isContinuous()) {
+            try {
+                microphone.startContinuousCapture(audioCaptureInfo.getPreRollMs());
+                continuous = true;
+            } catch (LineUnavailableException e) {
+                log.error("Unable to keep the microphone open, opening it for every recording", e);
+            }
+        }
+        this.wakeWordDetector = continuous ? createWakeWordDetector(audioCaptureInfo) : null;
         this.player = audioFactory.getAudioPlayer(this);
         this.player.registerAlexaSpeechListener(this);
+        this.player.preloadEarcons(START_SOUND, END_SOUND, ERROR_SOUND);
         this.dialogRequestIdAuthority = dialogRequestIdAuthority;
         speechRequestAudioPlayerPauseController =
                 new SpeechRequestAudioPlayerPauseController(player);
 
-        expectSpeechListeners = new HashSet<ExpectSpeechListener>(
-                Arrays.asList(listenHandler, speechRequestAudioPlayerPauseController));
+        // Get off the thread that finished the request or the speech, the handler starts listening
+        recordingSession = new RecordingSession(
+                () -> scheduledExecutor.execute(listenHandler::onExpectSpeechDirective));
         dependentQueue = new LinkedBlockingDeque<>();
 
         independentQueue = new LinkedBlockingDeque<>();
 
-        DirectiveEnqueuer directiveEnqueuer =
-                new DirectiveEnqueuer(dialogRequestIdAuthority, dependentQueue, independentQueue);
+        recognizeLatencyTracker = new RecognizeLatencyTracker();
+
+        DirectiveEnqueuer directiveEnqueuer = new DirectiveEnqueuer(dialogRequestIdAuthority,
+                dependentQueue, independentQueue, recognizeLatencyTracker);
 
         avsClient = avsClientFactory.getAVSClient(directiveEnqueuer, this);
 
@@ -121,6 +169,7 @@ public class AVSController
             @Override
             public void run() {
                 player.stop();
+                player.shutdown();
                 avsClient.shutdown();
             }
         });
@@ -137,6 +186,61 @@ public class AVSController
                 TimeUnit.HOURS);
     }
 
+    private Class<? extends AudioEncoder> loadAudioEncoderClass(String className) {
+        if (className == null) {
+            return null;
+        }
+        try {
+            Class<? extends AudioEncoder> encoderClass =
+                    Class.forName(className).asSubclass(AudioEncoder.class);
+            log.info("Encoding uploaded audio as {} with {}",
+                    encoderClass.getDeclaredConstructor().newInstance().getFormat(), className);
+            return encoderClass;
+        } catch (ReflectiveOperationException | ClassCastException e) {
+            log.error("Unable to load the audio encoder {}, uploading uncompressed audio",
+                    className, e);
+            return null;
+        }
+    }
+
+    private WakeWordDetector createWakeWordDetector(AudioCaptureInformation audioCaptureInfo) {
+        String className = audioCaptureInfo.getWakeWordDetectorClass();
+        String template = audioCaptureInfo.getWakeWordTemplate();
+        try {
+            if (className != null) {
+                log.info("Detecting the wake word with {}", className);
+                return Class.forName(className).asSubclass(WakeWordDetector.class)
+                        .getDeclaredConstructor().newInstance();
+            }
+            if (template != null) {
+                log.info("Detecting the wake word recorded in {}", template);
+                return EnergyTemplateDetector.fromFile(new File(template),
+                        AUDIO_TYPE.getAudioFormat());
+            }
+        } catch (Exception e) {
+            log.error("Unable to create the wake word detector, the wake word is not detected", e);
+        }
+        return null;
+    }
+
+    /**
+     * Notify the given listener whenever the configured {@link WakeWordDetector} has detected the
+     * wake word. The listener is called on a thread of the controller and may start a recording.
+     *
+     * @return false if no wake word detector is configured, which requires capturing continuously.
+     */
+    public boolean setWakeWordListener(final WakeWordListener listener) {
+        if (wakeWordDetector == null) {
+            return false;
+        }
+        microphone.setWakeWordDetector(wakeWordDetector, (wakeWordStart, wakeWordEnd) -> {
+            // Get off the capture thread, starting a recording may block
+            scheduledExecutor.execute(
+                    () -> listener.onWakeWordDetected(wakeWordStart, wakeWordEnd));
+        });
+        return true;
+    }
+
     public void startHandlingDirectives() {
         dependentDirectiveThread.start();
         independentDirectiveThread.start();
@@ -155,18 +259,54 @@ public class AVSController
     // start the recording process and send to server
     // takes an optional RMS callback and an optional request callback
     public void startRecording(RecordingRMSListener rmsListener, RequestListener requestListener) {
+        startRecording(rmsListener, requestListener, null);
+    }
+
+    /**
+     * Start the recording process and send it to the server. If an end of speech listener is
+     * given, the recording is endpointed by an {@link EnergyEndpointer} and the listener is
+     * notified on the capture thread once the user has stopped speaking. It is up to the listener
+     * to call {@link #stopRecording()}.
+     */
+    public void startRecording(RecordingRMSListener rmsListener, RequestListener requestListener,
+            EndOfSpeechListener endOfSpeechListener) {
+        startRecording(rmsListener, requestListener, endOfSpeechListener, -1);
+    }
+
+    /**
+     * Start the recording process at the given position of the captured audio, e.g. the start of
+     * the wake word reported to a {@link WakeWordListener}.
+     */
+    public void startRecording(RecordingRMSListener rmsListener, RequestListener requestListener,
+            EndOfSpeechListener endOfSpeechListener, long startPosition) {
+        this.endOfSpeechListener = endOfSpeechListener;
+        recordingSession.startListening();
         try {
             String dialogRequestId = dialogRequestIdAuthority.createNewDialogRequestId();
+            recognizeLatencyTracker.recognizeStarted(dialogRequestId);
 
             RequestBody body = RequestFactory.createSpeechRegonizerRecognizeRequest(dialogRequestId,
-                    PROFILE, FORMAT, player.getPlaybackState(), player.getSpeechState(),
-                    alertManager.getState(), player.getVolumeState());
+                    PROFILE, uploadFormat.getRecognizeFormat(), player.getPlaybackState(),
+                    player.getSpeechState(), alertManager.getState(), player.getVolumeState());
 
             dependentQueue.clear();
 
-            InputStream inputStream = microphone.getAudioInputStream(this, rmsListener);
+            Endpointer endpointer = null;
+            if (endOfSpeechListener != null) {
+                endpointer = new EnergyEndpointer(AUDIO_TYPE.getAudioFormat().getSampleRate(),
+                        endpointHangoverMs, EnergyEndpointer.DEFAULT_NO_SPEECH_TIMEOUT_MS,
+                        EnergyEndpointer.DEFAULT_MIN_SPEECH_RMS);
+            }
+            InputStream inputStream = microphone.getAudioInputStream(this, rmsListener,
+                    endpointer, startPosition);
 
-            avsClient.sendEvent(body, inputStream, requestListener, AUDIO_TYPE);
+            if (audioEncoderClass != null) {
+                inputStream = new EncodingInputStream(inputStream,
+                        audioEncoderClass.getDeclaredConstructor().newInstance());
+            }
+
+            avsClient.sendEvent(body, inputStream, requestListener, uploadFormat,
+                    recognizeLatencyTracker);
 
             speechRequestAudioPlayerPauseController.startSpeechRequest();
 
@@ -211,18 +351,33 @@ public class AVSController
         }
     }
 
+    @Override
     public void sendRequest(RequestBody body) {
-        eventRunning = true;
+        CompletableFuture<Void> sent = new CompletableFuture<>();
+        eventsBeingSent.add(sent);
+        sent.thenRun(() -> eventsBeingSent.remove(sent));
         try {
-            avsClient.sendEvent(body);
+            // the event is only queued here, it has been sent once the client reports its result
+            avsClient.sendEvent(body, new RequestListener() {
+                @Override
+                public void onRequestSuccess() {
+                    sent.complete(null);
+                }
+
+                @Override
+                public void onRequestError(Throwable e) {
+                    sent.complete(null);
+                }
+            });
         } catch (Exception e) {
             log.error("Failed to send request", e);
+            sent.complete(null);
         }
-        eventRunning = false;
     }
 
-    public boolean eventRunning() {
-        return eventRunning;
+    @Override
+    public CompletableFuture<Void> whenEventsSent() {
+        return CompletableFuture.allOf(eventsBeingSent.toArray(new CompletableFuture<?>[0]));
     }
 
     @Override
@@ -345,12 +500,20 @@ public class AVSController
     }
 
     private void notifyExpectSpeechDirective() {
-        for (ExpectSpeechListener listener : expectSpeechListeners) {
-            listener.onExpectSpeechDirective();
-        }
+        speechRequestAudioPlayerPauseController.onExpectSpeechDirective();
+        recordingSession.expectSpeech();
+    }
+
+    /**
+     * @return Whether the client is idle, listening, or processing a Recognize request.
+     */
+    public RecordingSession.State getRecordingState() {
+        return recordingSession.getState();
     }
 
     public void stopRecording() {
+        recordingSession.stopListening();
+        recognizeLatencyTracker.endOfSpeech();
         speechRequestAudioPlayerPauseController.finishedListening();
         microphone.stopCapture();
     }
@@ -367,6 +530,15 @@ public class AVSController
         player.playMp3FromResource(END_SOUND);
     }
 
+    // audio state callback for when the endpointer has detected the end of speech
+    @Override
+    public void endOfSpeechDetected() {
+        EndOfSpeechListener listener = endOfSpeechListener;
+        if (listener != null) {
+            listener.onEndOfSpeech();
+        }
+    }
+
     public boolean isSpeaking() {
         return player.isSpeaking();
     }
@@ -416,11 +588,13 @@ public class AVSController
     public void processingFinished() {
         speechRequestAudioPlayerPauseController
                 .speechRequestProcessingFinished(dependentQueue.size());
+        recordingSession.finishProcessing();
     }
 
     @Override
     public void onAlexaSpeechStarted() {
         dependentDirectiveThread.block();
+        recordingSession.alexaSpeechStarted();
 
         if (alertManager.hasActiveAlerts()) {
             for (String alertToken : alertManager.getActiveAlerts()) {
@@ -432,6 +606,7 @@ public class AVSController
     @Override
     public void onAlexaSpeechFinished() {
         dependentDirectiveThread.unblock();
+        recordingSession.alexaSpeechFinished();
 
         if (alertManager.hasActiveAlerts()) {
             for (String alertToken : alertManager.getActiveAlerts()) {
@@ -0,0 +1,277 @@
+/**
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * You may not use this file except in compliance with the License. A copy of the License is located the "LICENSE.txt"
+ * file accompanying this source. This file is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.amazon.alexa.avs;
+
+import com.amazon.alexa.avs.auth.AccessTokenListener;
+import com.amazon.alexa.avs.auth.AuthSetup;
+import com.amazon.alexa.avs.auth.companionservice.RegCodeDisplayHandler;
+import com.amazon.alexa.avs.config.DeviceConfig;
+import com.amazon.alexa.avs.config.DeviceConfigUtils;
+import com.amazon.alexa.avs.http.AVSClientFactory;
+import com.amazon.alexa.avs.metrics.Metrics;
+import com.amazon.alexa.avs.metrics.ProcessStats;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Runs the client without a user interface, for devices without a display.
+ *
+ * Unlike {@link AVSApp} this does not load AWT or Swing. The client is driven through the
+ * programmatic API ({@link #startListening()}, {@link #stopListening()} and
+ * {@link #handlePlaybackAction(PlaybackAction)}) or through text commands, one per line, read from
+ * the standard input or, if a control port is given, from a socket bound to the loopback
+ * interface:
+ *
+ * <pre>
+ * listen | stop | play | pause | next | previous | status | metrics | quit
+ * </pre>
+ *
+ * If a wake word detector is configured, saying the wake word starts listening as well.
+ *
+ * Recordings are ended by the {@link EnergyEndpointer} or the stop command. Startup time and
+ * resident memory are logged once the client has started, see {@link ProcessStats}.
+ *
+ * Usage: AVSHeadlessApp [config file] [control port]
+ */
+public class AVSHeadlessApp implements ExpectSpeechListener, RegCodeDisplayHandler,
+        AccessTokenListener, RequestListener, EndOfSpeechListener, WakeWordListener {
+
+    private static final Logger log = LoggerFactory.getLogger(AVSHeadlessApp.class);
+
+    private final AVSController controller;
+    private final DeviceConfig deviceConfig;
+    private final AuthSetup authSetup;
+    // Runs callbacks that take the app's lock off the threads that report them
+    private final ExecutorService callbackExecutor;
+    private volatile boolean hasAccessToken;
+
+    public static void main(String[] args) throws Exception {
+        // Make sure nothing pulls in a display connection
+        System.setProperty("java.awt.headless", "true");
+
+        String configName = (args.length > 0) ? args[0] : DeviceConfig.FILE_NAME;
+        AVSHeadlessApp app = new AVSHeadlessApp(DeviceConfigUtils.readConfigFile(configName));
+        ProcessStats.recordStartup(AVSHeadlessApp.class.getSimpleName());
+
+        if (args.length > 1) {
+            app.startControlServer(Integer.parseInt(args[1]));
+        } else {
+            app.startConsole();
+        }
+    }
+
+    public AVSHeadlessApp(DeviceConfig config) throws Exception {
+        deviceConfig = config;
+        callbackExecutor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable);
+            thread.setName(AVSHeadlessApp.class.getSimpleName());
+            thread.setDaemon(true);
+            return thread;
+        });
+        controller = new AVSController(this, new AVSAudioPlayerFactory(), new AlertManagerFactory(),
+                new AVSClientFactory(deviceConfig), DialogRequestIdAuthority.getInstance(),
+                deviceConfig.getAudioCaptureInfo());
+
+        authSetup = new AuthSetup(config, this);
+        authSetup.addAccessTokenListener(this);
+        authSetup.addAccessTokenListener(controller);
+        authSetup.startProvisioningThread();
+
+        controller.startHandlingDirectives();
+        if (controller.setWakeWordListener(this)) {
+            log.info("Listening for the wake word");
+        }
+    }
+
+    public RecordingSession.State getState() {
+        return controller.getRecordingState();
+    }
+
+    /**
+     * Start a Recognize request, the recording ends when the user stops speaking or
+     * {@link #stopListening()} is called.
+     *
+     * @return false if a request is already in progress.
+     */
+    public boolean startListening() {
+        return startListening(-1);
+    }
+
+    /**
+     * Start a Recognize request with the audio captured since the given position, see
+     * {@link WakeWordListener}.
+     *
+     * @return false if a request is already in progress.
+     */
+    public synchronized boolean startListening(long startPosition) {
+        if (getState() != RecordingSession.State.IDLE) {
+            return false;
+        }
+        controller.onUserActivity();
+        controller.startRecording(null, this, this, startPosition);
+        return true;
+    }
+
+    /**
+     * Stop the recording so the request can complete.
+     *
+     * @return false if not listening.
+     */
+    public synchronized boolean stopListening() {
+        if (getState() != RecordingSession.State.LISTENING) {
+            return false;
+        }
+        controller.stopRecording();
+        return true;
+    }
+
+    public void handlePlaybackAction(PlaybackAction action) {
+        controller.onUserActivity();
+        controller.handlePlaybackAction(action);
+    }
+
+    private synchronized void finishProcessing() {
+        controller.processingFinished();
+    }
+
+    @Override
+    public void onRequestSuccess() {
+        finishProcessing();
+    }
+
+    @Override
+    public synchronized void onRequestError(Throwable e) {
+        log.error("An error occured creating speech request", e);
+        stopListening();
+        finishProcessing();
+    }
+
+    @Override
+    public void onEndOfSpeech() {
+        // Called on the capture thread, which must not wait for the lock of a command in progress
+        callbackExecutor.execute(this::stopListening);
+    }
+
+    @Override
+    public void onWakeWordDetected(long wakeWordStart, long wakeWordEnd) {
+        startListening(wakeWordStart);
+    }
+
+    @Override
+    public void onExpectSpeechDirective() {
+        // The controller only calls this once the previous request has finished
+        if (!startListening()) {
+            log.warn("Not listening for the expected speech, the client is {}", getState());
+        }
+    }
+
+    @Override
+    public void displayRegCode(String regCode) {
+        String regUrl =
+                deviceConfig.getCompanionServiceInfo().getServiceUrl() + "/provision/" + regCode;
+        log.info("Please register your device by visiting the following website on any system "
+                + "and following the instructions: {}", regUrl);
+    }
+
+    @Override
+    public void onAccessTokenReceived(String accessToken) {
+        hasAccessToken = true;
+    }
+
+    /**
+     * Execute a single control command.
+     *
+     * @return The response to the command.
+     */
+    public String handleCommand(String command) {
+        switch (command.trim().toLowerCase(Locale.US)) {
+            case "listen":
+                return startListening() ? "OK" : "ERROR busy: " + getState();
+            case "stop":
+                return stopListening() ? "OK" : "ERROR not listening: " + getState();
+            case "play":
+                handlePlaybackAction(PlaybackAction.PLAY);
+                return "OK";
+            case "pause":
+                handlePlaybackAction(PlaybackAction.PAUSE);
+                return "OK";
+            case "next":
+                handlePlaybackAction(PlaybackAction.NEXT);
+                return "OK";
+            case "previous":
+                handlePlaybackAction(PlaybackAction.PREVIOUS);
+                return "OK";
+            case "status":
+                return "OK state=" + getState() + " authorized=" + hasAccessToken + " speaking="
+                        + controller.isSpeaking() + " playing=" + controller.isPlaying()
+                        + " uptimeMs=" + ProcessStats.getUptimeMs() + " residentKb="
+                        + ProcessStats.getResidentMemoryKb();
+            case "metrics":
+                Metrics.getInstance().logSummary();
+                return "OK";
+            case "quit":
+                Metrics.getInstance().logSummary();
+                System.exit(0);
+                return "OK";
+            case "":
+                return "";
+            default:
+                return "ERROR unknown command: " + command;
+        }
+    }
+
+    /**
+     * Read commands from the standard input until it is closed.
+     */
+    private void startConsole() throws IOException {
+        BufferedReader reader =
+                new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+        String line;
+        while ((line = reader.readLine()) != null) {
+            System.out.println(handleCommand(line));
+        }
+        log.info("Standard input closed, no longer reading commands from it");
+    }
+
+    /**
+     * Accept control connections on the loopback interface, one at a time.
+     */
+    private void startControlServer(int port) throws IOException {
+        try (ServerSocket serverSocket =
+                new ServerSocket(port, 1, InetAddress.getLoopbackAddress())) {
+            log.info("Accepting control commands on {}", serverSocket.getLocalSocketAddress());
+            while (true) {
+                try (Socket socket = serverSocket.accept();
+                        BufferedReader reader = new BufferedReader(new InputStreamReader(
+                                socket.getInputStream(), StandardCharsets.UTF_8));
+                        PrintWriter writer = new PrintWriter(socket.getOutputStream(), true)) {
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        writer.println(handleCommand(line));
+                    }
+                } catch (IOException e) {
+                    log.warn("Control connection failed", e);
+                }
+            }
+        }
+    }
+}
@@ -22,13 +22,19 @@ public class AVSRequest {
     private final RetryPolicy retryPolicy;
     private final MultipartParser multipartParser;
     private final RequestListener requestListener;
+    private final String orderingKey;
 
-    public AVSRequest(Resource resource, ContentProvider contentProvider, RetryPolicy retryPolicy, MultipartParser multipartParser, RequestListener requestListener) {
+    public AVSRequest(Resource resource, ContentProvider contentProvider, RetryPolicy retryPolicy, MultipartParser multipartParser, RequestListener requestListener, String orderingKey) {
         this.resource = resource;
         this.contentProvider = contentProvider;
         this.retryPolicy = retryPolicy;
         this.multipartParser = multipartParser;
         this.requestListener = requestListener;
+        this.orderingKey = orderingKey;
+    }
+
+    public AVSRequest(Resource resource, ContentProvider contentProvider, RetryPolicy retryPolicy, MultipartParser multipartParser, RequestListener requestListener) {
+        this(resource, contentProvider, retryPolicy, multipartParser, requestListener, resource.name());
     }
 
     public AVSRequest(Resource resource, ContentProvider contentProvider, RetryPolicy retryPolicy, MultipartParser multipartParser) {
@@ -54,4 +60,12 @@ public class AVSRequest {
     public Optional<RequestListener> getRequestListener() {
         return Optional.ofNullable(requestListener);
     }
+
+    /**
+     * @return The key this request must be ordered against. Requests with the same key are never
+     *         sent in parallel.
+     */
+    public String getOrderingKey() {
+        return orderingKey;
+    }
 }
@@ -8,24 +8,54 @@
  */
 package com.amazon.alexa.avs;
 
+import com.amazon.alexa.avs.config.DeviceConfig.AudioCaptureInformation;
+import com.amazon.alexa.avs.metrics.LatencyRecorder;
+import com.amazon.alexa.avs.metrics.Metrics;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.PipedInputStream;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 import javax.sound.sampled.AudioFormat;
 import javax.sound.sampled.LineUnavailableException;
 import javax.sound.sampled.TargetDataLine;
 
+/**
+ * Captures audio from the microphone for Recognize requests.
+ *
+ * By default the microphone line is opened for every recording and closed by
+ * {@link #stopCapture()}. In continuous mode, see {@link #startContinuousCapture(int)}, the line
+ * stays open and the most recent audio is kept in a pre-roll buffer. Every recording then starts
+ * with the pre-roll, so it includes the audio captured just before the recording was started and
+ * does not pay the cost of opening the line.
+ *
+ * The line is opened with a buffer of the configured capture latency and read in whole chunks of
+ * the upload format, about five reads per buffer. The time between reads and the audio left in the
+ * line buffer after every read are recorded in the audioCapture.readJitter and
+ * audioCapture.bufferedLatency {@link Metrics} latencies. Reads that find the line buffer full,
+ * and so have probably lost audio, are counted in audioCapture.lineBufferFull.
+ */
 public class AudioCapture {
     private static AudioCapture sAudioCapture;
     private final TargetDataLine microphoneLine;
     private AudioFormat audioFormat;
+    // The format of the microphone line, audio is converted to audioFormat if they differ
+    private final AudioFormat captureFormat;
     private AudioBufferThread thread;
+    private boolean continuous;
+    // Only used while capturing continuously
+    private volatile WakeWordStage wakeWordStage;
 
     private static final int BUFFER_SIZE_IN_SECONDS = 6;
+    private static final int READS_PER_LINE_BUFFER = 5;
+
+    private final int chunkSizeMs;
+    private final int captureLatencyMs;
 
     private final int BUFFER_SIZE_IN_BYTES;
 
@@ -34,60 +64,221 @@ public class AudioCapture {
     public static AudioCapture getAudioHardware(final AudioFormat audioFormat,
             MicrophoneLineFactory microphoneLineFactory) {
         if (sAudioCapture == null) {
-            sAudioCapture = new AudioCapture(audioFormat, microphoneLineFactory);
+            sAudioCapture = new AudioCapture(audioFormat, microphoneLineFactory,
+                    AudioInputFormat.LPCM.getChunkSizeMs(),
+                    AudioCaptureInformation.DEFAULT_CAPTURE_LATENCY_MS);
+        }
+        return sAudioCapture;
+    }
+
+    /**
+     * @param captureLatencyMs
+     *            The size of the microphone line buffer in milliseconds of audio.
+     */
+    public static AudioCapture getAudioHardware(final AudioInputFormat audioInputFormat,
+            MicrophoneLineFactory microphoneLineFactory, int captureLatencyMs) {
+        if (sAudioCapture == null) {
+            sAudioCapture = new AudioCapture(audioInputFormat.getAudioFormat(),
+                    microphoneLineFactory, audioInputFormat.getChunkSizeMs(), captureLatencyMs);
         }
         return sAudioCapture;
     }
 
     private AudioCapture(final AudioFormat audioFormat,
-            MicrophoneLineFactory microphoneLineFactory) {
+            MicrophoneLineFactory microphoneLineFactory, int chunkSizeMs, int captureLatencyMs) {
         super();
         this.audioFormat = audioFormat;
-        microphoneLine = microphoneLineFactory.getMicrophone();
+        this.chunkSizeMs = chunkSizeMs;
+        this.captureLatencyMs = captureLatencyMs;
+        microphoneLine = microphoneLineFactory.getMicrophone(audioFormat);
+        captureFormat = (microphoneLine == null) ? audioFormat
+                : microphoneLineFactory.getCaptureFormat(microphoneLine, audioFormat);
+        if (!captureFormat.equals(audioFormat)) {
+            log.info("Capturing {} and converting it to {}", captureFormat, audioFormat);
+        }
+
+        BUFFER_SIZE_IN_BYTES = getBufferSizeInBytes(audioFormat, BUFFER_SIZE_IN_SECONDS * 1000);
+    }
 
-        BUFFER_SIZE_IN_BYTES =
-                (int) ((audioFormat.getSampleSizeInBits() * audioFormat.getSampleRate()) / 8
-                        * BUFFER_SIZE_IN_SECONDS);
+    /**
+     * Keep the microphone line open and the last preRollMs of audio buffered, so that every
+     * recording starts with the audio captured just before it.
+     */
+    public synchronized void startContinuousCapture(int preRollMs)
+            throws LineUnavailableException {
+        if (continuous) {
+            return;
+        }
+        startCapture();
+        continuous = true;
+        thread = new AudioBufferThread(
+                new PreRollBuffer(getBufferSizeInBytes(audioFormat, preRollMs)));
+        thread.start();
+        log.info("Capturing continuously with {} ms of pre-roll", preRollMs);
+    }
+
+    /**
+     * Close the microphone line that was kept open by {@link #startContinuousCapture(int)}.
+     */
+    public synchronized void stopContinuousCapture() {
+        if (continuous) {
+            continuous = false;
+            closeLine();
+        }
+    }
+
+    /**
+     * Spot the wake word in the audio captured between recordings. Only works while capturing
+     * continuously. The listener is notified on the capture thread and must not block.
+     *
+     * @param detector
+     *            The detector to use, null to stop spotting the wake word.
+     */
+    public synchronized void setWakeWordDetector(WakeWordDetector detector,
+            WakeWordListener listener) {
+        if (!continuous && (detector != null)) {
+            log.warn("The wake word is only detected while capturing continuously");
+        }
+        wakeWordStage = (detector == null) ? null : new WakeWordStage(detector, listener);
     }
 
     public InputStream getAudioInputStream(final RecordingStateListener stateListener,
             final RecordingRMSListener rmsListener) throws LineUnavailableException, IOException {
+        return getAudioInputStream(stateListener, rmsListener, null);
+    }
+
+    public InputStream getAudioInputStream(final RecordingStateListener stateListener,
+            final RecordingRMSListener rmsListener, final Endpointer endpointer)
+            throws LineUnavailableException, IOException {
+        return getAudioInputStream(stateListener, rmsListener, endpointer, -1);
+    }
+
+    /**
+     * @param endpointer
+     *            Processes the recording on the capture thread, the state listener is notified once
+     *            it detects the end of speech (optional - can be null).
+     * @param startPosition
+     *            Where to start the recording when capturing continuously, e.g. the start of the
+     *            wake word, see {@link WakeWordListener}. The recording starts with as much of the
+     *            audio since then as the pre-roll holds. -1 to start with all of the pre-roll.
+     */
+    public synchronized InputStream getAudioInputStream(final RecordingStateListener stateListener,
+            final RecordingRMSListener rmsListener, final Endpointer endpointer,
+            long startPosition) throws LineUnavailableException, IOException {
+        AudioRingBuffer ringBuffer = new AudioRingBuffer(BUFFER_SIZE_IN_BYTES, false);
+        if (continuous) {
+            thread.startRecording(new AudioStateOutputStream(ringBuffer, stateListener,
+                    rmsListener, new AudioLevelMeter(), endpointer), startPosition);
+            return ringBuffer.getInputStream();
+        }
+
         try {
             startCapture();
-            PipedInputStream inputStream = new PipedInputStream(BUFFER_SIZE_IN_BYTES);
-            thread = new AudioBufferThread(inputStream, stateListener, rmsListener);
+            thread = new AudioBufferThread(null);
+            thread.startRecording(new AudioStateOutputStream(ringBuffer, stateListener,
+                    rmsListener, new AudioLevelMeter(), endpointer), -1);
             thread.start();
-            return inputStream;
-        } catch (LineUnavailableException | IOException e) {
+            return ringBuffer.getInputStream();
+        } catch (LineUnavailableException e) {
             stopCapture();
             throw e;
         }
     }
 
-    public void stopCapture() {
-        microphoneLine.stop();
-        microphoneLine.close();
-
+    public synchronized void stopCapture() {
+        if (continuous) {
+            thread.stopRecording();
+        } else {
+            closeLine();
+        }
     }
 
     private void startCapture() throws LineUnavailableException {
-        microphoneLine.open(audioFormat);
+        if (microphoneLine == null) {
+            throw new LineUnavailableException("No microphone supports " + audioFormat);
+        }
+        int lineBufferSize = getBufferSizeInBytes(captureFormat, captureLatencyMs);
+        microphoneLine.open(captureFormat, lineBufferSize);
         microphoneLine.start();
+        if (microphoneLine.getBufferSize() != lineBufferSize) {
+            log.info("Requested a {} byte microphone buffer, got {} bytes", lineBufferSize,
+                    microphoneLine.getBufferSize());
+        }
+    }
+
+    private void closeLine() {
+        if (microphoneLine == null) {
+            return;
+        }
+        microphoneLine.stop();
+        microphoneLine.close();
     }
 
     public int getAudioBufferSizeInBytes() {
         return BUFFER_SIZE_IN_BYTES;
     }
 
+    private static int getBufferSizeInBytes(AudioFormat format, int milliseconds) {
+        int frameSize = (format.getSampleSizeInBits() / 8) * format.getChannels();
+        int frames = (int) ((format.getSampleRate() * milliseconds) / 1000);
+        return frames * frameSize;
+    }
+
     private class AudioBufferThread extends Thread {
+        // The recording to write the captured audio to, null while not recording
+        private final AtomicReference<AudioStateOutputStream> recording;
+        // Only in continuous mode
+        private final PreRollBuffer preRoll;
+        // Reused for every read, the capture loop must not allocate
+        private final byte[] data;
+        // Only if the microphone does not capture in the requested format
+        private final AudioFormatConverter converter;
+        private final byte[] converted;
+        private AudioStateOutputStream activeRecording;
+        // Where the requested recording starts, written before the recording is requested
+        private volatile long recordingStart = -1;
+        // The number of bytes captured so far, only in continuous mode
+        private long position;
+
+        private final long readPeriodNanos;
+        private final int bytesPerMs;
+        private final LatencyRecorder readJitter;
+        private final LatencyRecorder bufferedLatency;
+        private final AtomicLong lineBufferFull;
+        private long lastReadNanos;
+
+        public AudioBufferThread(PreRollBuffer preRoll) {
+            this.preRoll = preRoll;
+            recording = new AtomicReference<>();
+            // Read whole chunks, as many as fit into a fifth of the line buffer
+            int lineBufferMs = (int) ((microphoneLine.getBufferSize() * 1000L)
+                    / getBufferSizeInBytes(captureFormat, 1000));
+            int chunksPerRead = Math.max(1, lineBufferMs / (READS_PER_LINE_BUFFER * chunkSizeMs));
+            data = new byte[getBufferSizeInBytes(captureFormat, chunksPerRead * chunkSizeMs)];
+            readPeriodNanos = TimeUnit.MILLISECONDS.toNanos(chunksPerRead * chunkSizeMs);
+            bytesPerMs = Math.max(1, getBufferSizeInBytes(captureFormat, 1000) / 1000);
+
+            Metrics metrics = Metrics.getInstance();
+            readJitter = metrics.latency("audioCapture.readJitter");
+            bufferedLatency = metrics.latency("audioCapture.bufferedLatency");
+            lineBufferFull = metrics.counter("audioCapture.lineBufferFull");
+            if (captureFormat.equals(audioFormat)) {
+                converter = null;
+                converted = data;
+            } else {
+                converter = new AudioFormatConverter(captureFormat, audioFormat);
+                converted = new byte[converter.getMaxOutputBytes(data.length)];
+            }
+        }
 
-        private final AudioStateOutputStream audioStateOutputStream;
+        public void startRecording(AudioStateOutputStream audioStateOutputStream,
+                long startPosition) {
+            recordingStart = startPosition;
+            recording.set(audioStateOutputStream);
+        }
 
-        public AudioBufferThread(PipedInputStream inputStream,
-                RecordingStateListener recordingStateListener, RecordingRMSListener rmsListener)
-                        throws IOException {
-            audioStateOutputStream =
-                    new AudioStateOutputStream(inputStream, recordingStateListener, rmsListener);
+        public void stopRecording() {
+            recording.set(null);
         }
 
         @Override
@@ -95,26 +286,199 @@ public class AudioCapture {
             while (microphoneLine.isOpen()) {
                 copyAudioBytesFromInputToOutput();
             }
-            closePipedOutputStream();
+            closeActiveRecording();
         }
 
         private void copyAudioBytesFromInputToOutput() {
-            byte[] data = new byte[microphoneLine.getBufferSize() / 5];
             int numBytesRead = microphoneLine.read(data, 0, data.length);
+            recordReadTiming();
+            if (converter != null) {
+                numBytesRead = converter.convert(data, 0, numBytesRead, converted, 0);
+            }
+
+            AudioStateOutputStream requested = recording.get();
+            if (requested != activeRecording) {
+                closeActiveRecording();
+                activeRecording = requested;
+                if ((activeRecording != null) && (preRoll != null)) {
+                    writeToActiveRecording(preRoll);
+                }
+            }
+            if (activeRecording != null) {
+                writeToActiveRecording(numBytesRead);
+            }
+            if (preRoll != null) {
+                WakeWordStage stage = wakeWordStage;
+                if ((activeRecording == null) && (stage != null)) {
+                    stage.process(converted, numBytesRead, position);
+                }
+                preRoll.write(converted, 0, numBytesRead);
+                position += numBytesRead;
+            }
+        }
+
+        private void recordReadTiming() {
+            long now = System.nanoTime();
+            if (lastReadNanos != 0) {
+                long interval = now - lastReadNanos;
+                readJitter.record(
+                        TimeUnit.NANOSECONDS.toMillis(Math.abs(interval - readPeriodNanos)));
+            }
+            lastReadNanos = now;
+
+            int available = microphoneLine.available();
+            bufferedLatency.record(available / bytesPerMs);
+            if ((available > 0) && (available >= (microphoneLine.getBufferSize() - data.length))) {
+                lineBufferFull.incrementAndGet();
+            }
+        }
+
+        private void writeToActiveRecording(PreRollBuffer preRoll) {
+            long start = recordingStart;
+            int length = ((start < 0) || ((position - start) > Integer.MAX_VALUE))
+                    ? Integer.MAX_VALUE : (int) Math.max(0, position - start);
             try {
-                audioStateOutputStream.write(data, 0, numBytesRead);
+                preRoll.writeTo(activeRecording, length);
             } catch (IOException e) {
+                recordingFailed();
+            }
+        }
+
+        private void writeToActiveRecording(int numBytesRead) {
+            try {
+                activeRecording.write(converted, 0, numBytesRead);
+            } catch (IOException e) {
+                recordingFailed();
+            }
+        }
+
+        /**
+         * The upload has stopped reading the recording.
+         */
+        private void recordingFailed() {
+            if (preRoll == null) {
                 stopCapture();
+            } else {
+                recording.compareAndSet(activeRecording, null);
+                closeActiveRecording();
             }
         }
 
-        private void closePipedOutputStream() {
+        private void closeActiveRecording() {
+            if (activeRecording == null) {
+                return;
+            }
             try {
-                audioStateOutputStream.close();
+                activeRecording.close();
             } catch (IOException e) {
                 log.error("Failed to close audio stream ", e);
             }
+            AudioRingBuffer ringBuffer = activeRecording.getRingBuffer();
+            if (ringBuffer.getOverruns() > 0) {
+                log.warn("Dropped {} bytes of audio in {} overruns", ringBuffer.getOverrunBytes(),
+                        ringBuffer.getOverruns());
+            }
+            activeRecording = null;
+            WakeWordStage stage = wakeWordStage;
+            if (stage != null) {
+                stage.reset();
+            }
         }
     }
 
+    /**
+     * Keeps the most recent audio, only used by the capture thread.
+     */
+    private static class PreRollBuffer {
+        private final byte[] buffer;
+        private int position;
+        private boolean full;
+
+        public PreRollBuffer(int size) {
+            buffer = new byte[size];
+        }
+
+        public void write(byte[] data, int offset, int length) {
+            if (buffer.length == 0) {
+                return;
+            }
+            if (length >= buffer.length) {
+                System.arraycopy(data, (offset + length) - buffer.length, buffer, 0,
+                        buffer.length);
+                position = 0;
+                full = true;
+                return;
+            }
+            int first = Math.min(length, buffer.length - position);
+            System.arraycopy(data, offset, buffer, position, first);
+            System.arraycopy(data, offset + first, buffer, 0, length - first);
+            if ((position + length) >= buffer.length) {
+                full = true;
+            }
+            position = (position + length) % buffer.length;
+        }
+
+        /**
+         * Write the last length bytes of the buffered audio to the given stream, oldest first.
+         */
+        public void writeTo(AudioStateOutputStream output, int length) throws IOException {
+            int buffered = full ? buffer.length : position;
+            int start = position - Math.min(length, buffered);
+            if (start < 0) {
+                output.write(buffer, buffer.length + start, -start);
+                start = 0;
+            }
+            output.write(buffer, start, position - start);
+        }
+    }
+
+    /**
+     * Cuts the audio captured between recordings into the frames of a {@link WakeWordDetector},
+     * only used by the capture thread.
+     */
+    private static class WakeWordStage {
+        private final WakeWordDetector detector;
+        private final WakeWordListener listener;
+        private final byte[] frame;
+        private final AtomicLong detections;
+        private int frameLength;
+
+        public WakeWordStage(WakeWordDetector detector, WakeWordListener listener) {
+            this.detector = detector;
+            this.listener = listener;
+            frame = new byte[detector.getFrameSizeBytes()];
+            detections = Metrics.getInstance().counter("wakeWord.detections");
+        }
+
+        /**
+         * @param position
+         *            The position of the first byte of the data in the captured audio.
+         */
+        public void process(byte[] data, int length, long position) {
+            int offset = 0;
+            while (offset < length) {
+                int count = Math.min(length - offset, frame.length - frameLength);
+                System.arraycopy(data, offset, frame, frameLength, count);
+                frameLength += count;
+                offset += count;
+                if (frameLength < frame.length) {
+                    return;
+                }
+                frameLength = 0;
+
+                int wakeWordLength = detector.process(frame, 0);
+                if (wakeWordLength > 0) {
+                    long end = position + offset;
+                    detections.incrementAndGet();
+                    log.info("Wake word detected");
+                    listener.onWakeWordDetected(end - wakeWordLength, end);
+                }
+            }
+        }
+
+        public void reset() {
+            frameLength = 0;
+            detector.reset();
+        }
+    }
 }
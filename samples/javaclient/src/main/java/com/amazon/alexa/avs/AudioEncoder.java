@@ -0,0 +1,35 @@
+/**
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * You may not use this file except in compliance with the License. A copy of the License is located the "LICENSE.txt"
+ * file accompanying this source. This file is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.amazon.alexa.avs;
+
+import java.io.IOException;
+
+/**
+ * Encodes captured audio for upload in an encoded {@link AudioInputFormat}, e.g. a pure Java Opus
+ * encoder or a wrapper around a native library.
+ *
+ * The audio is encoded one frame of {@link AudioInputFormat#getChunkSizeMs()} at a time. An
+ * encoder is used for a single recording, on the thread uploading it, and must have a public no
+ * argument constructor so that it can be configured by class name.
+ */
+public interface AudioEncoder {
+    /**
+     * @return The encoded format produced by this encoder.
+     */
+    AudioInputFormat getFormat();
+
+    /**
+     * Encode one frame of {@link AudioInputFormat#getCapturedChunkSizeBytes()} bytes of captured
+     * audio. Frames are uploaded back to back without framing, so every frame must be exactly
+     * {@link AudioInputFormat#getChunkSizeBytes()} of the format, e.g. constant bit rate Opus.
+     *
+     * @return The number of bytes written to the output, which must be the chunk size.
+     */
+    int encode(byte[] pcm, int offset, byte[] output, int outputOffset) throws IOException;
+}
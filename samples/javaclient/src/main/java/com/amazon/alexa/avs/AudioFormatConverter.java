@@ -0,0 +1,199 @@
+/**
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * You may not use this file except in compliance with the License. A copy of the License is located the "LICENSE.txt"
+ * file accompanying this source. This file is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.amazon.alexa.avs;
+
+import javax.sound.sampled.AudioFormat;
+
+/**
+ * Converts 16 bit signed PCM audio captured in the native format of the microphone into the 16 bit,
+ * mono, little endian format that is sent to AVS.
+ *
+ * Channels are downmixed by averaging them. The sample rate is changed by a rational factor L / M
+ * with a polyphase windowed sinc filter. Conceptually the audio is upsampled by L, low pass
+ * filtered and downsampled by M. Only the filter phase that is needed for an output sample is
+ * evaluated, so producing one sample costs one multiply-add per tap of a phase, about 110 when
+ * converting from 48 kHz. The filter passes 80% of the lower Nyquist frequency and attenuates
+ * everything from 110% of it by about 70 dB, so nothing aliases into the pass band. The filter
+ * history is kept between calls, so a stream can be converted in chunks of any size. Every buffer
+ * is allocated up front and converting does not allocate.
+ *
+ * A converter is not thread safe, it is meant to be used by the capture thread only.
+ */
+public class AudioFormatConverter {
+    // Pass and stop band edges as fractions of the lower of the two Nyquist frequencies
+    private static final double PASS_BAND_EDGE = 0.8;
+    private static final double STOP_BAND_EDGE = 1.1;
+    // Length of a Blackman windowed filter relative to its transition width, both in samples
+    private static final double BLACKMAN_LENGTH_FACTOR = 5.5;
+    private static final int BYTES_PER_SAMPLE = 2;
+
+    private final int channels;
+    private final boolean sourceBigEndian;
+    private final boolean targetBigEndian;
+    private final int upsampling;
+    private final int downsampling;
+    private final int tapsPerPhase;
+    // The taps of phase p are coefficients[p * tapsPerPhase ...], newest sample first
+    private final float[] coefficients;
+    // The last tapsPerPhase mono samples, stored twice so that they are always contiguous
+    private final float[] history;
+    private int historyPosition;
+    private int phase;
+    // Input samples to consume before the next output sample
+    private int pendingInput = 1;
+
+    /**
+     * @param source
+     *            The format the audio is captured in, 16 bit signed PCM.
+     * @param target
+     *            The format to convert to, 16 bit signed mono PCM.
+     */
+    public AudioFormatConverter(AudioFormat source, AudioFormat target) {
+        if (!isConvertible(source) || !isConvertible(target) || (target.getChannels() != 1)) {
+            throw new IllegalArgumentException(
+                    "Unable to convert from " + source + " to " + target);
+        }
+        channels = source.getChannels();
+        sourceBigEndian = source.isBigEndian();
+        targetBigEndian = target.isBigEndian();
+
+        int sourceRate = Math.round(source.getSampleRate());
+        int targetRate = Math.round(target.getSampleRate());
+        int divisor = gcd(sourceRate, targetRate);
+        upsampling = targetRate / divisor;
+        downsampling = sourceRate / divisor;
+
+        // The transition band of the filter relative to the source rate
+        double transition = ((STOP_BAND_EDGE - PASS_BAND_EDGE) * 0.5 * Math.min(sourceRate,
+                targetRate)) / sourceRate;
+        tapsPerPhase = (int) Math.ceil(BLACKMAN_LENGTH_FACTOR / transition);
+        coefficients = designFilter();
+        history = new float[2 * tapsPerPhase];
+    }
+
+    /**
+     * @return Whether audio in the given format can be converted, i.e. whether it is 16 bit signed
+     *         PCM with a known sample rate and number of channels.
+     */
+    public static boolean isConvertible(AudioFormat format) {
+        return AudioFormat.Encoding.PCM_SIGNED.equals(format.getEncoding())
+                && (format.getSampleSizeInBits() == 16) && (format.getChannels() > 0)
+                && (format.getSampleRate() > 0);
+    }
+
+    /**
+     * @return The largest number of bytes {@link #convert(byte[], int, int, byte[], int)} can
+     *         produce from the given number of input bytes.
+     */
+    public int getMaxOutputBytes(int inputBytes) {
+        long frames = inputBytes / (channels * BYTES_PER_SAMPLE);
+        return (int) (((frames * upsampling) / downsampling) + 1) * BYTES_PER_SAMPLE;
+    }
+
+    /**
+     * Convert a chunk of audio. Trailing bytes that do not form a whole frame are ignored, so the
+     * chunks should be frame aligned.
+     *
+     * @return The number of bytes written to the output.
+     */
+    public int convert(byte[] input, int inputOffset, int inputLength, byte[] output,
+            int outputOffset) {
+        int frameSize = channels * BYTES_PER_SAMPLE;
+        int end = inputOffset + (inputLength - (inputLength % frameSize));
+        int out = outputOffset;
+
+        for (int i = inputOffset; i < end; i += frameSize) {
+            int sum = 0;
+            for (int c = 0; c < frameSize; c += BYTES_PER_SAMPLE) {
+                sum += readSample(input, i + c);
+            }
+            if (upsampling == downsampling) {
+                // Only downmixing
+                writeSample(output, out, Math.round((float) sum / channels));
+                out += BYTES_PER_SAMPLE;
+                continue;
+            }
+            push((float) sum / channels);
+
+            while (--pendingInput == 0) {
+                writeSample(output, out, filter());
+                out += BYTES_PER_SAMPLE;
+                phase += downsampling;
+                pendingInput = (phase / upsampling) + 1;
+                phase %= upsampling;
+            }
+        }
+        return out - outputOffset;
+    }
+
+    private void push(float sample) {
+        historyPosition = (historyPosition + 1) % tapsPerPhase;
+        history[historyPosition] = sample;
+        history[historyPosition + tapsPerPhase] = sample;
+    }
+
+    private int filter() {
+        int taps = phase * tapsPerPhase;
+        int newest = historyPosition + tapsPerPhase;
+        float sum = 0;
+        for (int j = 0; j < tapsPerPhase; j++) {
+            sum += coefficients[taps + j] * history[newest - j];
+        }
+        return Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, Math.round(sum)));
+    }
+
+    private int readSample(byte[] data, int index) {
+        if (sourceBigEndian) {
+            return (short) ((data[index] << 8) | (data[index + 1] & 0xFF));
+        }
+        return (short) ((data[index + 1] << 8) | (data[index] & 0xFF));
+    }
+
+    private void writeSample(byte[] data, int index, int sample) {
+        byte high = (byte) (sample >> 8);
+        byte low = (byte) sample;
+        data[index] = targetBigEndian ? high : low;
+        data[index + 1] = targetBigEndian ? low : high;
+    }
+
+    /**
+     * Design a Blackman windowed sinc low pass filter at L times the source rate and split it into
+     * its L phases. Every phase is normalized to unity gain at DC.
+     */
+    private float[] designFilter() {
+        int length = upsampling * tapsPerPhase;
+        // Cutoff in the middle of the transition band, relative to the upsampled rate
+        double cutoff = (((PASS_BAND_EDGE + STOP_BAND_EDGE) / 2) * 0.5)
+                / Math.max(upsampling, downsampling);
+        double center = (length - 1) / 2.0;
+
+        float[] phases = new float[length];
+        for (int p = 0; p < upsampling; p++) {
+            double gain = 0;
+            for (int j = 0; j < tapsPerPhase; j++) {
+                int k = p + (upsampling * j);
+                double x = k - center;
+                double sinc = (x == 0) ? 1 : Math.sin(2 * Math.PI * cutoff * x)
+                        / (2 * Math.PI * cutoff * x);
+                double window = 0.42 - (0.5 * Math.cos((2 * Math.PI * k) / (length - 1)))
+                        + (0.08 * Math.cos((4 * Math.PI * k) / (length - 1)));
+                phases[(p * tapsPerPhase) + j] = (float) (sinc * window);
+                gain += sinc * window;
+            }
+            for (int j = 0; j < tapsPerPhase; j++) {
+                phases[(p * tapsPerPhase) + j] /= gain;
+            }
+        }
+        return phases;
+    }
+
+    private static int gcd(int a, int b) {
+        return (b == 0) ? a : gcd(b, a % b);
+    }
+}
@@ -11,18 +11,25 @@ package com.amazon.alexa.avs;
 import javax.sound.sampled.AudioFormat;
 
 public enum AudioInputFormat {
-    LPCM(Constants.LPCM_CHUNK_SIZE_BYTES, Constants.LPCM_CHUNK_SIZE_MS, Constants.LPCM_AUDIO_FORMAT, Constants.LPCM_CONTENT_TYPE);
+    LPCM(Constants.LPCM_CHUNK_SIZE_BYTES, Constants.LPCM_CHUNK_SIZE_MS, Constants.LPCM_AUDIO_FORMAT, Constants.LPCM_CONTENT_TYPE, Constants.LPCM_RECOGNIZE_FORMAT),
+    /**
+     * 16 kHz mono audio captured as {@link #LPCM} and encoded with a constant bitrate of 32 kbit/s
+     * in 20 ms frames by an {@link AudioEncoder}.
+     */
+    OPUS(Constants.OPUS_CHUNK_SIZE_BYTES, Constants.OPUS_CHUNK_SIZE_MS, Constants.LPCM_AUDIO_FORMAT, Constants.OPUS_CONTENT_TYPE, Constants.OPUS_RECOGNIZE_FORMAT);
 
     private final int chunkSizeBytes;
     private final int chunkSizeMs;
     private final AudioFormat audioFormat;
     private final String contentType;
+    private final String recognizeFormat;
 
-    private AudioInputFormat(final int chunkSizeBytes, final int chunkSizeMs, AudioFormat audioFormat, final String contentType) {
+    private AudioInputFormat(final int chunkSizeBytes, final int chunkSizeMs, AudioFormat audioFormat, final String contentType, final String recognizeFormat) {
         this.chunkSizeBytes = chunkSizeBytes;
         this.chunkSizeMs = chunkSizeMs;
         this.audioFormat = audioFormat;
         this.contentType = contentType;
+        this.recognizeFormat = recognizeFormat;
     }
 
     public int getChunkSizeBytes() {
@@ -41,10 +48,30 @@ public enum AudioInputFormat {
         return contentType;
     }
 
+    /**
+     * @return The format of the audio as sent in the Recognize event.
+     */
+    public String getRecognizeFormat() {
+        return recognizeFormat;
+    }
+
+    /**
+     * @return The number of bytes of captured audio in one chunk of the uploaded audio.
+     */
+    public int getCapturedChunkSizeBytes() {
+        return (int) ((audioFormat.getSampleRate() * audioFormat.getFrameSize() * chunkSizeMs) / 1000);
+    }
+
     private static final class Constants {
         private static final int LPCM_CHUNK_SIZE_BYTES = 320;
         private static final int LPCM_CHUNK_SIZE_MS = 10;
         private static final AudioFormat LPCM_AUDIO_FORMAT = new AudioFormat(16000f, 16, 1, true, false);
         private static final String LPCM_CONTENT_TYPE = "audio/L16; rate=16000; channels=1";
+        private static final String LPCM_RECOGNIZE_FORMAT = "AUDIO_L16_RATE_16000_CHANNELS_1";
+        // 32 kbit/s * 20 ms
+        private static final int OPUS_CHUNK_SIZE_BYTES = 80;
+        private static final int OPUS_CHUNK_SIZE_MS = 20;
+        private static final String OPUS_CONTENT_TYPE = "audio/opus; rate=16000; channels=1";
+        private static final String OPUS_RECOGNIZE_FORMAT = "OPUS";
     }
 }
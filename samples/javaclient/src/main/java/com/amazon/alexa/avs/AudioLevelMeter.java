@@ -0,0 +1,146 @@
+/**
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * You may not use this file except in compliance with the License. A copy of the License is located the "LICENSE.txt"
+ * file accompanying this source. This file is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.amazon.alexa.avs;
+
+import java.util.Arrays;
+
+/**
+ * Measures the level of 16 bit, mono, little endian PCM audio, one chunk at a time.
+ *
+ * Samples are decoded directly from the byte array and accumulated as integers, so measuring a
+ * chunk does not allocate. For every chunk the meter provides the peak and RMS amplitude in sample
+ * units (0 - 32768), an RMS smoothed over the last few chunks, and the 1 - 100 level used by
+ * {@link RecordingRMSListener#rmsChanged(int)}. On slow devices the meter can be configured to
+ * only look at every n-th sample.
+ *
+ * A meter is not thread safe, it is meant to be used by the capture thread only.
+ */
+public class AudioLevelMeter {
+    public static final int DEFAULT_DECIMATION = 1;
+    public static final int DEFAULT_SMOOTHING_WINDOW = 5;
+
+    private static final int BYTES_PER_SAMPLE = 2;
+    // The level reported to rmsChanged is 1 + 100 * |sample| / (Short.MAX_VALUE / 2), computed as
+    // (200 * |sample| + Short.MAX_VALUE) / Short.MAX_VALUE to stay in integers
+    private static final int LEVEL_SCALE = 200;
+
+    private final int decimation;
+    // Mean squares of the last chunks, for the smoothed RMS
+    private final long[] window;
+    private int windowIndex;
+    private int windowCount;
+    private long windowSum;
+
+    private int peak;
+    private int rms;
+    private int smoothedRms;
+    private int level;
+
+    public AudioLevelMeter() {
+        this(DEFAULT_DECIMATION, DEFAULT_SMOOTHING_WINDOW);
+    }
+
+    /**
+     * @param decimation
+     *            Only every n-th sample is measured. 1 measures every sample.
+     * @param smoothingWindow
+     *            The number of chunks the smoothed RMS is computed over. 1 disables smoothing.
+     */
+    public AudioLevelMeter(int decimation, int smoothingWindow) {
+        if ((decimation < 1) || (smoothingWindow < 1)) {
+            throw new IllegalArgumentException("Decimation and smoothing window must be positive");
+        }
+        this.decimation = decimation;
+        this.window = new long[smoothingWindow];
+    }
+
+    /**
+     * Measure a chunk of audio. Trailing odd bytes are ignored.
+     *
+     * @return false if the chunk did not contain a sample, in which case the levels are unchanged.
+     */
+    public boolean measure(byte[] data, int offset, int length) {
+        int step = decimation * BYTES_PER_SAMPLE;
+        int end = offset + (length - (length % BYTES_PER_SAMPLE));
+        int samples = 0;
+        int chunkPeak = 0;
+        long sumOfSquares = 0;
+        long sumOfLevelSquares = 0;
+
+        for (int i = offset; i < end; i += step) {
+            int sample = (short) ((data[i + 1] << 8) | (data[i] & 0xFF));
+            int amplitude = Math.abs(sample);
+            if (amplitude > chunkPeak) {
+                chunkPeak = amplitude;
+            }
+            sumOfSquares += amplitude * amplitude;
+            long scaled = (LEVEL_SCALE * amplitude) + Short.MAX_VALUE;
+            sumOfLevelSquares += scaled * scaled;
+            samples++;
+        }
+
+        if (samples == 0) {
+            return false;
+        }
+
+        long meanSquare = sumOfSquares / samples;
+        windowSum += meanSquare - window[windowIndex];
+        window[windowIndex] = meanSquare;
+        windowIndex = (windowIndex + 1) % window.length;
+        windowCount = Math.min(windowCount + 1, window.length);
+
+        peak = chunkPeak;
+        rms = (int) Math.sqrt(meanSquare);
+        smoothedRms = (int) Math.sqrt(windowSum / windowCount);
+        level = (int) (Math.sqrt(sumOfLevelSquares / (double) samples) / Short.MAX_VALUE);
+        return true;
+    }
+
+    /**
+     * Forget the smoothing history, e.g. at the start of a new recording.
+     */
+    public void reset() {
+        Arrays.fill(window, 0);
+        windowIndex = 0;
+        windowCount = 0;
+        windowSum = 0;
+        peak = 0;
+        rms = 0;
+        smoothedRms = 0;
+        level = 0;
+    }
+
+    /**
+     * @return The largest absolute sample value of the last chunk.
+     */
+    public int getPeak() {
+        return peak;
+    }
+
+    /**
+     * @return The RMS amplitude of the last chunk.
+     */
+    public int getRms() {
+        return rms;
+    }
+
+    /**
+     * @return The RMS amplitude over the smoothing window.
+     */
+    public int getSmoothedRms() {
+        return smoothedRms;
+    }
+
+    /**
+     * @return The level of the last chunk on the 1 - 100 scale of the audio visualizer.
+     */
+    public int getLevel() {
+        return level;
+    }
+}
@@ -0,0 +1,66 @@
+/**
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * You may not use this file except in compliance with the License. A copy of the License is located the "LICENSE.txt"
+ * file accompanying this source. This file is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.amazon.alexa.avs;
+
+import com.amazon.alexa.avs.metrics.LatencyRecorder;
+import com.amazon.alexa.avs.metrics.Metrics;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * A long-lived thread that runs the commands for one audio output, one after the other in the
+ * order they were submitted.
+ *
+ * Commands may block for as long as their audio plays, the next command starts once the previous
+ * one has returned. The time commands wait in the queue is recorded in the
+ * audioOutput.&lt;name&gt;.queueDelay {@link Metrics} latency.
+ */
+public class AudioOutputChannel implements Executor {
+    private static final Logger log = LoggerFactory.getLogger(AudioOutputChannel.class);
+
+    private final String name;
+    private final ExecutorService executor;
+    private final LatencyRecorder queueDelay;
+
+    public AudioOutputChannel(final String name) {
+        this.name = name;
+        executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable);
+            thread.setName(AudioOutputChannel.class.getSimpleName() + "-" + name);
+            thread.setDaemon(true);
+            return thread;
+        });
+        queueDelay = Metrics.getInstance().latency("audioOutput." + name + ".queueDelay");
+    }
+
+    /**
+     * Run the command once all commands submitted before it have finished.
+     */
+    @Override
+    public void execute(final Runnable command) {
+        final long submitted = System.nanoTime();
+        executor.execute(() -> {
+            queueDelay.recordSince(submitted);
+            try {
+                command.run();
+            } catch (RuntimeException e) {
+                log.error("Audio output command failed on the {} channel", name, e);
+            }
+        });
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -56,39 +56,39 @@ public class AudioPlayerStateMachine {
     private final PlaybackPaused playbackPaused;
     private final PlaybackResumed playbackResumed;
 
-    public AudioPlayerStateMachine(AVSAudioPlayer audioPlayer, AVSController controller) {
+    public AudioPlayerStateMachine(AVSAudioPlayer audioPlayer, EventSender eventSender) {
         state = new State<AudioPlayerState>(AudioPlayerState.IDLE);
 
-        playbackFinished =
-                new PlaybackFinished(EnumSet.of(AudioPlayerState.PLAYING), audioPlayer, controller);
+        playbackFinished = new PlaybackFinished(EnumSet.of(AudioPlayerState.PLAYING), audioPlayer,
+                eventSender);
         clearQueueEnqueued = new ClearQueueEnqueued(EnumSet.allOf(AudioPlayerState.class),
-                audioPlayer, controller);
+                audioPlayer, eventSender);
         clearQueueAll =
-                new ClearQueueAll(EnumSet.allOf(AudioPlayerState.class), audioPlayer, controller);
+                new ClearQueueAll(EnumSet.allOf(AudioPlayerState.class), audioPlayer, eventSender);
         playbackStarted = new PlaybackStarted(
                 EnumSet.of(AudioPlayerState.STOPPED, AudioPlayerState.FINISHED,
                         AudioPlayerState.IDLE, AudioPlayerState.PAUSED, AudioPlayerState.PLAYING),
-                audioPlayer, controller);
+                audioPlayer, eventSender);
         delayReport = new DelayProgressReport(EnumSet.of(AudioPlayerState.PLAYING), audioPlayer,
-                controller);
+                eventSender);
         intervalReport = new IntervalProgressReport(EnumSet.of(AudioPlayerState.PLAYING),
-                audioPlayer, controller);
+                audioPlayer, eventSender);
         playbackFailed =
-                new PlaybackFailed(EnumSet.allOf(AudioPlayerState.class), audioPlayer, controller);
+                new PlaybackFailed(EnumSet.allOf(AudioPlayerState.class), audioPlayer, eventSender);
         playbackNearlyFinished = new PlaybackNearlyFinished(EnumSet.allOf(AudioPlayerState.class),
-                audioPlayer, controller);
-        playbackStopped =
-                new PlaybackStopped(EnumSet.allOf(AudioPlayerState.class), audioPlayer, controller);
+                audioPlayer, eventSender);
+        playbackStopped = new PlaybackStopped(EnumSet.allOf(AudioPlayerState.class), audioPlayer,
+                eventSender);
         playbackStutterStarted = new PlaybackStutterStarted(EnumSet.of(AudioPlayerState.PLAYING),
-                audioPlayer, controller);
+                audioPlayer, eventSender);
         playbackStutterFinished = new PlaybackStutterFinished(
-                EnumSet.of(AudioPlayerState.BUFFER_UNDERRUN), audioPlayer, controller);
+                EnumSet.of(AudioPlayerState.BUFFER_UNDERRUN), audioPlayer, eventSender);
         playbackPaused = new PlaybackPaused(
                 EnumSet.of(AudioPlayerState.PLAYING, AudioPlayerState.STOPPED,
                         AudioPlayerState.IDLE, AudioPlayerState.BUFFER_UNDERRUN),
-                audioPlayer, controller);
+                audioPlayer, eventSender);
         playbackResumed =
-                new PlaybackResumed(EnumSet.of(AudioPlayerState.PAUSED), audioPlayer, controller);
+                new PlaybackResumed(EnumSet.of(AudioPlayerState.PAUSED), audioPlayer, eventSender);
     }
 
     /**
@@ -213,17 +213,17 @@ public class AudioPlayerStateMachine {
             extends StateTransition<AudioPlayerState> {
 
         private final AVSAudioPlayer audioPlayer;
-        private final AVSController controller;
+        private final EventSender eventSender;
 
         public AudioPlayerStateTransition(Set<AudioPlayerState> validStartStates,
-                AVSAudioPlayer audioPlayer, AVSController controller) {
+                AVSAudioPlayer audioPlayer, EventSender eventSender) {
             super(validStartStates);
             this.audioPlayer = audioPlayer;
-            this.controller = controller;
+            this.eventSender = eventSender;
         }
 
         protected final void sendRequest(RequestBody requestBody) {
-            controller.sendRequest(requestBody);
+            eventSender.sendRequest(requestBody);
         }
 
         protected final PlaybackStatePayload getCurrentPlaybackState() {
@@ -251,8 +251,8 @@ public class AudioPlayerStateMachine {
     private static class PlaybackStarted extends AudioPlayerStateTransition {
 
         public PlaybackStarted(Set<AudioPlayerState> validStartStates, AVSAudioPlayer audioPlayer,
-                AVSController controller) {
-            super(validStartStates, audioPlayer, controller);
+                EventSender eventSender) {
+            super(validStartStates, audioPlayer, eventSender);
         }
 
         @Override
@@ -266,8 +266,8 @@ public class AudioPlayerStateMachine {
     private static class PlaybackStopped extends AudioPlayerStateTransition {
 
         public PlaybackStopped(Set<AudioPlayerState> validStartStates, AVSAudioPlayer audioPlayer,
-                AVSController controller) {
-            super(validStartStates, audioPlayer, controller);
+                EventSender eventSender) {
+            super(validStartStates, audioPlayer, eventSender);
         }
 
         @Override
@@ -283,8 +283,8 @@ public class AudioPlayerStateMachine {
     private static class DelayProgressReport extends AudioPlayerStateTransition {
 
         public DelayProgressReport(Set<AudioPlayerState> validStartStates,
-                AVSAudioPlayer audioPlayer, AVSController controller) {
-            super(validStartStates, audioPlayer, controller);
+                AVSAudioPlayer audioPlayer, EventSender eventSender) {
+            super(validStartStates, audioPlayer, eventSender);
         }
 
         @Override
@@ -298,8 +298,8 @@ public class AudioPlayerStateMachine {
     private static class IntervalProgressReport extends AudioPlayerStateTransition {
 
         public IntervalProgressReport(Set<AudioPlayerState> validStartStates,
-                AVSAudioPlayer audioPlayer, AVSController controller) {
-            super(validStartStates, audioPlayer, controller);
+                AVSAudioPlayer audioPlayer, EventSender eventSender) {
+            super(validStartStates, audioPlayer, eventSender);
         }
 
         @Override
@@ -313,8 +313,8 @@ public class AudioPlayerStateMachine {
     private static class PlaybackFailed extends AudioPlayerStateTransition {
 
         public PlaybackFailed(Set<AudioPlayerState> validStartStates, AVSAudioPlayer audioPlayer,
-                AVSController controller) {
-            super(validStartStates, audioPlayer, controller);
+                EventSender eventSender) {
+            super(validStartStates, audioPlayer, eventSender);
         }
 
         @Override
@@ -328,8 +328,8 @@ public class AudioPlayerStateMachine {
     private static class PlaybackNearlyFinished extends AudioPlayerStateTransition {
 
         public PlaybackNearlyFinished(Set<AudioPlayerState> validStartStates,
-                AVSAudioPlayer audioPlayer, AVSController controller) {
-            super(validStartStates, audioPlayer, controller);
+                AVSAudioPlayer audioPlayer, EventSender eventSender) {
+            super(validStartStates, audioPlayer, eventSender);
         }
 
         @Override
@@ -342,8 +342,8 @@ public class AudioPlayerStateMachine {
     private static class PlaybackFinished extends AudioPlayerStateTransition {
 
         public PlaybackFinished(Set<AudioPlayerState> validStartStates, AVSAudioPlayer audioPlayer,
-                AVSController controller) {
-            super(validStartStates, audioPlayer, controller);
+                EventSender eventSender) {
+            super(validStartStates, audioPlayer, eventSender);
         }
 
         @Override
@@ -357,8 +357,8 @@ public class AudioPlayerStateMachine {
     private static class ClearQueueEnqueued extends AudioPlayerStateTransition {
 
         public ClearQueueEnqueued(Set<AudioPlayerState> validStartStates,
-                AVSAudioPlayer audioPlayer, AVSController controller) {
-            super(validStartStates, audioPlayer, controller);
+                AVSAudioPlayer audioPlayer, EventSender eventSender) {
+            super(validStartStates, audioPlayer, eventSender);
         }
 
         @Override
@@ -370,8 +370,8 @@ public class AudioPlayerStateMachine {
     private static class ClearQueueAll extends AudioPlayerStateTransition {
 
         public ClearQueueAll(Set<AudioPlayerState> validStartStates, AVSAudioPlayer audioPlayer,
-                AVSController controller) {
-            super(validStartStates, audioPlayer, controller);
+                EventSender eventSender) {
+            super(validStartStates, audioPlayer, eventSender);
         }
 
         @Override
@@ -392,8 +392,8 @@ public class AudioPlayerStateMachine {
     private static class PlaybackStutterStarted extends AudioPlayerStateTransition {
 
         public PlaybackStutterStarted(Set<AudioPlayerState> validStartStates,
-                AVSAudioPlayer audioPlayer, AVSController controller) {
-            super(validStartStates, audioPlayer, controller);
+                AVSAudioPlayer audioPlayer, EventSender eventSender) {
+            super(validStartStates, audioPlayer, eventSender);
         }
 
         @Override
@@ -407,8 +407,8 @@ public class AudioPlayerStateMachine {
     private static class PlaybackStutterFinished extends AudioPlayerStateTransition {
 
         public PlaybackStutterFinished(Set<AudioPlayerState> validStartStates,
-                AVSAudioPlayer audioPlayer, AVSController controller) {
-            super(validStartStates, audioPlayer, controller);
+                AVSAudioPlayer audioPlayer, EventSender eventSender) {
+            super(validStartStates, audioPlayer, eventSender);
         }
 
         @Override
@@ -423,8 +423,8 @@ public class AudioPlayerStateMachine {
     private static class PlaybackPaused extends AudioPlayerStateTransition {
 
         public PlaybackPaused(Set<AudioPlayerState> validStartStates, AVSAudioPlayer audioPlayer,
-                AVSController controller) {
-            super(validStartStates, audioPlayer, controller);
+                EventSender eventSender) {
+            super(validStartStates, audioPlayer, eventSender);
         }
 
         @Override
@@ -438,8 +438,8 @@ public class AudioPlayerStateMachine {
     private static class PlaybackResumed extends AudioPlayerStateTransition {
 
         public PlaybackResumed(Set<AudioPlayerState> validStartStates, AVSAudioPlayer audioPlayer,
-                AVSController controller) {
-            super(validStartStates, audioPlayer, controller);
+                EventSender eventSender) {
+            super(validStartStates, audioPlayer, eventSender);
         }
 
         @Override
@@ -0,0 +1,228 @@
+/**
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * You may not use this file except in compliance with the License. A copy of the License is located the "LICENSE.txt"
+ * file accompanying this source. This file is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.amazon.alexa.avs;
+
+import com.amazon.alexa.avs.metrics.Metrics;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A lock-free ring buffer that hands captured audio from a single producer, the capture thread, to
+ * a single consumer, the upload.
+ *
+ * The buffer is allocated once with a power of two capacity, on or off the heap. Writing never
+ * blocks and never allocates: if the consumer has fallen so far behind that a chunk does not fit,
+ * the chunk is dropped and counted as an overrun, both on the buffer and in the
+ * audioCapture.overruns and audioCapture.overrunBytes {@link Metrics} counters. The consumer reads
+ * through {@link #getInputStream()}, which parks until audio is available.
+ */
+public class AudioRingBuffer {
+    private final ByteBuffer buffer;
+    private final int mask;
+    // Only used by the producer, resp. the consumer, so positioning them needs no synchronization
+    private final ByteBuffer writerView;
+    private final ByteBuffer readerView;
+    // Total number of bytes written and read, the difference is the number of readable bytes
+    private final AtomicLong writePosition;
+    private final AtomicLong readPosition;
+    private final AtomicLong overruns;
+    private final AtomicLong overrunBytes;
+    private final AtomicLong totalOverruns;
+    private final AtomicLong totalOverrunBytes;
+    private final InputStream inputStream;
+    private volatile Thread waitingReader;
+    private volatile boolean writerClosed;
+    private volatile boolean readerClosed;
+
+    /**
+     * @param minimumCapacity
+     *            The capacity is rounded up to the next power of two.
+     * @param direct
+     *            Whether to allocate the buffer off the heap.
+     */
+    public AudioRingBuffer(int minimumCapacity, boolean direct) {
+        int capacity = Integer.highestOneBit(Math.max(minimumCapacity, 1) - 1) << 1;
+        if (capacity <= 0) {
+            capacity = 1;
+        }
+        buffer = direct ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity);
+        mask = capacity - 1;
+        writerView = buffer.duplicate();
+        readerView = buffer.duplicate();
+        writePosition = new AtomicLong();
+        readPosition = new AtomicLong();
+        overruns = new AtomicLong();
+        overrunBytes = new AtomicLong();
+        totalOverruns = Metrics.getInstance().counter("audioCapture.overruns");
+        totalOverrunBytes = Metrics.getInstance().counter("audioCapture.overrunBytes");
+        inputStream = new RingInputStream();
+    }
+
+    public int getCapacity() {
+        return buffer.capacity();
+    }
+
+    /**
+     * Write a chunk of audio. Must only be called by the producer.
+     *
+     * @return The number of bytes written, 0 if the chunk did not fit and was dropped.
+     * @throws IOException
+     *             if the consumer has closed its stream, or the producer has closed the buffer.
+     */
+    public int write(byte[] b, int off, int len) throws IOException {
+        if (readerClosed) {
+            throw new IOException("Audio reader closed");
+        }
+        if (writerClosed) {
+            throw new IOException("Audio buffer closed");
+        }
+
+        long write = writePosition.get();
+        int free = buffer.capacity() - (int) (write - readPosition.get());
+        if (len > free) {
+            // Drop the whole chunk, writing part of it could split a sample
+            overruns.incrementAndGet();
+            overrunBytes.addAndGet(len);
+            totalOverruns.incrementAndGet();
+            totalOverrunBytes.addAndGet(len);
+            return 0;
+        }
+        if (len == 0) {
+            return 0;
+        }
+
+        int index = (int) (write & mask);
+        int first = Math.min(len, buffer.capacity() - index);
+        writerView.limit(index + first).position(index);
+        writerView.put(b, off, first);
+        if (first < len) {
+            writerView.limit(len - first).position(0);
+            writerView.put(b, off + first, len - first);
+        }
+
+        // A volatile store, so that a reader about to park sees either the data or the wake up
+        writePosition.set(write + len);
+        wakeReader();
+        return len;
+    }
+
+    /**
+     * Mark the end of the audio. The consumer reads the remaining audio and then the end of stream.
+     */
+    public void close() {
+        writerClosed = true;
+        wakeReader();
+    }
+
+    /**
+     * @return The stream the consumer reads from. Closing it makes further writes fail.
+     */
+    public InputStream getInputStream() {
+        return inputStream;
+    }
+
+    /**
+     * @return The number of writes that did not fit into the buffer.
+     */
+    public long getOverruns() {
+        return overruns.get();
+    }
+
+    /**
+     * @return The number of bytes dropped because they did not fit into the buffer.
+     */
+    public long getOverrunBytes() {
+        return overrunBytes.get();
+    }
+
+    private void wakeReader() {
+        Thread reader = waitingReader;
+        if (reader != null) {
+            LockSupport.unpark(reader);
+        }
+    }
+
+    private class RingInputStream extends InputStream {
+        private final byte[] single = new byte[1];
+
+        @Override
+        public int read() throws IOException {
+            int read = read(single, 0, 1);
+            return (read == -1) ? -1 : (single[0] & 0xFF);
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            int available = awaitData();
+            if (available == 0) {
+                return -1;
+            }
+
+            long read = readPosition.get();
+            int count = Math.min(len, available);
+            int index = (int) (read & mask);
+            int first = Math.min(count, buffer.capacity() - index);
+            readerView.limit(index + first).position(index);
+            readerView.get(b, off, first);
+            if (first < count) {
+                readerView.limit(count - first).position(0);
+                readerView.get(b, off + first, count - first);
+            }
+            readPosition.lazySet(read + count);
+            return count;
+        }
+
+        @Override
+        public int available() throws IOException {
+            if (readerClosed) {
+                throw new IOException("Stream closed");
+            }
+            return (int) (writePosition.get() - readPosition.get());
+        }
+
+        @Override
+        public void close() {
+            readerClosed = true;
+        }
+
+        /**
+         * @return The number of readable bytes, 0 at the end of the stream.
+         */
+        private int awaitData() throws IOException {
+            while (true) {
+                if (readerClosed) {
+                    throw new IOException("Stream closed");
+                }
+                int available = (int) (writePosition.get() - readPosition.get());
+                if ((available > 0) || writerClosed) {
+                    return available;
+                }
+
+                waitingReader = Thread.currentThread();
+                // Check again after publishing the waiting reader, the producer may have written
+                // in between and not seen it
+                if ((writePosition.get() == readPosition.get()) && !writerClosed) {
+                    LockSupport.park(this);
+                }
+                waitingReader = null;
+                if (Thread.interrupted()) {
+                    throw new InterruptedIOException();
+                }
+            }
+        }
+    }
+}
@@ -9,39 +9,69 @@
 package com.amazon.alexa.avs;
 
 import java.io.IOException;
-import java.io.PipedInputStream;
-import java.io.PipedOutputStream;
-import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
+import java.io.OutputStream;
 
 /**
- * A PipedOutputStream that call the appropriate listeners when the bytes from the audio source are
- * written and updates decibel values. This output stream should be connected to a input stream with
- * a large buffer to avoid dropping audio bytes while waiting for a connection to AVS
+ * An OutputStream into an {@link AudioRingBuffer} that call the appropriate listeners when the
+ * bytes from the audio source are written and updates decibel values. The ring buffer should be
+ * large enough to hold the audio captured while waiting for a connection to AVS, audio that does
+ * not fit is dropped and counted as an overrun.
  */
-public class AudioStateOutputStream extends PipedOutputStream {
+public class AudioStateOutputStream extends OutputStream {
+    private final AudioRingBuffer ringBuffer;
     private RecordingStateListener stateListener;
     private RecordingRMSListener rmsListener;
+    private final AudioLevelMeter levelMeter;
+    private final Endpointer endpointer;
+    private boolean endOfSpeech;
 
-    protected AudioStateOutputStream(PipedInputStream inputStream,
-            RecordingStateListener stateListener, final RecordingRMSListener rmsListener)
-                    throws IOException {
-        super(inputStream);
+    protected AudioStateOutputStream(AudioRingBuffer ringBuffer,
+            RecordingStateListener stateListener, final RecordingRMSListener rmsListener) {
+        this(ringBuffer, stateListener, rmsListener, new AudioLevelMeter());
+    }
+
+    protected AudioStateOutputStream(AudioRingBuffer ringBuffer,
+            RecordingStateListener stateListener, final RecordingRMSListener rmsListener,
+            AudioLevelMeter levelMeter) {
+        this(ringBuffer, stateListener, rmsListener, levelMeter, null);
+    }
+
+    /**
+     * @param endpointer
+     *            Processes every chunk written to this stream, the state listener is notified once
+     *            it detects the end of speech (optional - can be null).
+     */
+    protected AudioStateOutputStream(AudioRingBuffer ringBuffer,
+            RecordingStateListener stateListener, final RecordingRMSListener rmsListener,
+            AudioLevelMeter levelMeter, Endpointer endpointer) {
+        this.ringBuffer = ringBuffer;
         this.stateListener = stateListener;
         this.rmsListener = rmsListener;
+        this.levelMeter = levelMeter;
+        this.endpointer = endpointer;
         notifyRecordingStarted();
 
     }
 
+    public AudioRingBuffer getRingBuffer() {
+        return ringBuffer;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[] { (byte) b }, 0, 1);
+    }
+
     @Override
     public void write(byte[] b, int off, int len) throws IOException {
-        super.write(b, off, len);
-        calculateDB(b, len);
+        ringBuffer.write(b, off, len);
+        calculateDB(b, off, len);
+        detectEndOfSpeech(b, off, len);
     }
 
     @Override
     public void close() throws IOException {
-        super.close();
+        ringBuffer.close();
         notifyRecordingCompleted();
         clearRMS();
     }
@@ -58,6 +88,16 @@ public class AudioStateOutputStream extends PipedOutputStream {
         }
     }
 
+    private void detectEndOfSpeech(byte[] data, int off, int cnt) {
+        if ((endpointer == null) || endOfSpeech || !endpointer.process(data, off, cnt)) {
+            return;
+        }
+        endOfSpeech = true;
+        if (stateListener != null) {
+            stateListener.endOfSpeechDetected();
+        }
+    }
+
     private void clearRMS() {
         if (rmsListener != null) {
             rmsListener.rmsChanged(0);
@@ -66,30 +106,15 @@ public class AudioStateOutputStream extends PipedOutputStream {
 
     // rmsListener is the AudioRMSListener callback for audio visualizer(optional - can be null)
     // assuming 16bit samples, 1 channel, little endian
-    private void calculateDB(byte[] data, int cnt) {
-        if ((rmsListener == null) || (cnt < 2)) {
+    private void calculateDB(byte[] data, int off, int cnt) {
+        if ((rmsListener == null) || !levelMeter.measure(data, off, cnt)) {
             return;
         }
 
-        final int bytesPerSample = 2;
-        int len = cnt / bytesPerSample;
-        double avg = 0;
-
-        for (int i = 0; i < cnt; i += bytesPerSample) {
-            ByteBuffer bb = ByteBuffer.allocate(bytesPerSample);
-            bb.order(ByteOrder.LITTLE_ENDIAN);
-            bb.put(data[i]);
-            bb.put(data[i + 1]);
-            // generate the signed 16 bit number from the 2 bytes
-            double dVal = java.lang.Math.abs(bb.getShort(0));
-            // scale it from 1 to 100. Use max/2 as values tend to be low
-            dVal = ((100 * dVal) / (Short.MAX_VALUE / 2.0)) + 1;
-            avg += dVal * dVal; // add the square to the running average
-        }
-        avg /= len;
-        avg = java.lang.Math.sqrt(avg);
         // update the AudioRMSListener callback with the scaled root-mean-squared power value
-        rmsListener.rmsChanged((int) avg);
+        rmsListener.rmsChanged(levelMeter.getLevel());
+        rmsListener.levelChanged(levelMeter.getPeak(), levelMeter.getRms(),
+                levelMeter.getSmoothedRms());
     }
 
 }
@@ -39,17 +39,30 @@ public class DirectiveEnqueuer implements MultipartParserConsumer {
     // Map of all attachments which have not yet been matched with directives.
     private final Map<String, InputStream> attachments;
 
+    // Measures the time until the first directive of a dialog arrives. May be null.
+    private final RecognizeLatencyTracker latencyTracker;
+
     public DirectiveEnqueuer(DialogRequestIdAuthority dialogRequestIdAuthority,
             Queue<Directive> dependentQueue, Queue<Directive> independentQueue) {
+        this(dialogRequestIdAuthority, dependentQueue, independentQueue, null);
+    }
+
+    public DirectiveEnqueuer(DialogRequestIdAuthority dialogRequestIdAuthority,
+            Queue<Directive> dependentQueue, Queue<Directive> independentQueue,
+            RecognizeLatencyTracker latencyTracker) {
         this.dialogRequestIdAuthority = dialogRequestIdAuthority;
         this.dependentQueue = dependentQueue;
         this.independentQueue = independentQueue;
+        this.latencyTracker = latencyTracker;
         incompleteDirectiveQueue = new LinkedList<>();
         attachments = new HashMap<>();
     }
 
     @Override
     public synchronized void onDirective(Directive directive) {
+        if (latencyTracker != null) {
+            latencyTracker.directiveReceived(directive.getDialogRequestId());
+        }
         incompleteDirectiveQueue.add(directive);
         matchAttachementsWithDirectives();
     }
@@ -0,0 +1,324 @@
+/**
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * You may not use this file except in compliance with the License. A copy of the License is located the "LICENSE.txt"
+ * file accompanying this source. This file is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.amazon.alexa.avs;
+
+import com.amazon.alexa.avs.metrics.LatencyRecorder;
+import com.amazon.alexa.avs.metrics.Metrics;
+
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.DataLine;
+import javax.sound.sampled.LineUnavailableException;
+import javax.sound.sampled.Mixer;
+import javax.sound.sampled.SourceDataLine;
+
+import javazoom.jl.decoder.Bitstream;
+import javazoom.jl.decoder.Decoder;
+import javazoom.jl.decoder.Header;
+import javazoom.jl.decoder.JavaLayerException;
+import javazoom.jl.decoder.SampleBuffer;
+
+/**
+ * Short MP3 resources, such as the start and stop sounds and the alarm, decoded to PCM once.
+ *
+ * Playing a cached earcon neither reads nor decodes the resource. If the mixer that plays an
+ * earcon allows more than one source line, the line for its format is opened when the earcon is
+ * loaded and kept open, so the earcon starts as soon as its first samples have been written.
+ * Devices without software mixing only allow one open line. There the line is opened when an
+ * earcon is played and kept open for a few seconds afterwards, so earcons played in quick
+ * succession, like the alarm, reuse it, and it can be released with {@link #closeLine()} before
+ * other audio is played. Earcons are played one at a time, {@link #play(String)} blocks until the
+ * earcon has played or {@link #stop()} is called. The time from calling play, including opening
+ * the line, to the first samples being written is recorded in the earcons.startLatency
+ * {@link Metrics} latency.
+ */
+public class EarconCache {
+    private static final Logger log = LoggerFactory.getLogger(EarconCache.class);
+
+    private static final int BYTES_PER_SAMPLE = 2;
+    // Amount of audio written to the line at a time, so that stopping takes effect quickly
+    private static final int WRITE_MS = 20;
+    // How long the line is kept open after an earcon has played
+    private static final long IDLE_CLOSE_MS = 3000;
+
+    private final ClassLoader resLoader;
+    private final Map<String, Earcon> earcons;
+    private final LatencyRecorder startLatency;
+    private final ScheduledExecutorService idleCloser;
+    // Lines of mixers that can play other audio at the same time, by format, guarded by this
+    private final Map<AudioFormat, SourceDataLine> openLines;
+    // The line opened for playing on a device that cannot mix and the pending close of it,
+    // guarded by this
+    private SourceDataLine line;
+    private ScheduledFuture<?> idleClose;
+    private volatile SourceDataLine playingLine;
+
+    public EarconCache(ClassLoader resLoader) {
+        this.resLoader = resLoader;
+        earcons = new ConcurrentHashMap<>();
+        openLines = new HashMap<>();
+        startLatency = Metrics.getInstance().latency("earcons.startLatency");
+        idleCloser = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable);
+            thread.setName(EarconCache.class.getSimpleName());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Decode the resource, and open a line for it if its mixer can keep it open. Resources that
+     * cannot be decoded, or whose format the audio system cannot play, are logged and not cached.
+     *
+     * @return true if the earcon is cached.
+     */
+    public boolean load(String resource) {
+        if (earcons.containsKey(resource)) {
+            return true;
+        }
+        InputStream inpStream = resLoader.getResourceAsStream(resource);
+        if (inpStream == null) {
+            log.warn("Earcon {} not found", resource);
+            return false;
+        }
+        try {
+            Earcon earcon = decode(inpStream);
+            if (!AudioSystem.isLineSupported(
+                    new DataLine.Info(SourceDataLine.class, earcon.format))) {
+                log.warn("Unable to cache earcon {}, {} is not supported", resource,
+                        earcon.format);
+                return false;
+            }
+            openIfMixing(earcon.format);
+            earcons.put(resource, earcon);
+            log.debug("Loaded earcon {}: {} bytes of {}", resource, earcon.pcm.length,
+                    earcon.format);
+            return true;
+        } catch (JavaLayerException e) {
+            log.warn("Unable to cache earcon {}", resource, e);
+            return false;
+        } finally {
+            IOUtils.closeQuietly(inpStream);
+        }
+    }
+
+    /**
+     * Play a cached earcon and wait until it has played or has been stopped.
+     *
+     * @return false if the earcon is not cached or the output line is not available, e.g. because
+     *         another player holds the audio device.
+     */
+    public boolean play(String resource) {
+        long start = System.nanoTime();
+        Earcon earcon = earcons.get(resource);
+        if (earcon == null) {
+            return false;
+        }
+        SourceDataLine output;
+        try {
+            output = openLine(earcon.format);
+        } catch (LineUnavailableException | IllegalArgumentException e) {
+            log.warn("Unable to open a line for earcon {}", resource, e);
+            return false;
+        }
+
+        try {
+            int chunk = (int) (earcon.format.getFrameRate() * WRITE_MS / 1000)
+                    * earcon.format.getFrameSize();
+            int offset = 0;
+            while ((offset < earcon.pcm.length) && (playingLine == output)) {
+                int written = output.write(earcon.pcm, offset,
+                        Math.min(chunk, earcon.pcm.length - offset));
+                if (offset == 0) {
+                    startLatency.recordSince(start);
+                }
+                offset += written;
+            }
+            if (playingLine == output) {
+                output.drain();
+            }
+        } finally {
+            playingLine = null;
+            scheduleClose(output);
+        }
+        return true;
+    }
+
+    /**
+     * Stop the earcon that is currently playing, if any.
+     */
+    public void stop() {
+        SourceDataLine line = playingLine;
+        if (line != null) {
+            playingLine = null;
+            line.flush();
+        }
+    }
+
+    /**
+     * Close the output line that was opened on a device that cannot mix, if it is open and no
+     * earcon is playing. Lines that are kept open stay open.
+     */
+    public synchronized void closeLine() {
+        if ((line != null) && (playingLine == null)) {
+            cancelClose();
+            line.close();
+            line = null;
+        }
+    }
+
+    public synchronized void close() {
+        stop();
+        cancelClose();
+        if (line != null) {
+            line.close();
+            line = null;
+        }
+        for (SourceDataLine mixingLine : openLines.values()) {
+            mixingLine.close();
+        }
+        openLines.clear();
+        idleCloser.shutdownNow();
+        earcons.clear();
+    }
+
+    /**
+     * Open a line for the format that stays open, if the mixer that plays it allows more than one
+     * source line.
+     */
+    private synchronized void openIfMixing(AudioFormat format) {
+        if (openLines.containsKey(format)) {
+            return;
+        }
+        DataLine.Info info = new DataLine.Info(SourceDataLine.class, format);
+        for (Mixer.Info mixerInfo : AudioSystem.getMixerInfo()) {
+            Mixer mixer = AudioSystem.getMixer(mixerInfo);
+            if (!mixer.isLineSupported(info)) {
+                continue;
+            }
+            int maxLines = mixer.getMaxLines(info);
+            if ((maxLines != AudioSystem.NOT_SPECIFIED) && (maxLines <= 1)) {
+                log.debug("{} cannot mix {}, opening the earcon line when it is played",
+                        mixerInfo.getName(), format);
+                return;
+            }
+            try {
+                SourceDataLine mixingLine = (SourceDataLine) mixer.getLine(info);
+                mixingLine.open(format);
+                mixingLine.start();
+                openLines.put(format, mixingLine);
+            } catch (LineUnavailableException | IllegalArgumentException e) {
+                log.warn("Unable to open a line for {}, opening it when it is played", format, e);
+            }
+            return;
+        }
+    }
+
+    /**
+     * Return the line that is kept open for the format, or open one, or reuse the open one, and
+     * mark it as playing, so that it is not closed while the earcon plays.
+     */
+    private synchronized SourceDataLine openLine(AudioFormat format)
+            throws LineUnavailableException {
+        SourceDataLine mixingLine = openLines.get(format);
+        if (mixingLine != null) {
+            playingLine = mixingLine;
+            return mixingLine;
+        }
+        cancelClose();
+        if ((line != null) && !line.getFormat().matches(format)) {
+            line.close();
+            line = null;
+        }
+        if (line == null) {
+            SourceDataLine newLine = AudioSystem.getSourceDataLine(format);
+            newLine.open(format);
+            newLine.start();
+            line = newLine;
+        }
+        playingLine = line;
+        return line;
+    }
+
+    private synchronized void scheduleClose(final SourceDataLine playedLine) {
+        if ((line != playedLine) || idleCloser.isShutdown()) {
+            return;
+        }
+        cancelClose();
+        idleClose = idleCloser.schedule(() -> {
+            synchronized (EarconCache.this) {
+                if ((line == playedLine) && (playingLine == null)) {
+                    line.close();
+                    line = null;
+                }
+            }
+        }, IDLE_CLOSE_MS, TimeUnit.MILLISECONDS);
+    }
+
+    private void cancelClose() {
+        if (idleClose != null) {
+            idleClose.cancel(false);
+            idleClose = null;
+        }
+    }
+
+    private static Earcon decode(InputStream inpStream) throws JavaLayerException {
+        Bitstream bitstream = new Bitstream(inpStream);
+        Decoder decoder = new Decoder();
+        ByteArrayOutputStream pcm = new ByteArrayOutputStream();
+        AudioFormat format = null;
+        try {
+            Header header;
+            while ((header = bitstream.readFrame()) != null) {
+                SampleBuffer output = (SampleBuffer) decoder.decodeFrame(header, bitstream);
+                if (format == null) {
+                    format = new AudioFormat(decoder.getOutputFrequency(),
+                            BYTES_PER_SAMPLE * Byte.SIZE, decoder.getOutputChannels(), true,
+                            false);
+                }
+                short[] samples = output.getBuffer();
+                for (int i = 0; i < output.getBufferLength(); i++) {
+                    pcm.write(samples[i]);
+                    pcm.write(samples[i] >> 8);
+                }
+                bitstream.closeFrame();
+            }
+        } finally {
+            bitstream.close();
+        }
+        if (format == null) {
+            throw new JavaLayerException("No MP3 frames found");
+        }
+        return new Earcon(format, pcm.toByteArray());
+    }
+
+    private static class Earcon {
+        private final AudioFormat format;
+        private final byte[] pcm;
+
+        Earcon(AudioFormat format, byte[] pcm) {
+            this.format = format;
+            this.pcm = pcm;
+        }
+    }
+}
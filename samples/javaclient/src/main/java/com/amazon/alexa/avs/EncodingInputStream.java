@@ -0,0 +1,124 @@
+/**
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * You may not use this file except in compliance with the License. A copy of the License is located the "LICENSE.txt"
+ * file accompanying this source. This file is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.amazon.alexa.avs;
+
+import com.amazon.alexa.avs.metrics.Metrics;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An {@link InputStream} of encoded audio that encodes the captured audio read from another stream
+ * one frame at a time, so encoded frames are uploaded as soon as the audio has been captured.
+ *
+ * A partial frame at the end of the recording is padded with silence. A frame of any other size
+ * than the chunk size of the format fails the stream. The bytes read from and produced by the
+ * stream are counted in the audioEncoder.capturedBytes and audioEncoder.encodedBytes
+ * {@link Metrics} counters, the encoded frames and the time spent encoding them in
+ * audioEncoder.frames and audioEncoder.encodeNanos.
+ */
+public class EncodingInputStream extends InputStream {
+    private final InputStream captured;
+    private final AudioEncoder encoder;
+    private final byte[] frame;
+    private final byte[] encoded;
+    private int encodedPosition;
+    private int encodedLength;
+    private boolean endOfStream;
+
+    private final AtomicLong capturedBytes;
+    private final AtomicLong encodedBytes;
+    private final AtomicLong frames;
+    private final AtomicLong encodeNanos;
+
+    public EncodingInputStream(InputStream captured, AudioEncoder encoder) {
+        this.captured = captured;
+        this.encoder = encoder;
+        frame = new byte[encoder.getFormat().getCapturedChunkSizeBytes()];
+        encoded = new byte[encoder.getFormat().getChunkSizeBytes()];
+
+        Metrics metrics = Metrics.getInstance();
+        capturedBytes = metrics.counter("audioEncoder.capturedBytes");
+        encodedBytes = metrics.counter("audioEncoder.encodedBytes");
+        frames = metrics.counter("audioEncoder.frames");
+        encodeNanos = metrics.counter("audioEncoder.encodeNanos");
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] single = new byte[1];
+        int read = read(single, 0, 1);
+        return (read == -1) ? -1 : (single[0] & 0xFF);
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        while (encodedPosition == encodedLength) {
+            if (endOfStream || !encodeFrame()) {
+                return -1;
+            }
+        }
+        int count = Math.min(len, encodedLength - encodedPosition);
+        System.arraycopy(encoded, encodedPosition, b, off, count);
+        encodedPosition += count;
+        return count;
+    }
+
+    @Override
+    public int available() throws IOException {
+        return encodedLength - encodedPosition;
+    }
+
+    @Override
+    public void close() throws IOException {
+        captured.close();
+    }
+
+    /**
+     * @return false if there was no more audio to encode.
+     */
+    private boolean encodeFrame() throws IOException {
+        int filled = 0;
+        while (filled < frame.length) {
+            int read = captured.read(frame, filled, frame.length - filled);
+            if (read == -1) {
+                endOfStream = true;
+                break;
+            }
+            filled += read;
+        }
+        if (filled == 0) {
+            return false;
+        }
+        Arrays.fill(frame, filled, frame.length, (byte) 0);
+
+        long start = System.nanoTime();
+        int length = encoder.encode(frame, 0, encoded, 0);
+        encodeNanos.addAndGet(System.nanoTime() - start);
+        if (length != encoded.length) {
+            // The upload has no framing, a frame of a different size could not be decoded
+            encodedLength = 0;
+            encodedPosition = 0;
+            throw new IOException("Encoded frame of " + length + " bytes, " + encoder.getFormat()
+                    + " requires " + encoded.length);
+        }
+        encodedLength = length;
+        encodedPosition = 0;
+
+        frames.incrementAndGet();
+        capturedBytes.addAndGet(filled);
+        encodedBytes.addAndGet(encodedLength);
+        return true;
+    }
+}
@@ -0,0 +1,26 @@
+/**
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * You may not use this file except in compliance with the License. A copy of the License is located the "LICENSE.txt"
+ * file accompanying this source. This file is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.amazon.alexa.avs;
+
+/**
+ * Decides when the user has stopped speaking, so that a recording can be ended without a button
+ * press.
+ *
+ * An endpointer is handed every chunk of a recording on the capture thread, in order and as soon
+ * as it has been captured. It must therefore not block and should not allocate. A new endpointer
+ * is used for every recording.
+ */
+public interface Endpointer {
+    /**
+     * Process the next chunk of the recording.
+     *
+     * @return true once the end of speech has been reached.
+     */
+    boolean process(byte[] data, int offset, int length);
+}
@@ -0,0 +1,204 @@
+/**
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * You may not use this file except in compliance with the License. A copy of the License is located the "LICENSE.txt"
+ * file accompanying this source. This file is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.amazon.alexa.avs;
+
+import com.amazon.alexa.avs.metrics.LatencyRecorder;
+import com.amazon.alexa.avs.metrics.Metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An {@link Endpointer} for 16 bit, mono, little endian PCM audio based on the energy and the zero
+ * crossing rate of short frames.
+ *
+ * The audio is cut into frames of {@value #FRAME_MS} ms, independent of how it is chunked by the
+ * capture. A frame is speech if its energy is well above both an absolute minimum and the noise
+ * floor, which is tracked over the frames that are not speech. Quiet frames with a high zero
+ * crossing rate, like the fricatives at the end of a word, also count as speech. Speech has started
+ * after a few consecutive speech frames and has ended once it has been followed by the hangover of
+ * silence. If nobody starts speaking the recording is ended after the no speech timeout.
+ *
+ * The time from processing the last speech frame to detecting the end of speech is recorded in the
+ * endpointer.delay {@link Metrics} latency. Ended recordings are counted in endpointer.endOfSpeech
+ * and endpointer.noSpeech.
+ */
+public class EnergyEndpointer implements Endpointer {
+    public static final int DEFAULT_HANGOVER_MS = 800;
+    public static final int DEFAULT_NO_SPEECH_TIMEOUT_MS = 2000;
+    // Roughly the level of 5 on the 1 - 100 scale that was used for auto-endpointing before
+    public static final int DEFAULT_MIN_SPEECH_RMS = 600;
+
+    private static final int FRAME_MS = 10;
+    private static final int BYTES_PER_SAMPLE = 2;
+    // Consecutive speech frames before speech is considered started, to ignore clicks
+    private static final int SPEECH_ONSET_FRAMES = 3;
+    // A speech frame has at least 4 times the energy of the noise floor (6 dB in amplitude)
+    private static final int SPEECH_TO_NOISE_RATIO = 4;
+    // Zero crossings per sample from which a quiet frame is taken to be a fricative
+    private static final double FRICATIVE_ZERO_CROSSING_RATE = 0.3;
+    // The noise floor drops to quieter frames at once and rises with a time constant of 2^4 frames
+    private static final int NOISE_ADAPTATION_SHIFT = 4;
+
+    private final int frameSamples;
+    private final int hangoverFrames;
+    private final int noSpeechTimeoutFrames;
+    private final long minSpeechEnergy;
+    private final long minFricativeEnergy;
+
+    private final LatencyRecorder delay;
+    private final AtomicLong endOfSpeechCount;
+    private final AtomicLong noSpeechCount;
+
+    // The frame being accumulated, which may span chunks
+    private int frameSampleCount;
+    private long frameSumOfSquares;
+    private int frameZeroCrossings;
+    private boolean previousSampleNegative;
+    // Odd byte left over at the end of the last chunk, -1 if none
+    private int pendingByte = -1;
+
+    private long noiseFloor = -1;
+    private int frames;
+    private int speechRun;
+    private int silenceRun;
+    private boolean speechStarted;
+    private boolean ended;
+    private long lastSpeechNanos;
+
+    public EnergyEndpointer(float sampleRate) {
+        this(sampleRate, DEFAULT_HANGOVER_MS, DEFAULT_NO_SPEECH_TIMEOUT_MS,
+                DEFAULT_MIN_SPEECH_RMS);
+    }
+
+    /**
+     * @param sampleRate
+     *            The sample rate of the audio in Hz.
+     * @param hangoverMs
+     *            How long speech has to be followed by silence before it has ended.
+     * @param noSpeechTimeoutMs
+     *            How long to wait for speech to start before ending the recording.
+     * @param minSpeechRms
+     *            The RMS amplitude in sample units (0 - 32768) below which a frame is never speech.
+     */
+    public EnergyEndpointer(float sampleRate, int hangoverMs, int noSpeechTimeoutMs,
+            int minSpeechRms) {
+        if ((sampleRate <= 0) || (hangoverMs < 0) || (noSpeechTimeoutMs < 0)
+                || (minSpeechRms < 0)) {
+            throw new IllegalArgumentException("Endpointer settings must not be negative");
+        }
+        frameSamples = Math.max(1, (int) ((sampleRate * FRAME_MS) / 1000));
+        hangoverFrames = hangoverMs / FRAME_MS;
+        noSpeechTimeoutFrames = noSpeechTimeoutMs / FRAME_MS;
+        minSpeechEnergy = (long) minSpeechRms * minSpeechRms;
+        minFricativeEnergy = minSpeechEnergy / 4;
+
+        Metrics metrics = Metrics.getInstance();
+        delay = metrics.latency("endpointer.delay");
+        endOfSpeechCount = metrics.counter("endpointer.endOfSpeech");
+        noSpeechCount = metrics.counter("endpointer.noSpeech");
+    }
+
+    @Override
+    public boolean process(byte[] data, int offset, int length) {
+        if (ended) {
+            return true;
+        }
+
+        boolean speechInChunk = false;
+        int i = offset;
+        int end = offset + length;
+        if ((pendingByte >= 0) && (i < end)) {
+            speechInChunk |= addSample((short) ((data[i] << 8) | pendingByte));
+            pendingByte = -1;
+            i++;
+        }
+        for (; (i + 1) < end; i += BYTES_PER_SAMPLE) {
+            speechInChunk |= addSample((short) ((data[i + 1] << 8) | (data[i] & 0xFF)));
+        }
+        if (i < end) {
+            pendingByte = data[i] & 0xFF;
+        }
+
+        if (speechInChunk) {
+            lastSpeechNanos = System.nanoTime();
+        }
+        if (ended) {
+            if (speechStarted) {
+                endOfSpeechCount.incrementAndGet();
+                delay.recordSince(lastSpeechNanos);
+            } else {
+                noSpeechCount.incrementAndGet();
+            }
+        }
+        return ended;
+    }
+
+    /**
+     * @return Whether the sample completed a frame that is speech.
+     */
+    private boolean addSample(int sample) {
+        boolean negative = sample < 0;
+        if ((frameSampleCount > 0) && (negative != previousSampleNegative)) {
+            frameZeroCrossings++;
+        }
+        previousSampleNegative = negative;
+        frameSumOfSquares += sample * sample;
+        frameSampleCount++;
+
+        if (frameSampleCount < frameSamples) {
+            return false;
+        }
+        boolean speech = endFrame(frameSumOfSquares / frameSampleCount,
+                frameZeroCrossings / (double) frameSampleCount);
+        frameSampleCount = 0;
+        frameSumOfSquares = 0;
+        frameZeroCrossings = 0;
+        return speech;
+    }
+
+    private boolean endFrame(long energy, double zeroCrossingRate) {
+        if (ended) {
+            return false;
+        }
+        frames++;
+        if (noiseFloor < 0) {
+            // The recording may start while the user is already speaking, so a loud first frame
+            // must not become the noise floor
+            noiseFloor = Math.min(energy, minSpeechEnergy / SPEECH_TO_NOISE_RATIO);
+        }
+
+        long noiseThreshold = noiseFloor * SPEECH_TO_NOISE_RATIO;
+        boolean speech = ((energy > minSpeechEnergy) && (energy > noiseThreshold))
+                || ((energy > minFricativeEnergy) && (energy > noiseThreshold)
+                        && (zeroCrossingRate >= FRICATIVE_ZERO_CROSSING_RATE));
+
+        if (speech) {
+            speechRun++;
+            silenceRun = 0;
+            if (speechRun >= SPEECH_ONSET_FRAMES) {
+                speechStarted = true;
+            }
+        } else {
+            speechRun = 0;
+            silenceRun++;
+            if (energy < noiseFloor) {
+                noiseFloor = energy;
+            } else {
+                noiseFloor += (energy - noiseFloor) >> NOISE_ADAPTATION_SHIFT;
+            }
+        }
+
+        if (speechStarted) {
+            ended = silenceRun >= hangoverFrames;
+        } else {
+            ended = frames >= noSpeechTimeoutFrames;
+        }
+        return speech;
+    }
+}
@@ -0,0 +1,200 @@
+/**
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * You may not use this file except in compliance with the License. A copy of the License is located the "LICENSE.txt"
+ * file accompanying this source. This file is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.amazon.alexa.avs;
+
+import org.apache.commons.io.IOUtils;
+
+import java.io.File;
+import java.io.IOException;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.UnsupportedAudioFileException;
+
+/**
+ * A {@link WakeWordDetector} that matches the energy contour of the audio against a recording of
+ * the wake word.
+ *
+ * The audio is cut into {@value #FRAME_MS} ms frames and the log energy of every frame is compared
+ * with the template, the log energies of the frames of the recording with the silence around it
+ * trimmed. The wake word is detected when the correlation of the last frames with the template
+ * reaches the threshold. Correlating log energies makes the match independent of how loud the wake
+ * word is spoken, but also means that only the rhythm of the wake word is matched and not its
+ * sound, so words with the same syllable pattern trigger as well.
+ *
+ * The detector is fully deterministic and cheap, one multiply-add per template frame and frame. It
+ * is meant as a reference for comparing and integrating real keyword spotting engines rather than
+ * for production use.
+ */
+public class EnergyTemplateDetector implements WakeWordDetector {
+    public static final double DEFAULT_THRESHOLD = 0.85;
+
+    private static final int FRAME_MS = 10;
+    private static final int BYTES_PER_SAMPLE = 2;
+    // Shorter templates match too much of ordinary speech
+    private static final int MIN_TEMPLATE_FRAMES = 20;
+    // Frames at the edges of the recording this far below its loudest frame are silence
+    private static final double TEMPLATE_TRIM_DB = 30;
+    // The energy of the matched frames has to vary at least this much, the contour of steady noise
+    // is random and would otherwise match now and then
+    private static final double MIN_CONTOUR_DEVIATION_DB = 3;
+
+    private final int frameBytes;
+    // Zero mean and unit length, so the correlation is a dot product
+    private final double[] template;
+    private final double threshold;
+
+    // Log energies of the last template.length frames, circular
+    private final double[] history;
+    private int next;
+    private int frames;
+
+    /**
+     * @param sampleRate
+     *            The sample rate of the audio and the template.
+     * @param templatePcm
+     *            A recording of the wake word as 16 bit, mono, little endian PCM.
+     * @param threshold
+     *            The correlation with the template from which the wake word is detected, between 0
+     *            and 1.
+     */
+    public EnergyTemplateDetector(float sampleRate, byte[] templatePcm, double threshold) {
+        if ((threshold <= 0) || (threshold > 1)) {
+            throw new IllegalArgumentException("The threshold must be between 0 and 1");
+        }
+        frameBytes = ((int) (sampleRate * FRAME_MS) / 1000) * BYTES_PER_SAMPLE;
+        this.threshold = threshold;
+        template = createTemplate(templatePcm);
+        history = new double[template.length];
+    }
+
+    /**
+     * Create a detector from a recording of the wake word in any audio file format supported by
+     * Java Sound. The recording is converted to the given format if necessary.
+     */
+    public static EnergyTemplateDetector fromFile(File file, AudioFormat format)
+            throws IOException, UnsupportedAudioFileException {
+        byte[] pcm;
+        AudioFormat fileFormat;
+        try (AudioInputStream stream = AudioSystem.getAudioInputStream(file)) {
+            fileFormat = stream.getFormat();
+            pcm = IOUtils.toByteArray(stream);
+        }
+        if (!fileFormat.matches(format)) {
+            AudioFormatConverter converter = new AudioFormatConverter(fileFormat, format);
+            byte[] converted = new byte[converter.getMaxOutputBytes(pcm.length)];
+            int length = converter.convert(pcm, 0, pcm.length, converted, 0);
+            pcm = new byte[length];
+            System.arraycopy(converted, 0, pcm, 0, length);
+        }
+        return new EnergyTemplateDetector(format.getSampleRate(), pcm, DEFAULT_THRESHOLD);
+    }
+
+    private double[] createTemplate(byte[] pcm) {
+        int count = pcm.length / frameBytes;
+        double[] energies = new double[count];
+        double loudest = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < count; i++) {
+            energies[i] = logEnergy(pcm, i * frameBytes);
+            loudest = Math.max(loudest, energies[i]);
+        }
+
+        int first = 0;
+        int last = count - 1;
+        while ((first < last) && (energies[first] < (loudest - TEMPLATE_TRIM_DB))) {
+            first++;
+        }
+        while ((last > first) && (energies[last] < (loudest - TEMPLATE_TRIM_DB))) {
+            last--;
+        }
+        int length = (last - first) + 1;
+        if (length < MIN_TEMPLATE_FRAMES) {
+            throw new IllegalArgumentException("The wake word recording is shorter than "
+                    + (MIN_TEMPLATE_FRAMES * FRAME_MS) + " ms");
+        }
+
+        double[] contour = new double[length];
+        double mean = 0;
+        for (int i = 0; i < length; i++) {
+            contour[i] = energies[first + i];
+            mean += contour[i];
+        }
+        mean /= length;
+        double norm = 0;
+        for (int i = 0; i < length; i++) {
+            contour[i] -= mean;
+            norm += contour[i] * contour[i];
+        }
+        norm = Math.sqrt(norm);
+        if (norm == 0) {
+            throw new IllegalArgumentException("The energy of the wake word recording is constant");
+        }
+        for (int i = 0; i < length; i++) {
+            contour[i] /= norm;
+        }
+        return contour;
+    }
+
+    @Override
+    public int getFrameSizeBytes() {
+        return frameBytes;
+    }
+
+    @Override
+    public int process(byte[] frame, int offset) {
+        history[next] = logEnergy(frame, offset);
+        next = (next + 1) % history.length;
+        if (frames < history.length) {
+            frames++;
+            if (frames < history.length) {
+                return 0;
+            }
+        }
+
+        // history[next] is the oldest frame, it lines up with the start of the template
+        double sum = 0;
+        double sumOfSquares = 0;
+        double dot = 0;
+        for (int i = 0; i < template.length; i++) {
+            double energy = history[(next + i) % history.length];
+            sum += energy;
+            sumOfSquares += energy * energy;
+            dot += energy * template[i];
+        }
+        // The template has zero mean, so the dot product already is the covariance
+        double deviation = Math.sqrt(Math.max(0, sumOfSquares - ((sum * sum) / template.length)));
+        if ((deviation / Math.sqrt(template.length)) < MIN_CONTOUR_DEVIATION_DB) {
+            return 0;
+        }
+        if ((dot / deviation) < threshold) {
+            return 0;
+        }
+
+        // Start over, so the same utterance is not detected in the next frames again
+        frames = 0;
+        return template.length * frameBytes;
+    }
+
+    @Override
+    public void reset() {
+        frames = 0;
+        next = 0;
+    }
+
+    private double logEnergy(byte[] pcm, int offset) {
+        long sumOfSquares = 0;
+        for (int i = offset; i < (offset + frameBytes); i += BYTES_PER_SAMPLE) {
+            int sample = (short) ((pcm[i + 1] << 8) | (pcm[i] & 0xFF));
+            sumOfSquares += sample * sample;
+        }
+        double meanSquare = (double) sumOfSquares / (frameBytes / BYTES_PER_SAMPLE);
+        return 10 * Math.log10(meanSquare + 1);
+    }
+}
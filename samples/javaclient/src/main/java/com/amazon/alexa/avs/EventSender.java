@@ -0,0 +1,29 @@
+/**
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * You may not use this file except in compliance with the License. A copy of the License is located the "LICENSE.txt"
+ * file accompanying this source. This file is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.amazon.alexa.avs;
+
+import com.amazon.alexa.avs.message.request.RequestBody;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Sends the events that report state changes of the client to AVS.
+ */
+public interface EventSender {
+    /**
+     * Queue an event to be sent.
+     */
+    void sendRequest(RequestBody body);
+
+    /**
+     * @return A future that completes once the events queued before this call have been sent or
+     *         have failed. It is already completed if no event is being sent.
+     */
+    CompletableFuture<Void> whenEventsSent();
+}
@@ -0,0 +1,174 @@
+/**
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * You may not use this file except in compliance with the License. A copy of the License is located the "LICENSE.txt"
+ * file accompanying this source. This file is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.amazon.alexa.avs;
+
+import com.amazon.alexa.avs.config.ObjectMapperFactory;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The result of probing the audio hardware for microphones, stored on disk so that the probing
+ * only has to be done once.
+ *
+ * The cache records the capabilities of every mixer with a capture line and the mixer that was
+ * selected. It is keyed by a fingerprint of the mixers the audio system reports and the format
+ * that was requested, so it is ignored once the hardware or the format changes.
+ */
+public class MicrophoneCache {
+    private static final Logger log = LoggerFactory.getLogger(MicrophoneCache.class);
+
+    public static final String FILE_NAME = "microphones.json";
+
+    private String fingerprint;
+    private String selectedMixer;
+    private List<MixerCapabilities> mixers = new ArrayList<>();
+
+    /**
+     * @return The cache stored in the given file, or null if there is none or it cannot be read.
+     */
+    public static MicrophoneCache load(File file) {
+        if (!file.exists()) {
+            return null;
+        }
+        try {
+            return ObjectMapperFactory.getObjectReader(MicrophoneCache.class).readValue(file);
+        } catch (IOException e) {
+            log.warn("Ignoring unreadable microphone cache {}", file, e);
+            return null;
+        }
+    }
+
+    public void save(File file) {
+        try {
+            ObjectMapperFactory.getObjectWriter().writeValue(file, this);
+        } catch (IOException e) {
+            log.warn("Failed to write the microphone cache {}", file, e);
+        }
+    }
+
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
+    public void setFingerprint(String fingerprint) {
+        this.fingerprint = fingerprint;
+    }
+
+    /**
+     * @return The name of the mixer whose capture line is used, null if there is none.
+     */
+    public String getSelectedMixer() {
+        return selectedMixer;
+    }
+
+    public void setSelectedMixer(String selectedMixer) {
+        this.selectedMixer = selectedMixer;
+    }
+
+    public List<MixerCapabilities> getMixers() {
+        return mixers;
+    }
+
+    public void setMixers(List<MixerCapabilities> mixers) {
+        this.mixers = mixers;
+    }
+
+    /**
+     * The capture capabilities of a mixer, as reported by its first capture line.
+     */
+    public static class MixerCapabilities {
+        private String name;
+        private String description;
+        private List<String> formats = new ArrayList<>();
+        private int minBufferSize;
+        private int maxBufferSize;
+        private int defaultBufferSize;
+        private String captureFormat;
+        private int defaultLatencyMs;
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public String getDescription() {
+            return description;
+        }
+
+        public void setDescription(String description) {
+            this.description = description;
+        }
+
+        public List<String> getFormats() {
+            return formats;
+        }
+
+        public void setFormats(List<String> formats) {
+            this.formats = formats;
+        }
+
+        public int getMinBufferSize() {
+            return minBufferSize;
+        }
+
+        public void setMinBufferSize(int minBufferSize) {
+            this.minBufferSize = minBufferSize;
+        }
+
+        public int getMaxBufferSize() {
+            return maxBufferSize;
+        }
+
+        public void setMaxBufferSize(int maxBufferSize) {
+            this.maxBufferSize = maxBufferSize;
+        }
+
+        /**
+         * @return The buffer size of the line in bytes if it is opened without one.
+         */
+        public int getDefaultBufferSize() {
+            return defaultBufferSize;
+        }
+
+        public void setDefaultBufferSize(int defaultBufferSize) {
+            this.defaultBufferSize = defaultBufferSize;
+        }
+
+        /**
+         * @return The format audio would be captured in from this mixer.
+         */
+        public String getCaptureFormat() {
+            return captureFormat;
+        }
+
+        public void setCaptureFormat(String captureFormat) {
+            this.captureFormat = captureFormat;
+        }
+
+        /**
+         * @return The latency of the default buffer in the capture format.
+         */
+        public int getDefaultLatencyMs() {
+            return defaultLatencyMs;
+        }
+
+        public void setDefaultLatencyMs(int defaultLatencyMs) {
+            this.defaultLatencyMs = defaultLatencyMs;
+        }
+    }
+}
@@ -8,35 +8,286 @@
  */
 package com.amazon.alexa.avs;
 
+import org.apache.commons.codec.digest.DigestUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.sound.sampled.AudioFormat;
 import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.DataLine;
 import javax.sound.sampled.Line;
 import javax.sound.sampled.Mixer;
 import javax.sound.sampled.TargetDataLine;
 
+/**
+ * Finds the microphone to capture from.
+ *
+ * Probing the audio hardware opens every mixer, which is slow on devices with many audio devices.
+ * It is therefore done once: the capabilities of every mixer and the one that was selected are
+ * stored in a {@link MicrophoneCache}, which is used for as long as the audio system reports the
+ * same mixers and the same format is requested. A mixer can also be pinned by name, in which case nothing is probed at all.
+ */
 public class MicrophoneLineFactory {
+    private static final Logger log = LoggerFactory.getLogger(MicrophoneLineFactory.class);
+
+    // Sample rates to try if a line does not list the rates it supports
+    private static final float[] CANDIDATE_SAMPLE_RATES =
+            { 16000f, 48000f, 32000f, 44100f, 96000f, 22050f, 8000f };
+    private static final int[] CANDIDATE_CHANNELS = { 1, 2 };
+
+    private final String pinnedMixer;
+    private final File cacheFile;
+
+    /**
+     * Probe the audio hardware every time, without a cache.
+     */
+    public MicrophoneLineFactory() {
+        this(null, null);
+    }
+
+    /**
+     * @param pinnedMixer
+     *            The name of the mixer to capture from, null to select one automatically.
+     * @param cacheFile
+     *            Where to cache the result of probing the audio hardware, null to not cache it.
+     */
+    public MicrophoneLineFactory(String pinnedMixer, File cacheFile) {
+        this.pinnedMixer = pinnedMixer;
+        this.cacheFile = cacheFile;
+    }
+
     // get the system default microphone
     public TargetDataLine getMicrophone() {
+        return getMicrophone(null);
+    }
+
+    /**
+     * Get the first microphone that supports the given format, or failing that the first
+     * microphone that captures audio which can be converted to it. The pinned or cached mixer is
+     * used without probing if the audio system still reports it.
+     */
+    public TargetDataLine getMicrophone(AudioFormat audioFormat) {
         Mixer.Info[] mixers = AudioSystem.getMixerInfo();
+
+        if (pinnedMixer != null) {
+            TargetDataLine line = getLine(mixers, pinnedMixer);
+            if (line != null) {
+                log.info("Using the pinned microphone {}", pinnedMixer);
+                return line;
+            }
+            log.warn("The pinned microphone {} was not found, selecting another one", pinnedMixer);
+        }
+
+        String fingerprint = getFingerprint(mixers, audioFormat);
+        MicrophoneCache cache = (cacheFile == null) ? null : MicrophoneCache.load(cacheFile);
+        if ((cache != null) && fingerprint.equals(cache.getFingerprint())
+                && (cache.getSelectedMixer() != null)) {
+            TargetDataLine line = getLine(mixers, cache.getSelectedMixer());
+            if (line != null) {
+                log.info("Using the cached microphone {}", cache.getSelectedMixer());
+                return line;
+            }
+        }
+
+        long start = System.nanoTime();
+        cache = new MicrophoneCache();
+        cache.setFingerprint(fingerprint);
+        TargetDataLine line = probe(mixers, audioFormat, cache);
+        log.info("Probed {} mixers in {} ms, selected {}", mixers.length,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), cache.getSelectedMixer());
+        if (cacheFile != null) {
+            cache.save(cacheFile);
+        }
+        return line;
+    }
+
+    /**
+     * Open every mixer to find the ones that work, record their capabilities and select a line.
+     */
+    private TargetDataLine probe(Mixer.Info[] mixers, AudioFormat audioFormat,
+            MicrophoneCache cache) {
+        TargetDataLine selected = null;
+        TargetDataLine convertible = null;
+        String convertibleMixer = null;
         for (Mixer.Info mixerInfo : mixers) {
             Mixer m = AudioSystem.getMixer(mixerInfo);
             try {
                 m.open();
                 m.close();
             } catch (Exception e) {
+                log.debug("Skipping mixer {} that cannot be opened", mixerInfo.getName(), e);
                 continue;
             }
 
-            Line.Info[] lines = m.getTargetLineInfo();
-            for (Line.Info li : lines) {
-                try {
-                    TargetDataLine temp = (TargetDataLine) AudioSystem.getLine(li);
-                    if (temp != null) {
-                        return temp;
-                    }
-                } catch (Exception e) {
+            TargetDataLine temp = getLine(m);
+            if (temp == null) {
+                continue;
+            }
+            cache.getMixers().add(getCapabilities(mixerInfo, temp, audioFormat));
+            if (selected != null) {
+                continue;
+            }
+            if ((audioFormat == null) || isFormatSupported(temp, audioFormat)) {
+                selected = temp;
+                cache.setSelectedMixer(mixerInfo.getName());
+            } else if ((convertible == null)
+                    && !getCaptureFormat(temp, audioFormat).equals(audioFormat)) {
+                convertible = temp;
+                convertibleMixer = mixerInfo.getName();
+            }
+        }
+        if ((selected == null) && (convertible != null)) {
+            selected = convertible;
+            cache.setSelectedMixer(convertibleMixer);
+        }
+        return selected;
+    }
+
+    private TargetDataLine getLine(Mixer.Info[] mixers, String name) {
+        for (Mixer.Info mixerInfo : mixers) {
+            if (mixerInfo.getName().equals(name)) {
+                return getLine(AudioSystem.getMixer(mixerInfo));
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return The first capture line of the mixer, null if it has none.
+     */
+    private TargetDataLine getLine(Mixer mixer) {
+        for (Line.Info li : mixer.getTargetLineInfo()) {
+            try {
+                Line line = mixer.getLine(li);
+                if (line instanceof TargetDataLine) {
+                    return (TargetDataLine) line;
                 }
+            } catch (Exception e) {
+                log.debug("Unable to get line {} of mixer {}", li, mixer.getMixerInfo().getName(),
+                        e);
             }
         }
         return null;
     }
+
+    private MicrophoneCache.MixerCapabilities getCapabilities(Mixer.Info mixerInfo,
+            TargetDataLine line, AudioFormat audioFormat) {
+        MicrophoneCache.MixerCapabilities capabilities = new MicrophoneCache.MixerCapabilities();
+        capabilities.setName(mixerInfo.getName());
+        capabilities.setDescription(mixerInfo.getDescription());
+        capabilities.setDefaultBufferSize(line.getBufferSize());
+        if (line.getLineInfo() instanceof DataLine.Info) {
+            DataLine.Info info = (DataLine.Info) line.getLineInfo();
+            for (AudioFormat format : info.getFormats()) {
+                capabilities.getFormats().add(format.toString());
+            }
+            capabilities.setMinBufferSize(info.getMinBufferSize());
+            capabilities.setMaxBufferSize(info.getMaxBufferSize());
+        }
+        if (audioFormat != null) {
+            AudioFormat captureFormat = getCaptureFormat(line, audioFormat);
+            capabilities.setCaptureFormat(captureFormat.toString());
+            if (line.getBufferSize() > 0) {
+                capabilities.setDefaultLatencyMs((int) ((line.getBufferSize() * 1000L)
+                        / (captureFormat.getFrameSize() * (long) captureFormat.getFrameRate())));
+            }
+        }
+        return capabilities;
+    }
+
+    /**
+     * @return A fingerprint of the mixers reported by the audio system and the requested format,
+     *         which changes when audio devices are added or removed or a different format is
+     *         requested, as the selected mixer depends on both.
+     */
+    private String getFingerprint(Mixer.Info[] mixers, AudioFormat audioFormat) {
+        List<String> descriptions = new ArrayList<>();
+        for (Mixer.Info mixerInfo : mixers) {
+            descriptions.add(mixerInfo.getName() + "|" + mixerInfo.getVendor() + "|"
+                    + mixerInfo.getDescription() + "|" + mixerInfo.getVersion());
+        }
+        Collections.sort(descriptions);
+        descriptions.add("format|" + audioFormat);
+        return DigestUtils.sha256Hex(String.join("\n", descriptions));
+    }
+
+    /**
+     * Choose the format to capture from the given line in order to provide audio in the given
+     * format. This is the format itself if the line supports it. Otherwise it is the 16 bit PCM
+     * format supported by the line that is cheapest to convert with an
+     * {@link AudioFormatConverter}: preferring sample rates of at least the target rate, integer
+     * multiples of it, lower rates and fewer channels, in that order. If no supported format can be
+     * converted the given format is returned.
+     */
+    public AudioFormat getCaptureFormat(TargetDataLine line, AudioFormat audioFormat) {
+        if (isFormatSupported(line, audioFormat)
+                || !(line.getLineInfo() instanceof DataLine.Info)) {
+            return audioFormat;
+        }
+
+        AudioFormat best = null;
+        for (AudioFormat format : getCandidateFormats((DataLine.Info) line.getLineInfo())) {
+            if (isFormatSupported(line, format)
+                    && ((best == null) || (compare(format, best, audioFormat) < 0))) {
+                best = format;
+            }
+        }
+        return (best == null) ? audioFormat : best;
+    }
+
+    private boolean isFormatSupported(TargetDataLine line, AudioFormat format) {
+        Line.Info info = line.getLineInfo();
+        return (info instanceof DataLine.Info) && ((DataLine.Info) info).isFormatSupported(format);
+    }
+
+    /**
+     * @return The concrete 16 bit PCM formats described by the formats of the line, which may leave
+     *         the sample rate and number of channels unspecified.
+     */
+    private List<AudioFormat> getCandidateFormats(DataLine.Info info) {
+        List<AudioFormat> candidates = new ArrayList<>();
+        for (AudioFormat format : info.getFormats()) {
+            if (!AudioFormat.Encoding.PCM_SIGNED.equals(format.getEncoding())
+                    || (format.getSampleSizeInBits() != 16)) {
+                continue;
+            }
+            float[] rates = (format.getSampleRate() == AudioSystem.NOT_SPECIFIED)
+                    ? CANDIDATE_SAMPLE_RATES : new float[] { format.getSampleRate() };
+            int[] channels = (format.getChannels() == AudioSystem.NOT_SPECIFIED)
+                    ? CANDIDATE_CHANNELS : new int[] { format.getChannels() };
+            for (float rate : rates) {
+                for (int channelCount : channels) {
+                    AudioFormat candidate =
+                            new AudioFormat(rate, 16, channelCount, true, format.isBigEndian());
+                    if (AudioFormatConverter.isConvertible(candidate)) {
+                        candidates.add(candidate);
+                    }
+                }
+            }
+        }
+        return candidates;
+    }
+
+    private int compare(AudioFormat a, AudioFormat b, AudioFormat target) {
+        float targetRate = target.getSampleRate();
+        int result =
+                Boolean.compare(a.getSampleRate() < targetRate, b.getSampleRate() < targetRate);
+        if (result == 0) {
+            result = Boolean.compare((a.getSampleRate() % targetRate) != 0,
+                    (b.getSampleRate() % targetRate) != 0);
+        }
+        if (result == 0) {
+            result = Float.compare(a.getSampleRate(), b.getSampleRate());
+        }
+        if (result == 0) {
+            result = Integer.compare(a.getChannels(), b.getChannels());
+        }
+        return result;
+    }
 }
@@ -0,0 +1,94 @@
+/**
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * You may not use this file except in compliance with the License. A copy of the License is located the "LICENSE.txt"
+ * file accompanying this source. This file is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.amazon.alexa.avs;
+
+import com.amazon.alexa.avs.http.StreamingAudioContentProvider.AudioUploadListener;
+import com.amazon.alexa.avs.metrics.LatencyRecorder;
+import com.amazon.alexa.avs.metrics.Metrics;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Measures the latencies of the current SpeechRecognizer.Recognize request:
+ *
+ * <ul>
+ * <li>recognize.firstAudioByte, from the start of the recording until the first chunk of audio is
+ * handed to the HTTP/2 stream.</li>
+ * <li>recognize.uploadTail, from the end of speech until the last chunk of audio is handed to the
+ * HTTP/2 stream.</li>
+ * <li>recognize.endOfSpeechToFirstDirective, from the end of speech until the first directive of
+ * the dialog is received.</li>
+ * </ul>
+ */
+public class RecognizeLatencyTracker implements AudioUploadListener {
+    private static final Logger log = LoggerFactory.getLogger(RecognizeLatencyTracker.class);
+
+    private static final long UNSET = -1;
+
+    private final LatencyRecorder firstAudioByte;
+    private final LatencyRecorder uploadTail;
+    private final LatencyRecorder endOfSpeechToFirstDirective;
+
+    private String dialogRequestId;
+    private long recognizeStartedNanos = UNSET;
+    private long endOfSpeechNanos = UNSET;
+    private boolean firstDirectiveReceived;
+
+    public RecognizeLatencyTracker() {
+        Metrics metrics = Metrics.getInstance();
+        firstAudioByte = metrics.latency("recognize.firstAudioByte");
+        uploadTail = metrics.latency("recognize.uploadTail");
+        endOfSpeechToFirstDirective = metrics.latency("recognize.endOfSpeechToFirstDirective");
+    }
+
+    public synchronized void recognizeStarted(String dialogRequestId) {
+        this.dialogRequestId = dialogRequestId;
+        recognizeStartedNanos = System.nanoTime();
+        endOfSpeechNanos = UNSET;
+        firstDirectiveReceived = false;
+    }
+
+    public synchronized void endOfSpeech() {
+        if ((recognizeStartedNanos != UNSET) && (endOfSpeechNanos == UNSET)) {
+            endOfSpeechNanos = System.nanoTime();
+        }
+    }
+
+    @Override
+    public synchronized void onFirstAudioChunk() {
+        if (recognizeStartedNanos != UNSET) {
+            firstAudioByte.recordSince(recognizeStartedNanos);
+            log.debug("{}", firstAudioByte);
+        }
+    }
+
+    @Override
+    public synchronized void onLastAudioChunk() {
+        if (endOfSpeechNanos != UNSET) {
+            uploadTail.recordSince(endOfSpeechNanos);
+        }
+    }
+
+    /**
+     * Called for every directive as soon as it is parsed, before it is queued for handling.
+     */
+    public synchronized void directiveReceived(String directiveDialogRequestId) {
+        // Directives that arrive before the end of speech (e.g. StopCapture) are not a response
+        // latency, so they are ignored
+        if (firstDirectiveReceived || (endOfSpeechNanos == UNSET)
+                || (directiveDialogRequestId == null)
+                || !directiveDialogRequestId.equals(dialogRequestId)) {
+            return;
+        }
+        firstDirectiveReceived = true;
+        endOfSpeechToFirstDirective.recordSince(endOfSpeechNanos);
+        log.info("{}", endOfSpeechToFirstDirective);
+    }
+}
@@ -9,5 +9,23 @@
 package com.amazon.alexa.avs;
 
 public interface RecordingRMSListener {
+    /**
+     * @param rms
+     *            The level of the last chunk of audio from 1 to 100, or 0 when recording stops.
+     */
     void rmsChanged(int rms);
+
+    /**
+     * Called after {@link #rmsChanged(int)} with the levels of the same chunk in sample units
+     * (0 - 32768), as measured by the {@link AudioLevelMeter}.
+     *
+     * @param peak
+     *            The largest absolute sample of the last chunk.
+     * @param rms
+     *            The RMS amplitude of the last chunk.
+     * @param smoothedRms
+     *            The RMS amplitude over the meter's smoothing window.
+     */
+    default void levelChanged(int peak, int rms, int smoothedRms) {
+    }
 }
@@ -0,0 +1,137 @@
+/**
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * You may not use this file except in compliance with the License. A copy of the License is located the "LICENSE.txt"
+ * file accompanying this source. This file is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.amazon.alexa.avs;
+
+import com.amazon.alexa.avs.metrics.LatencyRecorder;
+import com.amazon.alexa.avs.metrics.Metrics;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Tracks the recording session of the client: idle, listening to the user, or processing the
+ * Recognize request, and decides when an ExpectSpeech directive can be answered.
+ *
+ * Alexa expects the microphone to be opened after the request that returned the ExpectSpeech
+ * directive has been processed and Alexa has stopped speaking. The session remembers the directive
+ * and runs the expect speech handler as soon as both have happened, instead of the client polling
+ * for it. The time from receiving the directive until the handler is run is recorded in the
+ * expectSpeech.wait {@link Metrics} latency, the time from then until listening again in
+ * expectSpeech.turnaround.
+ *
+ * All methods are thread safe. The handler is run without holding the lock of the session.
+ */
+public class RecordingSession {
+    private static final Logger log = LoggerFactory.getLogger(RecordingSession.class);
+
+    public enum State {
+        IDLE, LISTENING, PROCESSING;
+    }
+
+    private final Runnable expectSpeechHandler;
+    private final LatencyRecorder waitLatency;
+    private final LatencyRecorder turnaroundLatency;
+
+    private State state = State.IDLE;
+    private boolean alexaSpeaking;
+    // When the pending ExpectSpeech directive was received, 0 if there is none
+    private long expectSpeechNanos;
+    // When the expect speech handler was run, 0 once listening
+    private long expectSpeechReadyNanos;
+
+    /**
+     * @param expectSpeechHandler
+     *            Run once it is time to open the microphone for an ExpectSpeech directive.
+     */
+    public RecordingSession(Runnable expectSpeechHandler) {
+        this.expectSpeechHandler = expectSpeechHandler;
+        waitLatency = Metrics.getInstance().latency("expectSpeech.wait");
+        turnaroundLatency = Metrics.getInstance().latency("expectSpeech.turnaround");
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    /**
+     * A recording has been started.
+     *
+     * @return false if the session was not idle, i.e. the previous request has not finished.
+     */
+    public synchronized boolean startListening() {
+        boolean wasIdle = state == State.IDLE;
+        if (!wasIdle) {
+            log.warn("Listening while the previous request is {}", state);
+        }
+        state = State.LISTENING;
+        if (expectSpeechReadyNanos != 0) {
+            turnaroundLatency.recordSince(expectSpeechReadyNanos);
+            expectSpeechReadyNanos = 0;
+        }
+        // The user answered without being asked, the directive is answered by this recording too
+        expectSpeechNanos = 0;
+        return wasIdle;
+    }
+
+    /**
+     * The recording has been stopped and the request is being processed.
+     *
+     * @return false if the session was not listening.
+     */
+    public synchronized boolean stopListening() {
+        if (state != State.LISTENING) {
+            return false;
+        }
+        state = State.PROCESSING;
+        return true;
+    }
+
+    /**
+     * The request has been processed.
+     */
+    public void finishProcessing() {
+        synchronized (this) {
+            state = State.IDLE;
+        }
+        runExpectSpeechHandlerIfReady();
+    }
+
+    /**
+     * An ExpectSpeech directive has been received.
+     */
+    public void expectSpeech() {
+        synchronized (this) {
+            expectSpeechNanos = System.nanoTime();
+        }
+        runExpectSpeechHandlerIfReady();
+    }
+
+    public synchronized void alexaSpeechStarted() {
+        alexaSpeaking = true;
+    }
+
+    public void alexaSpeechFinished() {
+        synchronized (this) {
+            alexaSpeaking = false;
+        }
+        runExpectSpeechHandlerIfReady();
+    }
+
+    private void runExpectSpeechHandlerIfReady() {
+        synchronized (this) {
+            if ((expectSpeechNanos == 0) || (state != State.IDLE) || alexaSpeaking) {
+                return;
+            }
+            waitLatency.recordSince(expectSpeechNanos);
+            expectSpeechNanos = 0;
+            expectSpeechReadyNanos = System.nanoTime();
+        }
+        expectSpeechHandler.run();
+    }
+}
@@ -11,4 +11,11 @@ package com.amazon.alexa.avs;
 public interface RecordingStateListener {
     void recordingStarted();
     void recordingCompleted();
+
+    /**
+     * Called on the capture thread when the {@link Endpointer} of the recording has detected the
+     * end of speech. The recording continues until it is stopped.
+     */
+    default void endOfSpeechDetected() {
+    }
 }
@@ -0,0 +1,38 @@
+/**
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * You may not use this file except in compliance with the License. A copy of the License is located the "LICENSE.txt"
+ * file accompanying this source. This file is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.amazon.alexa.avs;
+
+/**
+ * Spots a wake word in the audio captured between recordings, so that a recording can be started
+ * hands free.
+ *
+ * A detector is handed the always-on capture stream in frames of {@link #getFrameSizeBytes()}
+ * bytes of 16 bit, mono, little endian PCM, on the capture thread and in order. It must therefore
+ * not block and should not allocate. Frames are not passed while a recording is in progress, and
+ * {@link #reset()} is called once it has ended.
+ */
+public interface WakeWordDetector {
+    /**
+     * @return The number of bytes of audio passed to every call of
+     *         {@link #process(byte[], int)}, a multiple of the sample size.
+     */
+    int getFrameSizeBytes();
+
+    /**
+     * Process the next frame of audio.
+     *
+     * @return The length of the wake word in bytes if it ends with this frame, 0 otherwise.
+     */
+    int process(byte[] frame, int offset);
+
+    /**
+     * Forget the audio processed so far, the next frame does not follow the previous one.
+     */
+    void reset();
+}
@@ -0,0 +1,23 @@
+/**
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * You may not use this file except in compliance with the License. A copy of the License is located the "LICENSE.txt"
+ * file accompanying this source. This file is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.amazon.alexa.avs;
+
+public interface WakeWordListener {
+    /**
+     * The wake word has been spoken. The positions are byte offsets into the audio captured since
+     * the microphone was opened, the start can be passed on to {@link AVSController} to begin the
+     * recording with the wake word.
+     *
+     * @param wakeWordStart
+     *            The position of the first byte of the wake word.
+     * @param wakeWordEnd
+     *            The position just after the last byte of the wake word.
+     */
+    void onWakeWordDetected(long wakeWordStart, long wakeWordEnd);
+}
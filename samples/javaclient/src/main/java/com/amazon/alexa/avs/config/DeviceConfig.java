@@ -31,6 +31,7 @@ public class DeviceConfig {
     public static final String COMPANION_SERVICE = "companionService";
     public static final String PROVISIONING_METHOD = "provisioningMethod";
     public static final String AVS_HOST = "avsHost";
+    public static final String AUDIO_CAPTURE = "audioCapture";
 
     /*
      * Required parameters from the config file.
@@ -45,6 +46,7 @@ public class DeviceConfig {
      */
     private CompanionAppInformation companionAppInfo;
     private CompanionServiceInformation companionServiceInfo;
+    private AudioCaptureInformation audioCaptureInfo = new AudioCaptureInformation();
 
     @SuppressWarnings("javadoc")
     public enum ProvisioningMethod {
@@ -197,6 +199,20 @@ public class DeviceConfig {
         this.companionServiceInfo = companionServiceInfo;
     }
 
+    /**
+     * @return audioCaptureInfo.
+     */
+    public AudioCaptureInformation getAudioCaptureInfo() {
+        return audioCaptureInfo;
+    }
+
+    /**
+     * @param audioCaptureInfo
+     */
+    public void setAudioCaptureInfo(AudioCaptureInformation audioCaptureInfo) {
+        this.audioCaptureInfo = audioCaptureInfo;
+    }
+
     /**
      * Save this file back to disk.
      */
@@ -225,6 +241,10 @@ public class DeviceConfig {
             builder.add(COMPANION_SERVICE, companionServiceInfo.toJson());
         }
 
+        if (audioCaptureInfo != null) {
+            builder.add(AUDIO_CAPTURE, audioCaptureInfo.toJson());
+        }
+
         return builder.build();
     }
 
@@ -503,6 +523,197 @@ public class DeviceConfig {
         }
     }
 
+    /**
+     * Describes how audio is captured from the microphone. The section is optional, without it
+     * the microphone is only opened while recording.
+     */
+    public static class AudioCaptureInformation {
+        public static final String CONTINUOUS = "continuous";
+        public static final String PRE_ROLL_MS = "preRollMs";
+        public static final String ENDPOINT_HANGOVER_MS = "endpointHangoverMs";
+        public static final String ENCODER_CLASS = "encoderClass";
+        public static final String MICROPHONE = "microphone";
+        public static final String CAPTURE_LATENCY_MS = "captureLatencyMs";
+        public static final String WAKE_WORD_DETECTOR_CLASS = "wakeWordDetectorClass";
+        public static final String WAKE_WORD_TEMPLATE = "wakeWordTemplate";
+
+        public static final int DEFAULT_PRE_ROLL_MS = 500;
+        public static final int DEFAULT_ENDPOINT_HANGOVER_MS = 800;
+        public static final int DEFAULT_CAPTURE_LATENCY_MS = 100;
+
+        private final boolean continuous;
+        private final int preRollMs;
+        private final int endpointHangoverMs;
+        private String encoderClass;
+        private String microphone;
+        private int captureLatencyMs = DEFAULT_CAPTURE_LATENCY_MS;
+        private String wakeWordDetectorClass;
+        private String wakeWordTemplate;
+
+        /**
+         * Creates an {@link AudioCaptureInformation} object with the default settings.
+         */
+        public AudioCaptureInformation() {
+            this(false, DEFAULT_PRE_ROLL_MS, DEFAULT_ENDPOINT_HANGOVER_MS);
+        }
+
+        /**
+         * Creates an {@link AudioCaptureInformation} object.
+         *
+         * @param continuous
+         *            Whether to keep the microphone open between recordings.
+         * @param preRollMs
+         *            How much of the audio captured before a recording is started to include in
+         *            it, only used when capturing continuously.
+         * @param endpointHangoverMs
+         *            How long the user has to be silent after speaking before the recording is
+         *            ended automatically.
+         */
+        public AudioCaptureInformation(boolean continuous, int preRollMs,
+                int endpointHangoverMs) {
+            if (preRollMs < 0) {
+                throw new MalformedConfigException(
+                        PRE_ROLL_MS + " is negative in your config file.");
+            }
+            if (endpointHangoverMs < 0) {
+                throw new MalformedConfigException(
+                        ENDPOINT_HANGOVER_MS + " is negative in your config file.");
+            }
+            this.continuous = continuous;
+            this.preRollMs = preRollMs;
+            this.endpointHangoverMs = endpointHangoverMs;
+        }
+
+        /**
+         * @return continuous.
+         */
+        public boolean isContinuous() {
+            return continuous;
+        }
+
+        /**
+         * @return preRollMs.
+         */
+        public int getPreRollMs() {
+            return preRollMs;
+        }
+
+        /**
+         * @return endpointHangoverMs.
+         */
+        public int getEndpointHangoverMs() {
+            return endpointHangoverMs;
+        }
+
+        /**
+         * @return The class name of the AudioEncoder for uploads, null to upload uncompressed
+         *         audio.
+         */
+        public String getEncoderClass() {
+            return encoderClass;
+        }
+
+        /**
+         * @param encoderClass
+         */
+        public void setEncoderClass(String encoderClass) {
+            this.encoderClass = encoderClass;
+        }
+
+        /**
+         * @return The name of the mixer to capture from, null to select one automatically.
+         */
+        public String getMicrophone() {
+            return microphone;
+        }
+
+        /**
+         * @param microphone
+         */
+        public void setMicrophone(String microphone) {
+            this.microphone = microphone;
+        }
+
+        /**
+         * @return The size of the microphone line buffer in milliseconds of audio.
+         */
+        public int getCaptureLatencyMs() {
+            return captureLatencyMs;
+        }
+
+        /**
+         * @param captureLatencyMs
+         */
+        public void setCaptureLatencyMs(int captureLatencyMs) {
+            if (captureLatencyMs <= 0) {
+                throw new MalformedConfigException(
+                        CAPTURE_LATENCY_MS + " must be positive in your config file.");
+            }
+            this.captureLatencyMs = captureLatencyMs;
+        }
+
+        /**
+         * @return The class name of the WakeWordDetector, null if none is configured.
+         */
+        public String getWakeWordDetectorClass() {
+            return wakeWordDetectorClass;
+        }
+
+        /**
+         * @param wakeWordDetectorClass
+         */
+        public void setWakeWordDetectorClass(String wakeWordDetectorClass) {
+            this.wakeWordDetectorClass = wakeWordDetectorClass;
+        }
+
+        /**
+         * @return The path of a recording of the wake word for the EnergyTemplateDetector, null if
+         *         none is configured.
+         */
+        public String getWakeWordTemplate() {
+            return wakeWordTemplate;
+        }
+
+        /**
+         * @param wakeWordTemplate
+         */
+        public void setWakeWordTemplate(String wakeWordTemplate) {
+            this.wakeWordTemplate = wakeWordTemplate;
+        }
+
+        /**
+         * Serialize this object to JSON.
+         *
+         * @return A JSON representation of this object.
+         */
+        public JsonObject toJson() {
+            JsonObjectBuilder builder = Json
+                    .createObjectBuilder()
+                    .add(CONTINUOUS, continuous)
+                    .add(PRE_ROLL_MS, preRollMs)
+                    .add(ENDPOINT_HANGOVER_MS, endpointHangoverMs)
+                    .add(CAPTURE_LATENCY_MS, captureLatencyMs);
+
+            if (encoderClass != null) {
+                builder.add(ENCODER_CLASS, encoderClass);
+            }
+
+            if (microphone != null) {
+                builder.add(MICROPHONE, microphone);
+            }
+
+            if (wakeWordDetectorClass != null) {
+                builder.add(WAKE_WORD_DETECTOR_CLASS, wakeWordDetectorClass);
+            }
+
+            if (wakeWordTemplate != null) {
+                builder.add(WAKE_WORD_TEMPLATE, wakeWordTemplate);
+            }
+
+            return builder.build();
+        }
+    }
+
     @SuppressWarnings("javadoc")
     public static class MalformedConfigException extends RuntimeException {
         private static final long serialVersionUID = 1L;
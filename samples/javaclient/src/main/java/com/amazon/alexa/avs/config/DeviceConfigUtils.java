@@ -8,6 +8,7 @@
  */
 package com.amazon.alexa.avs.config;
 
+import com.amazon.alexa.avs.config.DeviceConfig.AudioCaptureInformation;
 import com.amazon.alexa.avs.config.DeviceConfig.CompanionAppInformation;
 import com.amazon.alexa.avs.config.DeviceConfig.CompanionServiceInformation;
 
@@ -111,6 +112,31 @@ public final class DeviceConfigUtils {
             DeviceConfig deviceConfig = new DeviceConfig(productId, dsn, provisioningMethod,
                     companionAppInfo, companionServiceInfo, avsHost);
 
+            JsonObject audioCaptureObject = configObject.getJsonObject(DeviceConfig.AUDIO_CAPTURE);
+            if (audioCaptureObject != null) {
+                boolean continuous =
+                        audioCaptureObject.getBoolean(AudioCaptureInformation.CONTINUOUS, false);
+                int preRollMs = audioCaptureObject.getInt(AudioCaptureInformation.PRE_ROLL_MS,
+                        AudioCaptureInformation.DEFAULT_PRE_ROLL_MS);
+                int endpointHangoverMs =
+                        audioCaptureObject.getInt(AudioCaptureInformation.ENDPOINT_HANGOVER_MS,
+                                AudioCaptureInformation.DEFAULT_ENDPOINT_HANGOVER_MS);
+                AudioCaptureInformation audioCaptureInfo =
+                        new AudioCaptureInformation(continuous, preRollMs, endpointHangoverMs);
+                audioCaptureInfo.setEncoderClass(audioCaptureObject
+                        .getString(AudioCaptureInformation.ENCODER_CLASS, null));
+                audioCaptureInfo.setMicrophone(
+                        audioCaptureObject.getString(AudioCaptureInformation.MICROPHONE, null));
+                audioCaptureInfo.setCaptureLatencyMs(
+                        audioCaptureObject.getInt(AudioCaptureInformation.CAPTURE_LATENCY_MS,
+                                AudioCaptureInformation.DEFAULT_CAPTURE_LATENCY_MS));
+                audioCaptureInfo.setWakeWordDetectorClass(audioCaptureObject
+                        .getString(AudioCaptureInformation.WAKE_WORD_DETECTOR_CLASS, null));
+                audioCaptureInfo.setWakeWordTemplate(audioCaptureObject
+                        .getString(AudioCaptureInformation.WAKE_WORD_TEMPLATE, null));
+                deviceConfig.setAudioCaptureInfo(audioCaptureInfo);
+            }
+
             return deviceConfig;
         } catch (FileNotFoundException e) {
             throw new RuntimeException(
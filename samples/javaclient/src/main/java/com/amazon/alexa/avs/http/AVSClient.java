@@ -16,9 +16,12 @@ import com.amazon.alexa.avs.exception.AVSException;
 import com.amazon.alexa.avs.exception.AVSJsonProcessingException;
 import com.amazon.alexa.avs.exception.AlexaSystemException;
 import com.amazon.alexa.avs.http.MultipartParser.MultipartParserConsumer;
+import com.amazon.alexa.avs.http.StreamingAudioContentProvider.AudioUploadListener;
 import com.amazon.alexa.avs.http.jetty.InputStreamResponseListener;
 import com.amazon.alexa.avs.http.jetty.PingSendingHttpClientTransportOverHTTP2;
 import com.amazon.alexa.avs.http.jetty.PingSendingHttpClientTransportOverHTTP2.ConnectionListener;
+import com.amazon.alexa.avs.message.DialogRequestIdHeader;
+import com.amazon.alexa.avs.message.Header;
 import com.amazon.alexa.avs.message.Message;
 import com.amazon.alexa.avs.message.request.RequestBody;
 import com.amazon.alexa.avs.message.response.AlexaExceptionResponse;
@@ -46,15 +49,14 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.Optional;
-import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Callable;
-import java.util.concurrent.LinkedBlockingDeque;
 import java.util.concurrent.TimeUnit;
 
 public class AVSClient implements ConnectionListener {
@@ -63,10 +65,12 @@ public class AVSClient implements ConnectionListener {
     private static final int REQUEST_TIMEOUT_IN_S = 10;
     private static final int REQUEST_ATTEMPTS = 3;
     private static final long REQUEST_RETRY_DELAY_MS = 1000;
+    // Maximum number of event streams open at once on the HTTP/2 connection, in addition to the
+    // downchannel
+    private static final int MAX_CONCURRENT_EVENT_STREAMS = 4;
 
     private static final String EVENTS_ENDPOINT = "/v20160207/events";
     private static final String DIRECTIVES_ENDPOINT = "/v20160207/directives";
-    private static final BlockingQueue<AVSRequest> requestQueue = new LinkedBlockingDeque<>();
 
     static final String METADATA_NAME = "metadata";
     static final String AUDIO_NAME = "audio";
@@ -97,7 +101,9 @@ public class AVSClient implements ConnectionListener {
     private SslContextFactory sslContextFactory;
     private String accessToken = "";
     private DownchannelRequestThread downchannelThread;
+    private final PriorityRequestQueue requestQueue;
     private RequestThread requestThread;
+    private EventStreamScheduler eventStreamScheduler;
     private MultipartParser requestResponseParser;
     private MultipartParser downchannelParser;
     private HTTP2Client http2Client;
@@ -134,6 +140,8 @@ public class AVSClient implements ConnectionListener {
 
         createNewHttpClient();
 
+        eventStreamScheduler = new EventStreamScheduler(MAX_CONCURRENT_EVENT_STREAMS);
+        requestQueue = new PriorityRequestQueue();
         requestThread = new RequestThread(requestQueue);
     }
 
@@ -202,7 +210,7 @@ public class AVSClient implements ConnectionListener {
     }
 
     /**
-     * Execute a request.
+     * Execute a request, and report its result to the listener of the request.
      *
      * @param request
      */
@@ -218,13 +226,20 @@ public class AVSClient implements ConnectionListener {
 
         try {
             avsRequest.getRetryPolicy().tryCall(task, RequestException.class);
+            avsRequest.getRequestListener().ifPresent(l -> l.onRequestSuccess());
         } catch (MultipartStream.MalformedStreamException e) {
             if (!e.getMessage().equals("Stream ended unexpectedly")) {
                 log.error("Malformed stream exception", e);
             }
+            avsRequest.getRequestListener().ifPresent(l -> l.onRequestSuccess());
         } catch (Exception e) {
             log.error("There was a problem with the request.", e);
             avsRequest.getRequestListener().ifPresent(l -> l.onRequestError(e));
+        } finally {
+            // No more retries, release anything cached for them
+            if (avsRequest.getContentProvider() instanceof Closeable) {
+                IOUtils.closeQuietly((Closeable) avsRequest.getContentProvider());
+            }
         }
     }
 
@@ -250,15 +265,10 @@ public class AVSClient implements ConnectionListener {
         InputStream inputStream;
 
         try {
-            // We have a request queue that maintains correct sequencing of events to appease the
-            // server needing no events to happen in parallel. However, Downchannel requests don't
-            // happen on that queue, they happen separately. By synchronizing here we can ensure
-            // that no requests on the request queue will happen in parallel with the downchannel
-            // requests.
-            synchronized (this) {
-                request.send(responseListener);
-                response = responseListener.get(REQUEST_TIMEOUT_IN_S, TimeUnit.SECONDS);
-            }
+            // Every request is its own stream on the shared HTTP/2 connection. Sequencing between
+            // events is handled by the EventStreamScheduler, so there is nothing to serialize here.
+            request.send(responseListener);
+            response = responseListener.get(REQUEST_TIMEOUT_IN_S, TimeUnit.SECONDS);
             inputStream = responseListener.getInputStream();
         } catch (Exception e) {
             throw new RequestException(e);
@@ -296,6 +306,9 @@ public class AVSClient implements ConnectionListener {
         } catch (JsonProcessingException e) {
             String unparseable = IOUtils.toString(inputStream);
             parsingFailedHandler.onParsingFailed(unparseable);
+        } finally {
+            // Releases any content buffers that were not read back to the connection
+            IOUtils.closeQuietly(inputStream);
         }
     }
 
@@ -343,7 +356,7 @@ public class AVSClient implements ConnectionListener {
         multipartContent.addPart(METADATA_NAME, createMetadataContent(body));
 
         enqueueRequest(
-                new AVSRequest(Resource.EVENTS, multipartContent, new LinearRetryPolicy(REQUEST_RETRY_DELAY_MS, REQUEST_ATTEMPTS), requestResponseParser, listener));
+                new AVSRequest(Resource.EVENTS, multipartContent, new LinearRetryPolicy(REQUEST_RETRY_DELAY_MS, REQUEST_ATTEMPTS), requestResponseParser, listener, getOrderingKey(body)), body);
     }
 
     /**
@@ -358,9 +371,28 @@ public class AVSClient implements ConnectionListener {
     public void sendEvent(RequestBody body, InputStream inputStream, RequestListener listener,
             AudioInputFormat audiotype)
                     throws JsonGenerationException, JsonMappingException, IOException {
+        sendEvent(body, inputStream, listener, audiotype, null);
+    }
 
-        AudioInputStreamContentProvider audioContent =
-                new AudioInputStreamContentProvider(audiotype, inputStream);
+    /**
+     * Send a speech recognition event with a {@link RequestBody}. The audio is streamed to AVS as
+     * it is captured.
+     *
+     * @param body
+     * @param inputStream
+     * @param listener
+     * @param audiotype
+     * @param uploadListener
+     *            Notified when the first and last audio chunks are handed to the HTTP/2 stream.
+     *            May be null.
+     * @throws IOException
+     */
+    public void sendEvent(RequestBody body, InputStream inputStream, RequestListener listener,
+            AudioInputFormat audiotype, AudioUploadListener uploadListener)
+                    throws JsonGenerationException, JsonMappingException, IOException {
+
+        StreamingAudioContentProvider audioContent =
+                new StreamingAudioContentProvider(audiotype, inputStream, uploadListener);
 
         CachingContentProvider cachableContent = new CachingContentProvider(audioContent);
 
@@ -369,26 +401,60 @@ public class AVSClient implements ConnectionListener {
         multipartContent.addPart(AUDIO_NAME, cachableContent);
 
         enqueueRequest(
-                new AVSRequest(Resource.EVENTS, multipartContent, new LinearRetryPolicy(REQUEST_RETRY_DELAY_MS, REQUEST_ATTEMPTS), requestResponseParser, listener));
+                new AVSRequest(Resource.EVENTS, multipartContent, new LinearRetryPolicy(REQUEST_RETRY_DELAY_MS, REQUEST_ATTEMPTS), requestResponseParser, listener, getOrderingKey(body)), body);
     }
 
-    private StringContentProvider createMetadataContent(RequestBody body)
+    /**
+     * Events that belong to a dialog are ordered against the other events of that dialog. All
+     * other events are ordered against the events of their own namespace, so that for example
+     * AudioPlayer events still reach the server in the order the playback state changed.
+     */
+    private static String getOrderingKey(RequestBody body) {
+        Header header = body.getEvent().getHeader();
+        if (header instanceof DialogRequestIdHeader) {
+            String dialogRequestId = ((DialogRequestIdHeader) header).getDialogRequestId();
+            if (dialogRequestId != null) {
+                return dialogRequestId;
+            }
+        }
+        return header.getNamespace();
+    }
+
+    /**
+     * Serialises the event once for the request. The pretty printed copy is only rendered if INFO
+     * logging is enabled. Package private so that it can be benchmarked.
+     */
+    static StringContentProvider createMetadataContent(RequestBody body)
             throws JsonGenerationException, JsonMappingException, IOException {
         ObjectWriter writer = ObjectMapperFactory.getObjectWriter();
-        log.info("Request metadata: \n{}",
-                writer.withDefaultPrettyPrinter().writeValueAsString(body));
+        if (log.isInfoEnabled()) {
+            log.info("Request metadata: \n{}",
+                    writer.withDefaultPrettyPrinter().writeValueAsString(body));
+        }
         String metadata = writer.writeValueAsString(body);
         StringContentProvider metadataContent =
                 new StringContentProvider(ContentTypes.JSON, metadata, StandardCharsets.UTF_8);
         return metadataContent;
     }
 
-    private void enqueueRequest(AVSRequest request) {
-        if (!requestQueue.offer(request)) {
-            log.error("Failed to enqueue request");
+    private void enqueueRequest(AVSRequest request, RequestBody body) {
+        Header header = body.getEvent().getHeader();
+        EventClass eventClass = EventClass.of(header);
+        String coalesceKey = EventClass.getCoalesceKey(header, body.getEvent().getPayload());
+        if (!requestQueue.offer(request, eventClass, coalesceKey)) {
+            log.error("Failed to enqueue request {}", header);
+            request.getRequestListener().ifPresent(
+                    l -> l.onRequestError(new IllegalStateException("Request queue is full")));
         }
     }
 
+    /**
+     * @return The queue of events waiting to be sent, for inspecting its depth and wait times.
+     */
+    public PriorityRequestQueue getRequestQueue() {
+        return requestQueue;
+    }
+
     private static Optional<String> getHeaderParameter(final String headerValue, final String key) {
         if ((headerValue == null) || (key == null)) {
             return Optional.ofNullable(null);
@@ -438,6 +504,7 @@ public class AVSClient implements ConnectionListener {
     public void shutdown() {
         try {
             downchannelThread.shutdownGracefully();
+            eventStreamScheduler.shutdown();
             httpClient.stop();
         } catch (Exception e) {
         }
@@ -475,10 +542,14 @@ public class AVSClient implements ConnectionListener {
         }
     }
 
+    /**
+     * Thread which drains the request queue and hands each request to the
+     * {@link EventStreamScheduler}. It blocks while all event streams are in use.
+     */
     private class RequestThread extends Thread {
-        private BlockingQueue<AVSRequest> queue;
+        private PriorityRequestQueue queue;
 
-        public RequestThread(BlockingQueue<AVSRequest> queue) {
+        public RequestThread(PriorityRequestQueue queue) {
             this.queue = queue;
             setName(this.getClass().getSimpleName());
         }
@@ -488,8 +559,7 @@ public class AVSClient implements ConnectionListener {
             while (true) {
                 try {
                     AVSRequest request = queue.take();
-                    doRequest(request);
-                    request.getRequestListener().ifPresent(l -> l.onRequestSuccess());
+                    eventStreamScheduler.submit(request.getOrderingKey(), () -> doRequest(request));
                 } catch (InterruptedException e) {
                     log.error("Exception in the request thread", e);
                 }
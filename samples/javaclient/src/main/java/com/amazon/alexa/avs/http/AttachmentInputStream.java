@@ -0,0 +1,167 @@
+/**
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * You may not use this file except in compliance with the License. A copy of the License is located the "LICENSE.txt"
+ * file accompanying this source. This file is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.amazon.alexa.avs.http;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * An {@link InputStream} over a multipart attachment that is still being received.
+ *
+ * The multipart parser writes the body of the part to {@link #getOutputStream()} as it arrives and
+ * readers block until more data is available, so a consumer such as the MP3 decoder can start
+ * before the end of the part has been received. Writes never block: the parser has to keep
+ * reading the response to find the directives that follow the attachment, even if nobody has
+ * started reading it yet. Once the stream is closed by the reader any further data is discarded.
+ */
+public class AttachmentInputStream extends InputStream {
+    private final Deque<byte[]> chunks;
+    private final OutputStream outputStream;
+    // Read position in the first chunk
+    private int position;
+    private boolean complete;
+    private boolean closed;
+    private IOException failure;
+
+    public AttachmentInputStream() {
+        chunks = new ArrayDeque<>();
+        outputStream = new AttachmentOutputStream();
+    }
+
+    /**
+     * @return The stream the part body is written to. Closing it marks the end of the attachment.
+     */
+    public OutputStream getOutputStream() {
+        return outputStream;
+    }
+
+    /**
+     * Fail the attachment, e.g. because the connection was lost before the end of the part. Readers
+     * get the given exception once the data received so far has been read.
+     */
+    public synchronized void fail(IOException failure) {
+        if (!complete) {
+            this.failure = failure;
+            complete = true;
+            notifyAll();
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] single = new byte[1];
+        int read = read(single, 0, 1);
+        return (read == -1) ? -1 : (single[0] & 0xFF);
+    }
+
+    @Override
+    public synchronized int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (!awaitData()) {
+            return -1;
+        }
+
+        int read = 0;
+        while ((read < len) && !chunks.isEmpty()) {
+            byte[] chunk = chunks.peekFirst();
+            int count = Math.min(len - read, chunk.length - position);
+            System.arraycopy(chunk, position, b, off + read, count);
+            read += count;
+            position += count;
+            if (position == chunk.length) {
+                chunks.pollFirst();
+                position = 0;
+            }
+        }
+        return read;
+    }
+
+    @Override
+    public synchronized int available() throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+        int available = -position;
+        for (byte[] chunk : chunks) {
+            available += chunk.length;
+        }
+        return available;
+    }
+
+    @Override
+    public synchronized void close() {
+        closed = true;
+        chunks.clear();
+        position = 0;
+        notifyAll();
+    }
+
+    /**
+     * Wait until data is available or the attachment has ended.
+     *
+     * @return false at the end of the attachment.
+     */
+    private boolean awaitData() throws IOException {
+        while (chunks.isEmpty()) {
+            if (closed) {
+                throw new IOException("Stream closed");
+            }
+            if (failure != null) {
+                throw new IOException("The attachment was not received completely", failure);
+            }
+            if (complete) {
+                return false;
+            }
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            }
+        }
+        return true;
+    }
+
+    private class AttachmentOutputStream extends OutputStream {
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            synchronized (AttachmentInputStream.this) {
+                if (complete) {
+                    throw new IOException("Attachment already complete");
+                }
+                if (closed || (len == 0)) {
+                    return;
+                }
+                byte[] chunk = new byte[len];
+                System.arraycopy(b, off, chunk, 0, len);
+                chunks.addLast(chunk);
+                AttachmentInputStream.this.notifyAll();
+            }
+        }
+
+        @Override
+        public void close() {
+            synchronized (AttachmentInputStream.this) {
+                complete = true;
+                AttachmentInputStream.this.notifyAll();
+            }
+        }
+    }
+}
@@ -0,0 +1,229 @@
+/**
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * You may not use this file except in compliance with the License. A copy of the License is located the "LICENSE.txt"
+ * file accompanying this source. This file is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.amazon.alexa.avs.http;
+
+import org.apache.commons.io.IOUtils;
+import org.eclipse.jetty.io.EofException;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Serves attachments to the media player over HTTP on the loopback interface, so that playback can
+ * start while the attachment is still being received.
+ *
+ * Every attachment is spooled into a {@link SpooledAttachment} and gets its own URL. Requests for
+ * an attachment that has not been received completely are answered with the data as it arrives.
+ * Once it is complete, byte ranges can be requested as well, e.g. to start playback at an offset,
+ * so a player that seeks waits for {@link #whenSpooled(String)} first.
+ * The server is started with the first attachment. Attachments are kept until they are released.
+ */
+public class AttachmentServer {
+    private static final Logger log = LoggerFactory.getLogger(AttachmentServer.class);
+
+    public static final int DEFAULT_MEMORY_BYTES_PER_ATTACHMENT = 1024 * 1024;
+    public static final long DEFAULT_MAX_DISK_BYTES = 64L * 1024 * 1024;
+
+    private static final String PATH = "/attachments/";
+    private static final int COPY_BUFFER_SIZE = 16 * 1024;
+    private static final int MAX_THREADS = 8;
+    private static final int MIN_THREADS = 2;
+    private static final Pattern RANGE = Pattern.compile("bytes=(\\d+)-(\\d*)");
+
+    private final int memoryBytesPerAttachment;
+    private final AtomicLong diskBudget;
+    private final Map<String, SpooledAttachment> attachments;
+    private Server server;
+    private volatile String baseUrl;
+
+    public AttachmentServer() {
+        this(DEFAULT_MEMORY_BYTES_PER_ATTACHMENT, DEFAULT_MAX_DISK_BYTES);
+    }
+
+    /**
+     * @param memoryBytesPerAttachment
+     *            The number of bytes of every attachment kept in memory.
+     * @param maxDiskBytes
+     *            The number of bytes all attachments together may spill to disk beyond that.
+     */
+    public AttachmentServer(int memoryBytesPerAttachment, long maxDiskBytes) {
+        this.memoryBytesPerAttachment = memoryBytesPerAttachment;
+        diskBudget = new AtomicLong(maxDiskBytes);
+        attachments = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Start spooling the given attachment.
+     *
+     * @return The URL the attachment is served at.
+     * @throws IOException
+     *             if the server could not be started.
+     */
+    public synchronized String serve(InputStream content) throws IOException {
+        startServer();
+        String id = UUID.randomUUID().toString();
+        SpooledAttachment attachment =
+                new SpooledAttachment(content, memoryBytesPerAttachment, diskBudget);
+        attachments.put(id, attachment);
+        attachment.start();
+        return baseUrl + id;
+    }
+
+    /**
+     * Delete the attachment served at the given URL. URLs that are not served by this server are
+     * ignored.
+     */
+    public void release(String url) {
+        if ((url == null) || (baseUrl == null) || !url.startsWith(baseUrl)) {
+            return;
+        }
+        SpooledAttachment attachment = attachments.remove(url.substring(baseUrl.length()));
+        if (attachment != null) {
+            attachment.release();
+        }
+    }
+
+    /**
+     * @return A future that completes once the attachment served at the given URL has been
+     *         received completely, has failed or has been released. It is already completed if the
+     *         URL is not served by this server.
+     */
+    public CompletableFuture<Void> whenSpooled(String url) {
+        SpooledAttachment attachment = isServed(url)
+                ? attachments.get(url.substring(baseUrl.length())) : null;
+        return (attachment == null) ? CompletableFuture.completedFuture(null)
+                : attachment.whenSpooled();
+    }
+
+    /**
+     * @return true if the given URL is served by this server.
+     */
+    public boolean isServed(String url) {
+        return (url != null) && (baseUrl != null) && url.startsWith(baseUrl);
+    }
+
+    public synchronized void stop() {
+        for (SpooledAttachment attachment : attachments.values()) {
+            attachment.release();
+        }
+        attachments.clear();
+        if (server != null) {
+            try {
+                server.stop();
+            } catch (Exception e) {
+                log.error("Failed to stop the attachment server", e);
+            }
+            server = null;
+        }
+    }
+
+    private void startServer() throws IOException {
+        if (server != null) {
+            return;
+        }
+        QueuedThreadPool threadPool = new QueuedThreadPool(MAX_THREADS, MIN_THREADS);
+        threadPool.setName("AttachmentServer");
+        threadPool.setDaemon(true);
+        Server jettyServer = new Server(threadPool);
+        ServerConnector connector = new ServerConnector(jettyServer, 1, 1);
+        connector.setHost(InetAddress.getLoopbackAddress().getHostAddress());
+        connector.setPort(0);
+        jettyServer.addConnector(connector);
+        jettyServer.setHandler(new AttachmentHandler());
+        try {
+            jettyServer.start();
+        } catch (Exception e) {
+            throw new IOException("Unable to start the attachment server", e);
+        }
+        server = jettyServer;
+        baseUrl = "http://" + connector.getHost() + ":" + connector.getLocalPort() + PATH;
+        log.info("Serving attachments at {}", baseUrl);
+    }
+
+    private class AttachmentHandler extends AbstractHandler {
+        @Override
+        public void handle(String target, Request baseRequest, HttpServletRequest request,
+                HttpServletResponse response) throws IOException {
+            SpooledAttachment attachment = target.startsWith(PATH)
+                    ? attachments.get(target.substring(PATH.length())) : null;
+            if (!"GET".equals(request.getMethod()) || (attachment == null)) {
+                baseRequest.setHandled(true);
+                response.sendError(HttpServletResponse.SC_NOT_FOUND);
+                return;
+            }
+            baseRequest.setHandled(true);
+            response.setContentType(ContentTypes.AUDIO);
+
+            long start = 0;
+            long length = attachment.getCompleteLength();
+            long count = -1;
+            if (length >= 0) {
+                response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+                count = length;
+                String range = request.getHeader(HttpHeaders.RANGE);
+                Matcher matcher = (range == null) ? null : RANGE.matcher(range);
+                if ((matcher != null) && matcher.matches()) {
+                    start = Long.parseLong(matcher.group(1));
+                    long end = matcher.group(2).isEmpty() ? (length - 1)
+                            : Math.min(Long.parseLong(matcher.group(2)), length - 1);
+                    if ((start >= length) || (end < start)) {
+                        response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+                        response.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                        return;
+                    }
+                    count = (end - start) + 1;
+                    response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                    response.setHeader(HttpHeaders.CONTENT_RANGE,
+                            "bytes " + start + "-" + end + "/" + length);
+                }
+                response.setContentLengthLong(count);
+            }
+
+            InputStream input = attachment.openStream(start);
+            OutputStream output = response.getOutputStream();
+            byte[] buffer = new byte[COPY_BUFFER_SIZE];
+            try {
+                long remaining = (count < 0) ? Long.MAX_VALUE : count;
+                int read;
+                // A failed attachment fails the request, so that the player does not take the
+                // truncated response for the whole attachment
+                while ((remaining > 0) && ((read = input.read(buffer, 0,
+                        (int) Math.min(buffer.length, remaining))) != -1)) {
+                    output.write(buffer, 0, read);
+                    // Hand the data to the player as soon as it has arrived
+                    output.flush();
+                    remaining -= read;
+                }
+            } catch (EofException e) {
+                log.debug("The player closed the connection for {}", target);
+            } finally {
+                IOUtils.closeQuietly(input);
+            }
+        }
+    }
+}
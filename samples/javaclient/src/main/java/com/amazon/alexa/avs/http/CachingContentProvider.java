@@ -9,21 +9,50 @@
 package com.amazon.alexa.avs.http;
 
 import org.eclipse.jetty.client.api.ContentProvider;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.io.Closeable;
 import java.nio.ByteBuffer;
 import java.util.Iterator;
-import java.util.LinkedList;
-import java.util.List;
+import java.util.NoSuchElementException;
 
 /**
  * Decorates a {@link ContentProvider} and adds caching behavior to allow for HTTP request retries.
+ *
+ * Content is copied into a bounded {@link ReplayBuffer} as it is read from the original provider.
+ * Every further call to {@link #iterator()} replays the cached content and then continues with
+ * the original provider, so a retry started while the original content is still being produced
+ * (e.g. live audio) does not lose the remainder. If the content exceeds the replay limit, the
+ * first attempt is unaffected but the request can no longer be retried.
  */
-public class CachingContentProvider implements ContentProvider.Typed {
-    private ContentProvider contentProvider;
-    private CachingIterator cachingIterator;
+public class CachingContentProvider implements ContentProvider.Typed, Closeable {
+    private static final Logger log = LoggerFactory.getLogger(CachingContentProvider.class);
+
+    // Enough for about 30 seconds of 16kHz 16 bit mono audio
+    public static final long DEFAULT_MAX_REPLAY_BYTES = 1024 * 1024;
+
+    private final ContentProvider contentProvider;
+    private final ReplayBuffer replayBuffer;
+    private Iterator<ByteBuffer> originalIterator;
+    private boolean overflowLogged;
 
     public CachingContentProvider(ContentProvider contentProvider) {
+        this(contentProvider, DEFAULT_MAX_REPLAY_BYTES, false);
+    }
+
+    /**
+     * @param contentProvider
+     *            The content to cache.
+     * @param maxReplayBytes
+     *            The maximum number of bytes to keep for replaying.
+     * @param direct
+     *            Whether to keep the cached content in direct (off-heap) buffers.
+     */
+    public CachingContentProvider(ContentProvider contentProvider, long maxReplayBytes,
+            boolean direct) {
         this.contentProvider = contentProvider;
+        this.replayBuffer = new ReplayBuffer(maxReplayBytes, direct);
     }
 
     @Override
@@ -32,13 +61,14 @@ public class CachingContentProvider implements ContentProvider.Typed {
     }
 
     @Override
-    public Iterator<ByteBuffer> iterator() {
-        if (cachingIterator == null) {
-            cachingIterator = new CachingIterator(contentProvider.iterator());
-            return cachingIterator;
-        } else {
-            return cachingIterator.cache.iterator();
+    public synchronized Iterator<ByteBuffer> iterator() {
+        if (originalIterator == null) {
+            originalIterator = contentProvider.iterator();
+        } else if (!replayBuffer.isReplayable()) {
+            throw new IllegalStateException(
+                    "Content exceeded the replay limit and cannot be resent");
         }
+        return new CachingIterator();
     }
 
     @Override
@@ -50,26 +80,48 @@ public class CachingContentProvider implements ContentProvider.Typed {
     }
 
     /**
-     * Keeps a cache of ByteBuffers that come from the original iterator.
+     * Release the cached content. The content cannot be iterated again afterwards.
      */
-    public static class CachingIterator implements Iterator<ByteBuffer> {
-        private Iterator<ByteBuffer> originalIterator;
-        private List<ByteBuffer> cache = new LinkedList<ByteBuffer>();
+    @Override
+    public void close() {
+        replayBuffer.close();
+    }
 
-        public CachingIterator(Iterator<ByteBuffer> originalIterator) {
-            this.originalIterator = originalIterator;
-        }
+    /**
+     * Replays the cached content, then reads from the original iterator while adding to the cache.
+     */
+    private class CachingIterator implements Iterator<ByteBuffer> {
+        private long offset;
 
         @Override
         public boolean hasNext() {
-            return originalIterator.hasNext();
+            synchronized (CachingContentProvider.this) {
+                return (replayBuffer.isReplayable() && (offset < replayBuffer.size()))
+                        || originalIterator.hasNext();
+            }
         }
 
         @Override
         public ByteBuffer next() {
-            ByteBuffer byteBuffer = originalIterator.next();
-            cache.add(byteBuffer.duplicate());
-            return byteBuffer;
+            synchronized (CachingContentProvider.this) {
+                ByteBuffer cached = replayBuffer.view(offset);
+                if (cached != null) {
+                    offset += cached.remaining();
+                    return cached;
+                }
+
+                if (!originalIterator.hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                ByteBuffer byteBuffer = originalIterator.next();
+                if (replayBuffer.append(byteBuffer)) {
+                    offset += byteBuffer.remaining();
+                } else if (!overflowLogged) {
+                    overflowLogged = true;
+                    log.warn("Request content exceeded the replay limit, it cannot be retried");
+                }
+                return byteBuffer;
+            }
         }
     }
 }
@@ -0,0 +1,116 @@
+/**
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * You may not use this file except in compliance with the License. A copy of the License is located the "LICENSE.txt"
+ * file accompanying this source. This file is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.amazon.alexa.avs.http;
+
+import com.amazon.alexa.avs.AVSAPIConstants;
+import com.amazon.alexa.avs.message.Header;
+import com.amazon.alexa.avs.message.Payload;
+import com.amazon.alexa.avs.message.request.audioplayer.AudioPlayerPayload;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Priority classes for events waiting to be sent, declared from highest to lowest priority. Each
+ * class has its own queue bound and overflow policy.
+ */
+public enum EventClass {
+    /**
+     * Speech and user initiated events, and ExceptionEncountered reports, which the cloud needs to
+     * see for every directive that failed. Never dropped; new events are rejected when full.
+     */
+    INTERACTIVE(16, OverflowPolicy.REJECT_NEW),
+    /**
+     * Alerts lifecycle events. Never dropped; new events are rejected when full.
+     */
+    ALERTS(32, OverflowPolicy.REJECT_NEW),
+    /**
+     * AudioPlayer and Speaker state events. Progress reports and volume changes are coalesced, so
+     * the bound is only reached if the connection is stalled; new events are rejected when full.
+     */
+    PLAYBACK_STATE(32, OverflowPolicy.REJECT_NEW),
+    /**
+     * Reports such as UserInactivityReport. The oldest report is dropped when full.
+     */
+    TELEMETRY(8, OverflowPolicy.DROP_OLDEST);
+
+    public enum OverflowPolicy {
+        REJECT_NEW,
+        DROP_OLDEST;
+    }
+
+    // Events for which only the latest queued instance needs to be sent
+    private static final Set<String> COALESCED_EVENTS = Collections.unmodifiableSet(new HashSet<>(
+            Arrays.asList(
+                    key(AVSAPIConstants.AudioPlayer.NAMESPACE,
+                            AVSAPIConstants.AudioPlayer.Events.ProgressReportIntervalElapsed.NAME),
+                    key(AVSAPIConstants.Speaker.NAMESPACE,
+                            AVSAPIConstants.Speaker.Events.VolumeChanged.NAME),
+                    key(AVSAPIConstants.Speaker.NAMESPACE,
+                            AVSAPIConstants.Speaker.Events.MuteChanged.NAME),
+                    key(AVSAPIConstants.System.NAMESPACE,
+                            AVSAPIConstants.System.Events.UserInactivityReport.NAME))));
+
+    private final int capacity;
+    private final OverflowPolicy overflowPolicy;
+
+    EventClass(int capacity, OverflowPolicy overflowPolicy) {
+        this.capacity = capacity;
+        this.overflowPolicy = overflowPolicy;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public OverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    /**
+     * Classify an event by its header.
+     */
+    public static EventClass of(Header header) {
+        String namespace = header.getNamespace();
+        if (AVSAPIConstants.Alerts.NAMESPACE.equals(namespace)) {
+            return ALERTS;
+        } else if (AVSAPIConstants.AudioPlayer.NAMESPACE.equals(namespace)
+                || AVSAPIConstants.Speaker.NAMESPACE.equals(namespace)) {
+            return PLAYBACK_STATE;
+        } else if (AVSAPIConstants.System.NAMESPACE.equals(namespace)
+                && !AVSAPIConstants.System.Events.SynchronizeState.NAME.equals(header.getName())
+                && !AVSAPIConstants.System.Events.ExceptionEncountered.NAME
+                        .equals(header.getName())) {
+            return TELEMETRY;
+        }
+        return INTERACTIVE;
+    }
+
+    /**
+     * @return The key under which queued instances of this event are merged, or null if every
+     *         instance must be sent. AudioPlayer events are only merged with events for the same
+     *         stream.
+     */
+    public static String getCoalesceKey(Header header, Payload payload) {
+        String key = key(header.getNamespace(), header.getName());
+        if (!COALESCED_EVENTS.contains(key)) {
+            return null;
+        }
+        if (payload instanceof AudioPlayerPayload) {
+            return key + "." + ((AudioPlayerPayload) payload).getToken();
+        }
+        return key;
+    }
+
+    private static String key(String namespace, String name) {
+        return namespace + "." + name;
+    }
+}
@@ -0,0 +1,138 @@
+/**
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * You may not use this file except in compliance with the License. A copy of the License is located the "LICENSE.txt"
+ * file accompanying this source. This file is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.amazon.alexa.avs.http;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Schedules event requests as independent streams on the shared HTTP/2 connection.
+ *
+ * Requests which share an ordering key are executed one after another in the order they were
+ * submitted, while requests with different ordering keys may be in flight at the same time. The
+ * number of concurrent streams is bounded; {@link #submit(String, Runnable)} blocks the caller
+ * until a stream slot is available. A request waiting behind another request with the same
+ * ordering key does not hold a slot, it takes over the slot of its predecessor when that finishes.
+ */
+public class EventStreamScheduler {
+    private static final Logger log = LoggerFactory.getLogger(EventStreamScheduler.class);
+
+    private final int maxConcurrentStreams;
+    private final ExecutorService executor;
+    // The last scheduled stream for every ordering key which still has streams in flight, guarded
+    // by itself together with activeStreams
+    private final Map<String, EventStream> tails;
+    private int activeStreams;
+
+    public EventStreamScheduler(int maxConcurrentStreams) {
+        if (maxConcurrentStreams < 1) {
+            throw new IllegalArgumentException("maxConcurrentStreams must be at least 1");
+        }
+        this.maxConcurrentStreams = maxConcurrentStreams;
+        executor = Executors.newFixedThreadPool(maxConcurrentStreams, new StreamThreadFactory());
+        tails = new HashMap<>();
+    }
+
+    /**
+     * Schedule a stream. The task will not start before every task previously submitted with the
+     * same ordering key has completed.
+     *
+     * @param orderingKey
+     *            The key which this stream must be ordered against.
+     * @param task
+     *            The work which sends the request and handles its response.
+     * @throws InterruptedException
+     *             if interrupted while waiting for a stream slot.
+     */
+    public void submit(String orderingKey, Runnable task) throws InterruptedException {
+        synchronized (tails) {
+            while (activeStreams >= maxConcurrentStreams) {
+                tails.wait();
+            }
+            EventStream stream = new EventStream(orderingKey, task);
+            EventStream previous = tails.put(orderingKey, stream);
+            if (previous == null) {
+                activeStreams++;
+                executor.execute(stream);
+            } else {
+                // started with the slot of its predecessor
+                previous.successor = stream;
+            }
+        }
+    }
+
+    /**
+     * @return The number of streams that are currently in flight.
+     */
+    public int getActiveStreams() {
+        synchronized (tails) {
+            return activeStreams;
+        }
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void finished(EventStream stream) {
+        synchronized (tails) {
+            EventStream successor = stream.successor;
+            if (successor != null) {
+                executor.execute(successor);
+            } else {
+                tails.remove(stream.orderingKey, stream);
+                activeStreams--;
+                tails.notifyAll();
+            }
+        }
+    }
+
+    private class EventStream implements Runnable {
+        private final String orderingKey;
+        private final Runnable task;
+        // The next stream with the same ordering key, guarded by tails
+        private EventStream successor;
+
+        EventStream(String orderingKey, Runnable task) {
+            this.orderingKey = orderingKey;
+            this.task = task;
+        }
+
+        @Override
+        public void run() {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                // a failed stream never stalls its successors
+                log.error("Unhandled exception in event stream {}", orderingKey, e);
+            } finally {
+                finished(this);
+            }
+        }
+    }
+
+    private static class StreamThreadFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable);
+            thread.setName(EventStreamScheduler.class.getSimpleName() + "-"
+                    + count.incrementAndGet());
+            return thread;
+        }
+    }
+}
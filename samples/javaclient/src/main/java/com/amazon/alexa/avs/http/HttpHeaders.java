@@ -13,6 +13,9 @@ public class HttpHeaders {
     public static final String CONTENT_DISPOSITION = "Content-Disposition";
     public static final String CONTENT_ID = "Content-ID";
     public static final String AUTHORIZATION = "Authorization";
+    public static final String RANGE = "Range";
+    public static final String CONTENT_RANGE = "Content-Range";
+    public static final String ACCEPT_RANGES = "Accept-Ranges";
 
     public static class Parameters {
         public static final String BOUNDARY = "boundary";
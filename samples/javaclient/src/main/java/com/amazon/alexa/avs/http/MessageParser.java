@@ -12,6 +12,7 @@ import com.amazon.alexa.avs.config.ObjectMapperFactory;
 import com.amazon.alexa.avs.exception.AVSJsonProcessingException;
 import com.amazon.alexa.avs.message.Message;
 
+import org.codehaus.jackson.JsonNode;
 import org.codehaus.jackson.JsonProcessingException;
 import org.codehaus.jackson.map.ObjectReader;
 import org.slf4j.Logger;
@@ -21,6 +22,8 @@ import java.io.IOException;
 
 public class MessageParser {
     private static final Logger log = LoggerFactory.getLogger(MessageParser.class);
+    private static final ObjectReader TREE_READER =
+            ObjectMapperFactory.getObjectReader(JsonNode.class);
 
     /**
      * Parses a single valid Message in the given byte array
@@ -33,15 +36,20 @@ public class MessageParser {
         return parse(bytes, Message.class);
     }
 
+    /**
+     * Parses the given bytes into a tree once and binds the tree to the given type. The metadata is
+     * only rendered for the log if INFO logging is enabled.
+     */
     protected <T> T parse(byte[] bytes, Class<T> clazz) throws IOException {
         try {
-            ObjectReader reader = ObjectMapperFactory.getObjectReader();
-            Object logBody = reader.withType(Object.class).readValue(bytes);
-            log.info("Response metadata: \n{}", ObjectMapperFactory
-                    .getObjectWriter()
-                    .withDefaultPrettyPrinter()
-                    .writeValueAsString(logBody));
-            return reader.withType(clazz).readValue(bytes);
+            JsonNode tree = TREE_READER.readValue(bytes);
+            if (log.isInfoEnabled()) {
+                log.info("Response metadata: \n{}", ObjectMapperFactory
+                        .getObjectWriter()
+                        .withDefaultPrettyPrinter()
+                        .writeValueAsString(tree));
+            }
+            return ObjectMapperFactory.getObjectReader(clazz).readValue(tree);
         } catch (JsonProcessingException e) {
             String unparseable = new String(bytes, "UTF-8");
             throw new AVSJsonProcessingException(
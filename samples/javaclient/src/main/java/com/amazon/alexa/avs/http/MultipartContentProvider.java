@@ -8,8 +8,10 @@
  */
 package com.amazon.alexa.avs.http;
 
+import org.apache.commons.io.IOUtils;
 import org.eclipse.jetty.client.api.ContentProvider;
 
+import java.io.Closeable;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -22,7 +24,7 @@ import java.util.stream.Stream;
  * A {@link ContentProvider} that formats other {@link ContentProvider}s to conform to RFC 2388
  * [https://www.ietf.org/rfc/rfc2388.txt] on multipart/form-data.
  */
-public class MultipartContentProvider implements ContentProvider.Typed {
+public class MultipartContentProvider implements ContentProvider.Typed, Closeable {
     static final String BOUNDARY = "__BOUNDARY__";
     static final String NEWLINE = "\r\n";
     static final String TWO_DASHES = "--";
@@ -83,6 +85,18 @@ public class MultipartContentProvider implements ContentProvider.Typed {
         return contentType;
     }
 
+    /**
+     * Release any resources held by the parts, such as cached content kept for retries.
+     */
+    @Override
+    public void close() {
+        for (PartContentProvider part : parts) {
+            if (part.contentProvider instanceof Closeable) {
+                IOUtils.closeQuietly((Closeable) part.contentProvider);
+            }
+        }
+    }
+
     private static class PartContentProvider implements ContentProvider {
         private final ContentProvider contentProvider;
         private final String contentType;
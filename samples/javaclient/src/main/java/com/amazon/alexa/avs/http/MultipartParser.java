@@ -18,10 +18,10 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.BufferedReader;
-import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.StringReader;
 import java.util.HashMap;
 import java.util.Map;
@@ -29,12 +29,10 @@ import java.util.concurrent.atomic.AtomicBoolean;
 
 public class MultipartParser extends MessageParser implements ConnectionListener {
     private static final Logger log = LoggerFactory.getLogger(MultipartParser.class);
-    private static final int MULTIPART_BUFFER_SIZE = 512;
+    private static final int MULTIPART_BUFFER_SIZE = 8192;
 
     private final MultipartParserConsumer consumer;
     private final AtomicBoolean shutdown;
-    private MultipartStream multipartStream;
-    private Map<String, String> headers;
 
     public MultipartParser(MultipartParserConsumer consumer) {
         this.consumer = consumer;
@@ -43,11 +41,11 @@ public class MultipartParser extends MessageParser implements ConnectionListener
 
     public void parseStream(InputStream inputStream, String boundary) throws IOException {
         shutdown.set(false);
-        multipartStream =
+        // The parse state is kept on the stack, several responses may be parsed at the same time
+        MultipartStream multipartStream =
                 new MultipartStream(inputStream, boundary.getBytes(), MULTIPART_BUFFER_SIZE, null);
-        headers = null;
 
-        loopStream();
+        loopStream(multipartStream);
     }
 
     public void shutdownGracefully() {
@@ -58,11 +56,11 @@ public class MultipartParser extends MessageParser implements ConnectionListener
         return parse(bytes, ResponseBody.class);
     }
 
-    private void loopStream() throws IOException {
+    private void loopStream(MultipartStream multipartStream) throws IOException {
         try {
             boolean hasNextPart = multipartStream.skipPreamble();
             while (hasNextPart) {
-                handlePart();
+                handlePart(multipartStream);
                 hasNextPart = multipartStream.readBoundary();
             }
         } catch (IOException e) {
@@ -72,15 +70,14 @@ public class MultipartParser extends MessageParser implements ConnectionListener
         }
     }
 
-    private void handlePart() throws IOException {
-        headers = getPartHeaders();
-        byte[] partBytes = getPartBytes();
+    private void handlePart(MultipartStream multipartStream) throws IOException {
+        Map<String, String> headers = getPartHeaders(multipartStream);
         boolean isMetadata = isPartJSON(headers);
 
         if (isMetadata) {
-            handleMetadata(partBytes);
+            handleMetadata(getPartBytes(multipartStream));
         } else {
-            handleAudio(partBytes);
+            handleAudio(multipartStream, headers);
         }
     }
 
@@ -93,20 +90,35 @@ public class MultipartParser extends MessageParser implements ConnectionListener
         }
     }
 
-    private void handleAudio(byte[] partBytes) {
+    /**
+     * Hand the attachment to the consumer before its body has been read, then stream the body into
+     * it as it arrives so that playback can start on the first bytes.
+     */
+    private void handleAudio(MultipartStream multipartStream, Map<String, String> headers)
+            throws IOException {
         String contentId = getMultipartContentId(headers);
-        InputStream attachmentContent = new ByteArrayInputStream(partBytes);
+        AttachmentInputStream attachmentContent = new AttachmentInputStream();
 
         consumer.onDirectiveAttachment(contentId, attachmentContent);
+
+        OutputStream output = attachmentContent.getOutputStream();
+        try {
+            multipartStream.readBodyData(output);
+        } catch (IOException e) {
+            attachmentContent.fail(e);
+            throw e;
+        }
+        output.close();
     }
 
-    private byte[] getPartBytes() throws IOException {
+    private byte[] getPartBytes(MultipartStream multipartStream) throws IOException {
         ByteArrayOutputStream data = new ByteArrayOutputStream();
         multipartStream.readBodyData(data);
         return data.toByteArray();
     }
 
-    private Map<String, String> getPartHeaders() throws IOException {
+    private Map<String, String> getPartHeaders(MultipartStream multipartStream)
+            throws IOException {
         String headers = multipartStream.readHeaders();
         BufferedReader reader = new BufferedReader(new StringReader(headers));
         Map<String, String> headerMap = new HashMap<>();
@@ -0,0 +1,216 @@
+/**
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * You may not use this file except in compliance with the License. A copy of the License is located the "LICENSE.txt"
+ * file accompanying this source. This file is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.amazon.alexa.avs.http;
+
+import com.amazon.alexa.avs.AVSRequest;
+import com.amazon.alexa.avs.RequestListener;
+import com.amazon.alexa.avs.http.EventClass.OverflowPolicy;
+import com.amazon.alexa.avs.metrics.LatencyRecorder;
+import com.amazon.alexa.avs.metrics.Metrics;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A blocking queue of {@link AVSRequest}s with one bounded FIFO per {@link EventClass}.
+ * {@link #take()} always returns the oldest request of the highest priority class that has
+ * requests waiting.
+ *
+ * Requests with a coalesce key replace a queued request with the same key in place, so that a
+ * burst of e.g. ProgressReportIntervalElapsed events results in a single event being sent. When a
+ * class is full its {@link OverflowPolicy} decides whether the new request is rejected or the
+ * oldest queued request is dropped.
+ *
+ * The listener of a request that is replaced or dropped this way is notified through
+ * {@link RequestListener#onRequestError(Throwable)}, as the request will never be sent.
+ *
+ * For every class the queue keeps counters for enqueued, coalesced, dropped and rejected requests,
+ * a {@link LatencyRecorder} for the time spent waiting in the queue and a gauge for its depth.
+ */
+public class PriorityRequestQueue {
+    private static final Logger log = LoggerFactory.getLogger(PriorityRequestQueue.class);
+
+    private static final String METRIC_PREFIX = "requestQueue.";
+
+    private final ReentrantLock lock;
+    private final Condition notEmpty;
+    private final Map<EventClass, ClassQueue> queues;
+
+    public PriorityRequestQueue() {
+        lock = new ReentrantLock();
+        notEmpty = lock.newCondition();
+        queues = new EnumMap<>(EventClass.class);
+        for (EventClass eventClass : EventClass.values()) {
+            queues.put(eventClass, new ClassQueue(eventClass));
+            Metrics.getInstance().gauge(
+                    METRIC_PREFIX + eventClass.name().toLowerCase() + ".depth",
+                    () -> getDepth(eventClass));
+        }
+    }
+
+    /**
+     * Add a request to the queue of its class.
+     *
+     * @param request
+     *            The request to send.
+     * @param eventClass
+     *            The priority class of the request.
+     * @param coalesceKey
+     *            Queued requests with the same key are replaced by this request. May be null.
+     * @return false if the request was rejected because its class is full.
+     */
+    public boolean offer(AVSRequest request, EventClass eventClass, String coalesceKey) {
+        ClassQueue queue = queues.get(eventClass);
+        AVSRequest discarded = null;
+        lock.lock();
+        try {
+            if (coalesceKey != null) {
+                discarded = queue.replace(request, coalesceKey);
+                if (discarded != null) {
+                    queue.coalesced.incrementAndGet();
+                    return true;
+                }
+            }
+
+            if (queue.entries.size() >= eventClass.getCapacity()) {
+                if (eventClass.getOverflowPolicy() == OverflowPolicy.REJECT_NEW) {
+                    queue.rejected.incrementAndGet();
+                    log.warn("Request queue for {} is full, rejecting request", eventClass);
+                    return false;
+                }
+                discarded = queue.entries.pollFirst().request;
+                queue.dropped.incrementAndGet();
+                log.warn("Request queue for {} is full, dropped the oldest request", eventClass);
+            }
+
+            queue.entries.addLast(new Entry(request, coalesceKey));
+            queue.enqueued.incrementAndGet();
+            notEmpty.signal();
+            return true;
+        } finally {
+            lock.unlock();
+            // Notify outside the lock, the listener may well enqueue another request
+            if (discarded != null) {
+                notifyDiscarded(discarded, eventClass);
+            }
+        }
+    }
+
+    private static void notifyDiscarded(AVSRequest request, EventClass eventClass) {
+        IllegalStateException e =
+                new IllegalStateException("Request discarded from the " + eventClass + " queue");
+        request.getRequestListener().ifPresent(l -> l.onRequestError(e));
+    }
+
+    /**
+     * Retrieve and remove the next request to send, waiting if necessary until one is available.
+     */
+    public AVSRequest take() throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (true) {
+                for (ClassQueue queue : queues.values()) {
+                    Entry entry = queue.entries.pollFirst();
+                    if (entry != null) {
+                        queue.waitTime.recordSince(entry.enqueuedNanos);
+                        return entry.request;
+                    }
+                }
+                notEmpty.await();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return The number of requests of the given class waiting to be sent.
+     */
+    public int getDepth(EventClass eventClass) {
+        lock.lock();
+        try {
+            return queues.get(eventClass).entries.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public LatencyRecorder getWaitTime(EventClass eventClass) {
+        return queues.get(eventClass).waitTime;
+    }
+
+    public long getDroppedCount(EventClass eventClass) {
+        return queues.get(eventClass).dropped.get();
+    }
+
+    public long getRejectedCount(EventClass eventClass) {
+        return queues.get(eventClass).rejected.get();
+    }
+
+    public long getCoalescedCount(EventClass eventClass) {
+        return queues.get(eventClass).coalesced.get();
+    }
+
+    private static class Entry {
+        private AVSRequest request;
+        private final String coalesceKey;
+        private final long enqueuedNanos;
+
+        public Entry(AVSRequest request, String coalesceKey) {
+            this.request = request;
+            this.coalesceKey = coalesceKey;
+            this.enqueuedNanos = System.nanoTime();
+        }
+    }
+
+    private static class ClassQueue {
+        private final Deque<Entry> entries;
+        private final AtomicLong enqueued;
+        private final AtomicLong coalesced;
+        private final AtomicLong dropped;
+        private final AtomicLong rejected;
+        private final LatencyRecorder waitTime;
+
+        public ClassQueue(EventClass eventClass) {
+            String prefix = METRIC_PREFIX + eventClass.name().toLowerCase() + ".";
+            Metrics metrics = Metrics.getInstance();
+            entries = new ArrayDeque<>(eventClass.getCapacity());
+            enqueued = metrics.counter(prefix + "enqueued");
+            coalesced = metrics.counter(prefix + "coalesced");
+            dropped = metrics.counter(prefix + "dropped");
+            rejected = metrics.counter(prefix + "rejected");
+            waitTime = metrics.latency(prefix + "waitTime");
+        }
+
+        /**
+         * Replace the request of a queued entry with the same coalesce key, keeping its position
+         * and its original enqueue time.
+         *
+         * @return The replaced request, or null if no entry has the key.
+         */
+        private AVSRequest replace(AVSRequest request, String coalesceKey) {
+            for (Entry entry : entries) {
+                if (coalesceKey.equals(entry.coalesceKey)) {
+                    AVSRequest replaced = entry.request;
+                    entry.request = request;
+                    return replaced;
+                }
+            }
+            return null;
+        }
+    }
+}
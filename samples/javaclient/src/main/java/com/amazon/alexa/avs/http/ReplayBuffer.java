@@ -0,0 +1,134 @@
+/**
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * You may not use this file except in compliance with the License. A copy of the License is located the "LICENSE.txt"
+ * file accompanying this source. This file is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.amazon.alexa.avs.http;
+
+import org.eclipse.jetty.io.ArrayByteBufferPool;
+import org.eclipse.jetty.io.ByteBufferPool;
+
+import java.io.Closeable;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A bounded, append-only byte store used to replay request content on retries.
+ *
+ * Appended bytes are copied into fixed size segments taken from a {@link ByteBufferPool}, so the
+ * number of allocations depends on the number of bytes stored rather than the number of chunks,
+ * and segments are reused by later requests once the buffer is closed. Once more than the
+ * configured maximum has been appended the buffer stops storing data and can no longer be
+ * replayed. Segments are only returned to the pool by {@link #close()}.
+ */
+public class ReplayBuffer implements Closeable {
+    public static final int SEGMENT_SIZE_BYTES = 16384;
+
+    private static final ByteBufferPool SHARED_POOL = new ArrayByteBufferPool();
+
+    private final ByteBufferPool pool;
+    private final long maxBytes;
+    private final boolean direct;
+    // Segments in fill mode, their position is the number of bytes written to them
+    private final List<ByteBuffer> segments;
+    private long size;
+    private boolean overflowed;
+    private boolean closed;
+
+    public ReplayBuffer(long maxBytes, boolean direct) {
+        this(SHARED_POOL, maxBytes, direct);
+    }
+
+    public ReplayBuffer(ByteBufferPool pool, long maxBytes, boolean direct) {
+        this.pool = pool;
+        this.maxBytes = maxBytes;
+        this.direct = direct;
+        this.segments = new ArrayList<>();
+    }
+
+    /**
+     * Copy the remaining bytes of the given buffer into this replay buffer. The position of the
+     * given buffer is not changed.
+     *
+     * @return false if the bytes did not fit, in which case this buffer can no longer be replayed.
+     */
+    public synchronized boolean append(ByteBuffer buffer) {
+        if (overflowed || closed) {
+            return false;
+        }
+        if (size + buffer.remaining() > maxBytes) {
+            // Segments stay allocated until close(), views of them may still be in use
+            overflowed = true;
+            return false;
+        }
+
+        ByteBuffer source = buffer.duplicate();
+        while (source.hasRemaining()) {
+            ByteBuffer segment = currentSegment();
+            int count = Math.min(source.remaining(), segment.remaining());
+            int limit = source.limit();
+            source.limit(source.position() + count);
+            segment.put(source);
+            source.limit(limit);
+            size += count;
+        }
+        return true;
+    }
+
+    /**
+     * @return A read-only view of the stored bytes starting at the given offset and ending at the
+     *         end of the segment containing that offset, or null if nothing is stored there.
+     */
+    public synchronized ByteBuffer view(long offset) {
+        if (overflowed || closed || (offset >= size)) {
+            return null;
+        }
+        ByteBuffer view = segments.get((int) (offset / SEGMENT_SIZE_BYTES)).duplicate();
+        view.flip();
+        view.position((int) (offset % SEGMENT_SIZE_BYTES));
+        return view.asReadOnlyBuffer();
+    }
+
+    public synchronized long size() {
+        return size;
+    }
+
+    /**
+     * @return true if every appended byte has been stored.
+     */
+    public synchronized boolean isReplayable() {
+        return !overflowed && !closed;
+    }
+
+    /**
+     * Return all segments to the pool. Views handed out earlier must no longer be used.
+     */
+    @Override
+    public synchronized void close() {
+        closed = true;
+        for (ByteBuffer segment : segments) {
+            pool.release(segment);
+        }
+        segments.clear();
+    }
+
+    private ByteBuffer currentSegment() {
+        if (!segments.isEmpty()) {
+            ByteBuffer last = segments.get(segments.size() - 1);
+            if (last.position() < SEGMENT_SIZE_BYTES) {
+                return last;
+            }
+        }
+        ByteBuffer segment = pool.acquire(SEGMENT_SIZE_BYTES, direct);
+        // Pooled buffers may be larger than requested, only use one segment's worth so that
+        // offsets map directly to segments
+        segment.clear();
+        segment.limit(SEGMENT_SIZE_BYTES);
+        segments.add(segment);
+        return segment;
+    }
+}
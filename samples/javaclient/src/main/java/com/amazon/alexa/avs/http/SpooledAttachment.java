@@ -0,0 +1,342 @@
+/**
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * You may not use this file except in compliance with the License. A copy of the License is located the "LICENSE.txt"
+ * file accompanying this source. This file is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.amazon.alexa.avs.http;
+
+import com.amazon.alexa.avs.metrics.Metrics;
+
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps a copy of an attachment that is still being received, so that it can be read any number of
+ * times and from any position while it arrives.
+ *
+ * The attachment is copied from its source by a background thread. The first bytes are kept in
+ * memory, anything beyond the memory limit is spilled to a temporary file. The space all spooled
+ * attachments take on disk is limited by a shared budget: an attachment that would exceed it fails,
+ * and readers get an IOException once they have read what was spooled before. Readers block until
+ * the data they ask for has arrived. {@link #release()} deletes the file and fails all readers.
+ *
+ * Bytes received and spilled to disk are counted in the attachments.spooledBytes and
+ * attachments.spilledBytes {@link Metrics} counters.
+ */
+public class SpooledAttachment {
+    private static final Logger log = LoggerFactory.getLogger(SpooledAttachment.class);
+
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    private final InputStream source;
+    private final int memoryLimit;
+    // Bytes the spilled attachments may still take on disk, shared by all attachments
+    private final AtomicLong diskBudget;
+    private final List<byte[]> chunks;
+    private final AtomicLong spooledBytes;
+    private final AtomicLong spilledBytes;
+    private FileChannel channel;
+    // Only bytes before length may be read
+    private long length;
+    private long reservedDiskBytes;
+    private boolean complete;
+    private boolean released;
+    private IOException failure;
+    // Completed once the attachment is complete, has failed or has been released
+    private final CompletableFuture<Void> spooled;
+
+    /**
+     * @param memoryLimit
+     *            The number of bytes kept in memory before spilling to disk.
+     * @param diskBudget
+     *            The number of bytes that may still be spilled to disk, reduced by what this
+     *            attachment spills and given back once it is released.
+     */
+    public SpooledAttachment(InputStream source, int memoryLimit, AtomicLong diskBudget) {
+        this.source = source;
+        this.memoryLimit = memoryLimit;
+        this.diskBudget = diskBudget;
+        chunks = new ArrayList<>();
+        spooled = new CompletableFuture<>();
+        spooledBytes = Metrics.getInstance().counter("attachments.spooledBytes");
+        spilledBytes = Metrics.getInstance().counter("attachments.spilledBytes");
+    }
+
+    /**
+     * Start copying the attachment from its source on a background thread.
+     */
+    public void start() {
+        Thread thread = new Thread("AttachmentSpooler") {
+            @Override
+            public void run() {
+                spool();
+            }
+        };
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * @return The length of the attachment if it has been received completely, -1 otherwise.
+     */
+    public synchronized long getCompleteLength() {
+        return (complete && (failure == null)) ? length : -1;
+    }
+
+    /**
+     * @return A future that completes once the attachment has been received completely, has
+     *         failed or has been released.
+     */
+    public CompletableFuture<Void> whenSpooled() {
+        return spooled;
+    }
+
+    /**
+     * @return A stream over the attachment, starting at the given position.
+     */
+    public InputStream openStream(long position) {
+        return new SpooledInputStream(position);
+    }
+
+    /**
+     * Delete the spooled data. Readers fail, and the rest of the attachment is not copied anymore.
+     */
+    public void release() {
+        boolean spooling;
+        synchronized (this) {
+            if (released) {
+                return;
+            }
+            released = true;
+            spooling = !complete;
+            chunks.clear();
+            notifyAll();
+        }
+        spooled.complete(null);
+        if (spooling) {
+            // The spooling thread deletes the file once it has stopped writing to it
+            IOUtils.closeQuietly(source);
+        } else {
+            deleteFile();
+        }
+    }
+
+    private void spool() {
+        byte[] buffer = new byte[CHUNK_SIZE];
+        try {
+            int read;
+            while ((read = source.read(buffer)) != -1) {
+                if (!append(buffer, read)) {
+                    break;
+                }
+            }
+            finish(null);
+        } catch (IOException e) {
+            finish(e);
+        } finally {
+            IOUtils.closeQuietly(source);
+        }
+    }
+
+    /**
+     * @return false if the attachment has been released.
+     */
+    private boolean append(byte[] data, int count) throws IOException {
+        long position;
+        synchronized (this) {
+            if (released) {
+                return false;
+            }
+            position = length;
+        }
+
+        // Bytes past length are not read, so they can be written without holding the lock
+        int offset = 0;
+        while ((offset < count) && (position < memoryLimit)) {
+            int chunkIndex = (int) (position / CHUNK_SIZE);
+            byte[] chunk;
+            synchronized (this) {
+                if (released) {
+                    return false;
+                }
+                if (chunkIndex == chunks.size()) {
+                    chunks.add(new byte[CHUNK_SIZE]);
+                }
+                chunk = chunks.get(chunkIndex);
+            }
+            int chunkOffset = (int) (position % CHUNK_SIZE);
+            int copy = Math.min(count - offset,
+                    Math.min(CHUNK_SIZE - chunkOffset, memoryLimit - (int) position));
+            System.arraycopy(data, offset, chunk, chunkOffset, copy);
+            offset += copy;
+            position += copy;
+        }
+        if ((offset < count) && !spill(data, offset, count - offset, position - memoryLimit)) {
+            return false;
+        }
+
+        spooledBytes.addAndGet(count);
+        synchronized (this) {
+            length += count;
+            notifyAll();
+        }
+        return true;
+    }
+
+    /**
+     * @return false if the attachment has been released.
+     */
+    private boolean spill(byte[] data, int offset, int count, long filePosition)
+            throws IOException {
+        FileChannel spillChannel;
+        synchronized (this) {
+            if (released) {
+                return false;
+            }
+            if (channel == null) {
+                Path file = Files.createTempFile("avs-attachment", ".tmp");
+                channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                        StandardOpenOption.DELETE_ON_CLOSE);
+            }
+            if (diskBudget.addAndGet(-count) < 0) {
+                diskBudget.addAndGet(count);
+                throw new IOException("The attachment cache is full");
+            }
+            reservedDiskBytes += count;
+            spillChannel = channel;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(data, offset, count);
+        while (buffer.hasRemaining()) {
+            spillChannel.write(buffer, filePosition + (count - buffer.remaining()));
+        }
+        spilledBytes.addAndGet(count);
+        return true;
+    }
+
+    private void finish(IOException e) {
+        boolean wasReleased;
+        synchronized (this) {
+            complete = true;
+            if ((e != null) && !released) {
+                log.error("Failed to spool an attachment", e);
+                failure = e;
+            }
+            notifyAll();
+            wasReleased = released;
+        }
+        spooled.complete(null);
+        if (wasReleased) {
+            deleteFile();
+        }
+    }
+
+    /**
+     * Delete the file once it is neither written nor read anymore.
+     */
+    private void deleteFile() {
+        FileChannel spillChannel;
+        long reserved;
+        synchronized (this) {
+            spillChannel = channel;
+            channel = null;
+            reserved = reservedDiskBytes;
+            reservedDiskBytes = 0;
+        }
+        if (spillChannel != null) {
+            IOUtils.closeQuietly(spillChannel);
+        }
+        diskBudget.addAndGet(reserved);
+    }
+
+    /**
+     * Read from the given position, waiting for data if necessary.
+     *
+     * @return The number of bytes read, -1 at the end of the attachment.
+     */
+    private int read(long position, byte[] b, int off, int len) throws IOException {
+        int count;
+        FileChannel spillChannel;
+        synchronized (this) {
+            while (!released && (position >= length) && !complete) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException();
+                }
+            }
+            if (released) {
+                throw new IOException("The attachment has been released");
+            }
+            if (position >= length) {
+                if (failure != null) {
+                    throw new IOException("The attachment was not received completely", failure);
+                }
+                return -1;
+            }
+            count = (int) Math.min(len, length - position);
+            if (position < memoryLimit) {
+                int chunkOffset = (int) (position % CHUNK_SIZE);
+                count = Math.min(count,
+                        Math.min(CHUNK_SIZE - chunkOffset, memoryLimit - (int) position));
+                System.arraycopy(chunks.get((int) (position / CHUNK_SIZE)), chunkOffset, b, off,
+                        count);
+                return count;
+            }
+            spillChannel = channel;
+        }
+
+        // Positional reads do not interfere with the writer or other readers
+        ByteBuffer buffer = ByteBuffer.wrap(b, off, count);
+        try {
+            int read = spillChannel.read(buffer, position - memoryLimit);
+            return (read == -1) ? 0 : read;
+        } catch (IOException e) {
+            throw new IOException("The attachment has been released", e);
+        }
+    }
+
+    private class SpooledInputStream extends InputStream {
+        private long position;
+
+        public SpooledInputStream(long position) {
+            this.position = position;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            int read = read(single, 0, 1);
+            return (read == -1) ? -1 : (single[0] & 0xFF);
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            int read = SpooledAttachment.this.read(position, b, off, len);
+            if (read > 0) {
+                position += read;
+            }
+            return read;
+        }
+    }
+}
@@ -0,0 +1,122 @@
+/**
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * You may not use this file except in compliance with the License. A copy of the License is located the "LICENSE.txt"
+ * file accompanying this source. This file is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.amazon.alexa.avs.http;
+
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Downloads the next media item through the {@link AttachmentServer} while the current item is
+ * still playing, so the media player can open the next item from the loopback interface.
+ *
+ * Only direct audio responses of a known length are prefetched. Playlists, streams of unknown
+ * length and other content are left to the media player, the prefetch then completes with null.
+ */
+public class StreamPrefetcher {
+    private static final Logger log = LoggerFactory.getLogger(StreamPrefetcher.class);
+
+    private static final int CONNECT_TIMEOUT_MS = 5000;
+    private static final int READ_TIMEOUT_MS = 10000;
+    private static final String AUDIO_CONTENT_TYPE = "audio/";
+    // Playlists are resolved by the media player, which needs the original url for relative entries
+    private static final List<String> PLAYLIST_CONTENT_TYPES = Arrays.asList("audio/x-mpegurl",
+            "audio/mpegurl", "audio/x-scpls", "audio/scpls");
+
+    private final AttachmentServer attachmentServer;
+    private final long maxLength;
+    private final ExecutorService executor;
+
+    /**
+     * @param maxLength
+     *            Responses longer than this are not prefetched.
+     */
+    public StreamPrefetcher(AttachmentServer attachmentServer, long maxLength) {
+        this.attachmentServer = attachmentServer;
+        this.maxLength = maxLength;
+        executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable);
+            thread.setName(StreamPrefetcher.class.getSimpleName());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Start downloading the given url.
+     *
+     * @return A future for the url the download is served at, which completes as soon as the
+     *         download has started. It completes with null if the url is not prefetched.
+     */
+    public CompletableFuture<String> prefetch(final String url) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return start(url);
+            } catch (IOException | RuntimeException e) {
+                log.warn("Unable to prefetch {}", url, e);
+                return null;
+            }
+        }, executor);
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private String start(String url) throws IOException {
+        URL location = new URL(url);
+        String protocol = location.getProtocol();
+        if (!"http".equals(protocol) && !"https".equals(protocol)) {
+            return null;
+        }
+
+        HttpURLConnection connection = (HttpURLConnection) location.openConnection();
+        connection.setConnectTimeout(CONNECT_TIMEOUT_MS);
+        connection.setReadTimeout(READ_TIMEOUT_MS);
+        InputStream content = null;
+        try {
+            content = connection.getInputStream();
+            String contentType = connection.getContentType();
+            long length = connection.getContentLengthLong();
+            if (!isPrefetchable(contentType, length)) {
+                log.debug("Not prefetching {}: {}, {} bytes", url, contentType, length);
+                IOUtils.closeQuietly(content);
+                connection.disconnect();
+                return null;
+            }
+            String localUrl = attachmentServer.serve(content);
+            log.debug("Prefetching {} ({} bytes) at {}", url, length, localUrl);
+            return localUrl;
+        } catch (IOException | RuntimeException e) {
+            IOUtils.closeQuietly(content);
+            connection.disconnect();
+            throw e;
+        }
+    }
+
+    private boolean isPrefetchable(String contentType, long length) {
+        if ((contentType == null) || (length <= 0) || (length > maxLength)) {
+            return false;
+        }
+        String mimeType = contentType.split(";")[0].trim().toLowerCase(Locale.US);
+        return mimeType.startsWith(AUDIO_CONTENT_TYPE)
+                && !PLAYLIST_CONTENT_TYPES.contains(mimeType);
+    }
+}
@@ -0,0 +1,143 @@
+/**
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * You may not use this file except in compliance with the License. A copy of the License is located the "LICENSE.txt"
+ * file accompanying this source. This file is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.amazon.alexa.avs.http;
+
+import com.amazon.alexa.avs.AudioInputFormat;
+
+import org.apache.commons.io.IOUtils;
+import org.eclipse.jetty.client.api.ContentProvider;
+import org.eclipse.jetty.io.RuntimeIOException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A {@link ContentProvider} for live microphone audio that hands audio to the HTTP/2 stream as soon
+ * as it is captured.
+ *
+ * Every chunk waits for at most one {@link AudioInputFormat#getChunkSizeBytes()} of audio. If the
+ * capture side is ahead of the upload, everything that is already available is coalesced into a
+ * single chunk of up to one HTTP/2 DATA frame, so a backlog is flushed in a few large frames
+ * instead of hundreds of tiny ones. Chunk sizes are always a multiple of the format's chunk size.
+ */
+public class StreamingAudioContentProvider implements ContentProvider.Typed {
+    // Largest DATA frame payload every HTTP/2 peer accepts without a SETTINGS change (RFC 7540)
+    public static final int HTTP2_DEFAULT_MAX_FRAME_SIZE = 16384;
+
+    private final InputStream stream;
+    private final int chunkSizeBytes;
+    private final int maxChunkSizeBytes;
+    private final AudioUploadListener listener;
+    private boolean iterated;
+
+    public StreamingAudioContentProvider(AudioInputFormat audioType, InputStream stream,
+            AudioUploadListener listener) {
+        this(audioType, stream, listener, HTTP2_DEFAULT_MAX_FRAME_SIZE);
+    }
+
+    public StreamingAudioContentProvider(AudioInputFormat audioType, InputStream stream,
+            AudioUploadListener listener, int maxFrameSizeBytes) {
+        this.stream = stream;
+        this.chunkSizeBytes = audioType.getChunkSizeBytes();
+        this.maxChunkSizeBytes =
+                Math.max(chunkSizeBytes, maxFrameSizeBytes - (maxFrameSizeBytes % chunkSizeBytes));
+        this.listener = listener;
+    }
+
+    @Override
+    public long getLength() {
+        return -1;
+    }
+
+    @Override
+    public String getContentType() {
+        return ContentTypes.AUDIO;
+    }
+
+    @Override
+    public Iterator<ByteBuffer> iterator() {
+        if (iterated) {
+            // The stream can only be consumed once, wrap this in a CachingContentProvider to retry
+            throw new IllegalStateException("Live audio content can only be iterated once");
+        }
+        iterated = true;
+        return new AudioIterator();
+    }
+
+    /**
+     * Notified as audio from the microphone is handed to the HTTP/2 stream.
+     */
+    public interface AudioUploadListener {
+        void onFirstAudioChunk();
+
+        void onLastAudioChunk();
+    }
+
+    private class AudioIterator implements Iterator<ByteBuffer> {
+        private ByteBuffer nextChunk;
+        private boolean firstChunk = true;
+        private boolean endOfStream;
+
+        @Override
+        public boolean hasNext() {
+            if ((nextChunk == null) && !endOfStream) {
+                try {
+                    nextChunk = readChunk();
+                } catch (IOException e) {
+                    endOfStream = true;
+                    IOUtils.closeQuietly(stream);
+                    throw new RuntimeIOException(e);
+                }
+                if (nextChunk == null) {
+                    endOfStream = true;
+                    IOUtils.closeQuietly(stream);
+                    if (listener != null) {
+                        listener.onLastAudioChunk();
+                    }
+                }
+            }
+            return nextChunk != null;
+        }
+
+        @Override
+        public ByteBuffer next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            ByteBuffer chunk = nextChunk;
+            nextChunk = null;
+            if (firstChunk) {
+                firstChunk = false;
+                if (listener != null) {
+                    listener.onFirstAudioChunk();
+                }
+            }
+            return chunk;
+        }
+
+        /**
+         * Block for at most one chunk of audio, plus whatever else is already buffered.
+         *
+         * @return The next chunk, or null at the end of the stream.
+         */
+        private ByteBuffer readChunk() throws IOException {
+            int available = Math.min(stream.available(), maxChunkSizeBytes);
+            int size = Math.max(chunkSizeBytes, available - (available % chunkSizeBytes));
+            byte[] buffer = new byte[size];
+            int read = IOUtils.read(stream, buffer);
+            if (read == 0) {
+                return null;
+            }
+            return ByteBuffer.wrap(buffer, 0, read);
+        }
+    }
+}
@@ -28,12 +28,15 @@
 //  ========================================================================
 //
 
+
 package com.amazon.alexa.avs.http.jetty;
 
 import org.eclipse.jetty.client.HttpClient;
 import org.eclipse.jetty.client.api.Response;
 import org.eclipse.jetty.client.api.Response.Listener;
 import org.eclipse.jetty.client.api.Result;
+import org.eclipse.jetty.util.BufferUtil;
+import org.eclipse.jetty.util.Callback;
 import org.eclipse.jetty.util.IO;
 import org.eclipse.jetty.util.log.Log;
 import org.eclipse.jetty.util.log.Logger;
@@ -43,13 +46,15 @@ import java.io.InputStream;
 import java.io.InterruptedIOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.AsynchronousCloseException;
-import java.util.concurrent.BlockingQueue;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
-import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 
 /**
@@ -75,157 +80,136 @@ import java.util.concurrent.atomic.AtomicReference;
  * <p>
  * The {@link HttpClient} implementation (the producer) will feed the input stream
  * asynchronously while the application (the consumer) is reading from it.
- * Chunks of content are maintained in a queue, and it is possible to specify a
- * maximum buffer size for the bytes held in the queue, by default 16384 bytes.
  * <p>
  * If the consumer is faster than the producer, then the consumer will block
  * with the typical {@link InputStream#read()} semantic.
- * If the consumer is slower than the producer, then the producer will block
- * until the client consumes.
+ * If the consumer is slower than the producer, then the producer is held back
+ * by flow control until the client consumes.
  */
+// START AMAZON CHANGES
+// Content buffers are queued as they are received instead of being copied, and are read in
+// place. The callback of a buffer is only completed once the buffer has been fully consumed,
+// which returns the buffer to Jetty and lets the HTTP/2 flow control window of the stream be
+// replenished, so a slow consumer applies backpressure to the server instead of blocking a
+// Jetty thread.
+// END AMAZON CHANGES
 public class InputStreamResponseListener extends Listener.Adapter
 {
     private static final Logger LOG = Log.getLogger(InputStreamResponseListener.class);
-    private static final byte[] EOF = new byte[0];
-    private static final byte[] CLOSED = new byte[0];
-    private static final byte[] FAILURE = new byte[0];
-    private final BlockingQueue<byte[]> queue = new LinkedBlockingQueue<>();
-    private final AtomicLong length = new AtomicLong();
+    private static final Chunk EOF = new Chunk(BufferUtil.EMPTY_BUFFER, Callback.NOOP);
+    private final Object lock = this;
+    private final Deque<Chunk> chunks = new ArrayDeque<>();
     private final CountDownLatch responseLatch = new CountDownLatch(1);
     private final CountDownLatch resultLatch = new CountDownLatch(1);
     private final AtomicReference<InputStream> stream = new AtomicReference<>();
-    private final long maxBufferSize;
     private Response response;
     private Result result;
-    private volatile Throwable failure;
-    private volatile boolean closed;
+    private Throwable failure;
+    private boolean closed;
 
     public InputStreamResponseListener()
     {
-        this(16 * 1024L);
-    }
-
-    public InputStreamResponseListener(long maxBufferSize)
-    {
-        this.maxBufferSize = maxBufferSize;
     }
 
     @Override
     public void onHeaders(Response response)
     {
-        this.response = response;
-        responseLatch.countDown();
+        synchronized (lock)
+        {
+            this.response = response;
+            responseLatch.countDown();
+        }
     }
 
     @Override
-    public void onContent(Response response, ByteBuffer content)
+    public void onContent(Response response, ByteBuffer content, Callback callback)
     {
-        if (!closed)
+        if (!content.hasRemaining())
         {
-            int remaining = content.remaining();
-            if (remaining > 0)
-            {
-
-                byte[] bytes = new byte[remaining];
-                content.get(bytes);
-                if (LOG.isDebugEnabled()) {
-                    LOG.debug("Queuing {}/{} bytes", bytes, remaining);
-                }
-                queue.offer(bytes);
-
-                long newLength = length.addAndGet(remaining);
-                while (newLength >= maxBufferSize)
-                {
-                    if (LOG.isDebugEnabled()) {
-                        LOG.debug("Queued bytes limit {}/{} exceeded, waiting", newLength, maxBufferSize);
-                    }
-                    // Block to avoid infinite buffering
-                    if (!await()) {
-                        break;
-                    }
-                    newLength = length.get();
-                    if (LOG.isDebugEnabled()) {
-                        LOG.debug("Queued bytes limit {}/{} exceeded, woken up", newLength, maxBufferSize);
-                    }
-                }
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Queuing skipped, empty content {}", content);
             }
-            else
+            callback.succeeded();
+            return;
+        }
+
+        boolean closed;
+        synchronized (lock)
+        {
+            closed = this.closed;
+            if (!closed)
             {
                 if (LOG.isDebugEnabled()) {
-                    LOG.debug("Queuing skipped, empty content {}", content);
+                    LOG.debug("Queuing content {}", content);
                 }
+                chunks.add(new Chunk(content, callback));
+                lock.notifyAll();
             }
         }
-        else
+
+        if (closed)
         {
-            LOG.debug("Queuing skipped, stream already closed");
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Queuing skipped, stream already closed");
+            }
+            callback.failed(new AsynchronousCloseException());
         }
     }
 
     @Override
     public void onSuccess(Response response)
     {
+        synchronized (lock)
+        {
+            if (!closed) {
+                chunks.add(EOF);
+            }
+            lock.notifyAll();
+        }
         if (LOG.isDebugEnabled()) {
-            LOG.debug("Queuing end of content {}{}", EOF, "");
+            LOG.debug("End of content");
         }
-        queue.offer(EOF);
-        signal();
     }
 
     @Override
     public void onFailure(Response response, Throwable failure)
     {
-        fail(failure);
-        signal();
-    }
-
-    @Override
-    public void onComplete(Result result)
-    {
-        if (result.isFailed() && (failure == null)) {
-            fail(result.getFailure());
+        List<Callback> callbacks;
+        synchronized (lock)
+        {
+            if (this.failure != null) {
+                return;
+            }
+            this.failure = failure;
+            callbacks = drain();
+            responseLatch.countDown();
+            lock.notifyAll();
         }
-        this.result = result;
-        resultLatch.countDown();
-        signal();
-    }
-
-    private void fail(Throwable failure)
-    {
         if (LOG.isDebugEnabled()) {
-            LOG.debug("Queuing failure {} {}", FAILURE, failure);
+            LOG.debug("Content failure", failure);
         }
-        queue.offer(FAILURE);
-        this.failure = failure;
-        responseLatch.countDown();
+        fail(callbacks, failure);
     }
 
-    protected boolean await()
+    @Override
+    public void onComplete(Result result)
     {
-        try
+        Throwable failure = result.getFailure();
+        List<Callback> callbacks = Collections.emptyList();
+        synchronized (lock)
         {
-            synchronized (this)
+            this.result = result;
+            if (result.isFailed() && (this.failure == null))
             {
-                while ((length.get() >= maxBufferSize) && (failure == null) && !closed) {
-                    wait();
-                }
-                // Re-read the values as they may have changed while waiting.
-                return (failure == null) && !closed;
+                this.failure = failure;
+                callbacks = drain();
             }
+            // Notify the response latch in case of request failures
+            responseLatch.countDown();
+            resultLatch.countDown();
+            lock.notifyAll();
         }
-        catch (InterruptedException x)
-        {
-            Thread.currentThread().interrupt();
-            return false;
-        }
-    }
-
-    protected void signal()
-    {
-        synchronized (this)
-        {
-            notifyAll();
-        }
+        fail(callbacks, failure);
     }
 
     /**
@@ -247,10 +231,13 @@ public class InputStreamResponseListener extends Listener.Adapter
         if (expired) {
             throw new TimeoutException();
         }
-        if (failure != null) {
-            throw new ExecutionException(failure);
+        synchronized (lock)
+        {
+            if (failure != null) {
+                throw new ExecutionException(failure);
+            }
+            return response;
         }
-        return response;
     }
 
     /**
@@ -271,7 +258,10 @@ public class InputStreamResponseListener extends Listener.Adapter
         if (expired) {
             throw new TimeoutException();
         }
-        return result;
+        synchronized (lock)
+        {
+            return result;
+        }
     }
 
     /**
@@ -290,59 +280,61 @@ public class InputStreamResponseListener extends Listener.Adapter
         return IO.getClosedStream();
     }
 
+    /**
+     * Removes all queued content, must be called while holding the lock.
+     *
+     * @return the callbacks of the removed content
+     */
+    private List<Callback> drain()
+    {
+        List<Callback> callbacks = new ArrayList<>(chunks.size());
+        for (Chunk chunk : chunks)
+        {
+            if (chunk != EOF) {
+                callbacks.add(chunk.callback);
+            }
+        }
+        chunks.clear();
+        return callbacks;
+    }
+
+    private static void fail(List<Callback> callbacks, Throwable failure)
+    {
+        for (Callback callback : callbacks) {
+            callback.failed(failure);
+        }
+    }
+
+    private static class Chunk
+    {
+        private final ByteBuffer buffer;
+        private final Callback callback;
+
+        private Chunk(ByteBuffer buffer, Callback callback)
+        {
+            this.buffer = buffer;
+            this.callback = callback;
+        }
+    }
+
     private class Input extends InputStream
     {
-        private byte[] bytes;
-        private int index;
+        private final byte[] single = new byte[1];
+        private boolean endOfContent;
 
         @Override
         public int read() throws IOException
         {
-            while (true)
-            {
-                if (bytes == EOF)
-                {
-                    // Mark the fact that we saw -1,
-                    // so that in the close case we don't throw
-                    index = -1;
-                    return -1;
-                }
-                else if (bytes == FAILURE)
-                {
-                    throw failure();
-                }
-                else if (bytes == CLOSED)
-                {
-                    if (index < 0) {
-                        return -1;
-                    }
-                    throw new AsynchronousCloseException();
-                }
-                else if (bytes != null)
-                {
-                    int result = bytes[index] & 0xFF;
-                    if (++index == bytes.length)
-                    {
-                        length.addAndGet(-index);
-                        bytes = null;
-                        index = 0;
-                        signal();
-                    }
-                    return result;
-                }
-                else
-                {
-                    bytes = take();
-                    if (LOG.isDebugEnabled()) {
-                        LOG.debug("Dequeued {}/{} bytes", bytes, bytes.length);
-                    }
-                }
+            int read = read(single, 0, 1);
+            if (read < 0) {
+                return -1;
             }
+            return single[0] & 0xFF;
         }
 
-        // START AMAZON CHANGES
         @Override
-        public int read(byte buffer[], int offset, int length) throws IOException {
+        public int read(byte buffer[], int offset, int length) throws IOException
+        {
             if (buffer == null) {
                 throw new NullPointerException();
             } else if ((offset < 0) || (length < 0) || (length > (buffer.length - offset))) {
@@ -351,47 +343,88 @@ public class InputStreamResponseListener extends Listener.Adapter
                 return 0;
             }
 
-            // Contract specifies must attempt to read at least one byte. If the stream is at end of file: the value -1 is returned
-            int singleByte = read();
-            if (singleByte == -1) {
-                return -1;
-            }
-            buffer[offset] = (byte)singleByte;
-
-            int bytesWritten = 1;
-            try {
-                while (bytesWritten < length) {
-                    singleByte = read();
-                    if (singleByte == -1) {
-                        break;
+            List<Callback> consumed = null;
+            int bytesRead = 0;
+            try
+            {
+                synchronized (lock)
+                {
+                    Chunk chunk = awaitChunk();
+                    if (chunk == EOF)
+                    {
+                        // Mark the fact that we saw -1,
+                        // so that in the close case we don't throw
+                        endOfContent = true;
+                        return -1;
                     }
-                    buffer[offset + bytesWritten] = (byte)singleByte;
-                    bytesWritten++;
 
-                    if (queue.isEmpty()) {
-                        break;
+                    // Copy from as many queued buffers as are available without blocking
+                    while ((chunk != null) && (chunk != EOF) && (bytesRead < length))
+                    {
+                        ByteBuffer content = chunk.buffer;
+                        int count = Math.min(content.remaining(), length - bytesRead);
+                        content.get(buffer, offset + bytesRead, count);
+                        bytesRead += count;
+                        if (!content.hasRemaining())
+                        {
+                            chunks.poll();
+                            if (consumed == null) {
+                                consumed = new ArrayList<>(2);
+                            }
+                            consumed.add(chunk.callback);
+                            chunk = chunks.peek();
+                        }
+                    }
+                }
+            }
+            finally
+            {
+                // Complete outside of the lock, this may write a WINDOW_UPDATE frame
+                if (consumed != null)
+                {
+                    for (Callback callback : consumed) {
+                        callback.succeeded();
                     }
                 }
-            } catch (IOException ee) {
             }
-            return bytesWritten;
+            return bytesRead;
         }
-        // END AMAZON CHANGES
 
-        private IOException failure()
+        @Override
+        public int available() throws IOException
         {
-            if (failure instanceof IOException) {
-                return (IOException)failure;
-            } else {
-                return new IOException(failure);
+            synchronized (lock)
+            {
+                Chunk chunk = chunks.peek();
+                return (chunk == null) ? 0 : chunk.buffer.remaining();
             }
         }
 
-        private byte[] take() throws IOException
+        /**
+         * Waits for content to be queued, must be called while holding the lock.
+         */
+        private Chunk awaitChunk() throws IOException
         {
             try
             {
-                return queue.take();
+                while (true)
+                {
+                    Chunk chunk = chunks.peek();
+                    if (chunk != null) {
+                        return chunk;
+                    }
+                    if (failure != null) {
+                        throw failure();
+                    }
+                    if (closed)
+                    {
+                        if (endOfContent) {
+                            return EOF;
+                        }
+                        throw new AsynchronousCloseException();
+                    }
+                    lock.wait();
+                }
             }
             catch (InterruptedException x)
             {
@@ -399,19 +432,33 @@ public class InputStreamResponseListener extends Listener.Adapter
             }
         }
 
+        private IOException failure()
+        {
+            if (failure instanceof IOException) {
+                return (IOException)failure;
+            } else {
+                return new IOException(failure);
+            }
+        }
+
         @Override
         public void close() throws IOException
         {
-            if (!closed)
+            List<Callback> callbacks;
+            synchronized (lock)
             {
-                super.close();
-                if (LOG.isDebugEnabled()) {
-                    LOG.debug("Queuing close {}{}", CLOSED, "");
+                if (closed) {
+                    return;
                 }
-                queue.offer(CLOSED);
                 closed = true;
-                signal();
+                callbacks = drain();
+                lock.notifyAll();
+            }
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("InputStream close");
             }
+            fail(callbacks, new AsynchronousCloseException());
+            super.close();
         }
     }
-}
\ No newline at end of file
+}
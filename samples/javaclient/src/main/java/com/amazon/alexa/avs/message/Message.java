@@ -49,12 +49,11 @@ public abstract class Message {
             throws JsonParseException, JsonMappingException, IOException {
 
         this.header = header;
-        try {
-            ObjectReader reader = ObjectMapperFactory.getObjectReader();
-            Class<?> type = Class.forName(getClass().getPackage().getName() + "."
-                    + header.getNamespace().toLowerCase() + "." + header.getName());
-            this.payload = (Payload) reader.withType(type).readValue(payload);
-        } catch (ClassNotFoundException e) {
+        ObjectReader reader =
+                PayloadRegistry.getInstance().getReader(header.getNamespace(), header.getName());
+        if (reader != null) {
+            this.payload = (Payload) reader.readValue(payload);
+        } else {
             // Default to empty payload
             this.payload = new Payload();
         }
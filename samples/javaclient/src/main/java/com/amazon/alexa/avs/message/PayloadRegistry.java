@@ -0,0 +1,124 @@
+/**
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * You may not use this file except in compliance with the License. A copy of the License is located the "LICENSE.txt"
+ * file accompanying this source. This file is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.amazon.alexa.avs.message;
+
+import com.amazon.alexa.avs.AVSAPIConstants;
+import com.amazon.alexa.avs.config.ObjectMapperFactory;
+import com.amazon.alexa.avs.message.response.alerts.DeleteAlert;
+import com.amazon.alexa.avs.message.response.alerts.SetAlert;
+import com.amazon.alexa.avs.message.response.audioplayer.ClearQueue;
+import com.amazon.alexa.avs.message.response.audioplayer.Play;
+import com.amazon.alexa.avs.message.response.audioplayer.Stop;
+import com.amazon.alexa.avs.message.response.speaker.AdjustVolume;
+import com.amazon.alexa.avs.message.response.speaker.SetMute;
+import com.amazon.alexa.avs.message.response.speaker.SetVolume;
+import com.amazon.alexa.avs.message.response.speechrecognizer.Listen;
+import com.amazon.alexa.avs.message.response.speechsynthesizer.ExpectSpeech;
+import com.amazon.alexa.avs.message.response.speechsynthesizer.Speak;
+
+import org.codehaus.jackson.map.ObjectReader;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * An immutable mapping from the namespace and name of a message to the {@link ObjectReader} for
+ * its payload type.
+ *
+ * The registry is built once, so resolving the payload type of a message is two map lookups and
+ * does not need reflection. Devices with custom capability agents can add their own payload types
+ * with {@link #newBuilder()} and install the result with {@link #setInstance(PayloadRegistry)}
+ * before connecting to AVS.
+ */
+public final class PayloadRegistry {
+    private static volatile PayloadRegistry instance = newBuilder().build();
+
+    private final Map<String, Map<String, ObjectReader>> readers;
+
+    private PayloadRegistry(Map<String, Map<String, ObjectReader>> readers) {
+        this.readers = readers;
+    }
+
+    public static PayloadRegistry getInstance() {
+        return instance;
+    }
+
+    public static void setInstance(PayloadRegistry registry) {
+        instance = registry;
+    }
+
+    /**
+     * @return A builder that already contains the payload types of the built-in directives.
+     */
+    public static Builder newBuilder() {
+        return new Builder()
+                .register(AVSAPIConstants.Alerts.NAMESPACE,
+                        AVSAPIConstants.Alerts.Directives.SetAlert.NAME, SetAlert.class)
+                .register(AVSAPIConstants.Alerts.NAMESPACE,
+                        AVSAPIConstants.Alerts.Directives.DeleteAlert.NAME, DeleteAlert.class)
+                .register(AVSAPIConstants.AudioPlayer.NAMESPACE,
+                        AVSAPIConstants.AudioPlayer.Directives.Play.NAME, Play.class)
+                .register(AVSAPIConstants.AudioPlayer.NAMESPACE,
+                        AVSAPIConstants.AudioPlayer.Directives.Stop.NAME, Stop.class)
+                .register(AVSAPIConstants.AudioPlayer.NAMESPACE,
+                        AVSAPIConstants.AudioPlayer.Directives.ClearQueue.NAME, ClearQueue.class)
+                .register(AVSAPIConstants.Speaker.NAMESPACE,
+                        AVSAPIConstants.Speaker.Directives.SetVolume.NAME, SetVolume.class)
+                .register(AVSAPIConstants.Speaker.NAMESPACE,
+                        AVSAPIConstants.Speaker.Directives.AdjustVolume.NAME, AdjustVolume.class)
+                .register(AVSAPIConstants.Speaker.NAMESPACE,
+                        AVSAPIConstants.Speaker.Directives.SetMute.NAME, SetMute.class)
+                .register(AVSAPIConstants.SpeechRecognizer.NAMESPACE,
+                        Listen.class.getSimpleName(), Listen.class)
+                .register(AVSAPIConstants.SpeechSynthesizer.NAMESPACE,
+                        AVSAPIConstants.SpeechSynthesizer.Directives.Speak.NAME, Speak.class)
+                .register(AVSAPIConstants.SpeechSynthesizer.NAMESPACE,
+                        ExpectSpeech.class.getSimpleName(), ExpectSpeech.class)
+                .register(AVSAPIConstants.System.NAMESPACE, AVSAPIConstants.System.Exception.NAME,
+                        com.amazon.alexa.avs.message.response.system.Exception.class);
+    }
+
+    /**
+     * @return The reader for the payload of the given message, or null if the message has no
+     *         registered payload type.
+     */
+    public ObjectReader getReader(String namespace, String name) {
+        Map<String, ObjectReader> names = readers.get(namespace);
+        return (names == null) ? null : names.get(name);
+    }
+
+    public static class Builder {
+        private final Map<String, Map<String, ObjectReader>> readers;
+
+        private Builder() {
+            readers = new HashMap<>();
+        }
+
+        /**
+         * Register the payload type for a message, replacing any type already registered for it.
+         */
+        public Builder register(String namespace, String name,
+                Class<? extends Payload> payloadType) {
+            readers
+                    .computeIfAbsent(namespace, n -> new HashMap<>())
+                    .put(name, ObjectMapperFactory.getObjectReader(payloadType));
+            return this;
+        }
+
+        public PayloadRegistry build() {
+            Map<String, Map<String, ObjectReader>> copy = new HashMap<>();
+            for (Map.Entry<String, Map<String, ObjectReader>> entry : readers.entrySet()) {
+                copy.put(entry.getKey(),
+                        Collections.unmodifiableMap(new HashMap<>(entry.getValue())));
+            }
+            return new PayloadRegistry(Collections.unmodifiableMap(copy));
+        }
+    }
+}
@@ -0,0 +1,83 @@
+/**
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * You may not use this file except in compliance with the License. A copy of the License is located the "LICENSE.txt"
+ * file accompanying this source. This file is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.amazon.alexa.avs.metrics;
+
+/**
+ * Keeps running statistics (count, mean, min, max and last value) for a latency measured in
+ * milliseconds. Recording is constant time and does not allocate.
+ */
+public class LatencyRecorder {
+    private final String name;
+
+    private long count;
+    private long totalMs;
+    private long minMs = Long.MAX_VALUE;
+    private long maxMs;
+    private long lastMs;
+
+    public LatencyRecorder(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public synchronized void record(long latencyMs) {
+        count++;
+        totalMs += latencyMs;
+        minMs = Math.min(minMs, latencyMs);
+        maxMs = Math.max(maxMs, latencyMs);
+        lastMs = latencyMs;
+    }
+
+    /**
+     * Record the time elapsed since the given {@link System#nanoTime()} timestamp.
+     *
+     * @param startNanos
+     *            The start of the measured interval.
+     */
+    public void recordSince(long startNanos) {
+        record((System.nanoTime() - startNanos) / 1000000);
+    }
+
+    public synchronized long getCount() {
+        return count;
+    }
+
+    public synchronized double getMeanMs() {
+        return count == 0 ? 0 : (double) totalMs / count;
+    }
+
+    public synchronized long getMinMs() {
+        return count == 0 ? 0 : minMs;
+    }
+
+    public synchronized long getMaxMs() {
+        return maxMs;
+    }
+
+    public synchronized long getLastMs() {
+        return lastMs;
+    }
+
+    public synchronized void reset() {
+        count = 0;
+        totalMs = 0;
+        minMs = Long.MAX_VALUE;
+        maxMs = 0;
+        lastMs = 0;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("%1$s: count=%2$d mean=%3$.1fms min=%4$dms max=%5$dms last=%6$dms",
+                name, count, getMeanMs(), getMinMs(), maxMs, lastMs);
+    }
+}
@@ -0,0 +1,93 @@
+/**
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * You may not use this file except in compliance with the License. A copy of the License is located the "LICENSE.txt"
+ * file accompanying this source. This file is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.amazon.alexa.avs.metrics;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Process wide registry of named counters, gauges and {@link LatencyRecorder}s. Components look up
+ * their metrics once and keep the reference, so recording never goes through the registry. Gauges
+ * are sampled only when a snapshot is taken.
+ */
+public final class Metrics {
+    private static final Logger log = LoggerFactory.getLogger(Metrics.class);
+
+    private static final Metrics instance = new Metrics();
+
+    private final ConcurrentMap<String, AtomicLong> counters;
+    private final ConcurrentMap<String, LongSupplier> gauges;
+    private final ConcurrentMap<String, LatencyRecorder> latencies;
+
+    private Metrics() {
+        counters = new ConcurrentHashMap<>();
+        gauges = new ConcurrentHashMap<>();
+        latencies = new ConcurrentHashMap<>();
+    }
+
+    public static Metrics getInstance() {
+        return instance;
+    }
+
+    public AtomicLong counter(String name) {
+        return counters.computeIfAbsent(name, key -> new AtomicLong());
+    }
+
+    /**
+     * Register a gauge, replacing any gauge registered earlier under the same name.
+     */
+    public void gauge(String name, LongSupplier value) {
+        gauges.put(name, value);
+    }
+
+    public LatencyRecorder latency(String name) {
+        return latencies.computeIfAbsent(name, LatencyRecorder::new);
+    }
+
+    /**
+     * @return A sorted snapshot of every counter value.
+     */
+    public Map<String, Long> getCounters() {
+        Map<String, Long> snapshot = new TreeMap<>();
+        counters.forEach((name, value) -> snapshot.put(name, value.get()));
+        return snapshot;
+    }
+
+    /**
+     * @return A sorted snapshot of every gauge value.
+     */
+    public Map<String, Long> getGauges() {
+        Map<String, Long> snapshot = new TreeMap<>();
+        gauges.forEach((name, value) -> snapshot.put(name, value.getAsLong()));
+        return snapshot;
+    }
+
+    /**
+     * @return A sorted view of every latency recorder.
+     */
+    public Map<String, LatencyRecorder> getLatencies() {
+        return new TreeMap<>(latencies);
+    }
+
+    /**
+     * Write every metric to the log.
+     */
+    public void logSummary() {
+        getCounters().forEach((name, value) -> log.info("{}: {}", name, value));
+        getGauges().forEach((name, value) -> log.info("{}: {}", name, value));
+        getLatencies().values().forEach(latency -> log.info("{}", latency));
+    }
+}
@@ -0,0 +1,75 @@
+/**
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * You may not use this file except in compliance with the License. A copy of the License is located the "LICENSE.txt"
+ * file accompanying this source. This file is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.amazon.alexa.avs.metrics;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Measures the startup time and memory footprint of the client process, so that the different
+ * entry points can be compared on the target hardware.
+ */
+public final class ProcessStats {
+    private static final Logger log = LoggerFactory.getLogger(ProcessStats.class);
+
+    private static final Path PROC_STATUS = Paths.get("/proc/self/status");
+    private static final String RESIDENT_SET_SIZE = "VmRSS:";
+
+    private ProcessStats() {
+    }
+
+    /**
+     * @return The time since the JVM was started in milliseconds.
+     */
+    public static long getUptimeMs() {
+        return ManagementFactory.getRuntimeMXBean().getUptime();
+    }
+
+    /**
+     * @return The resident set size of the process in kB, or -1 if the platform does not report it.
+     */
+    public static long getResidentMemoryKb() {
+        try {
+            for (String line : Files.readAllLines(PROC_STATUS, StandardCharsets.US_ASCII)) {
+                if (line.startsWith(RESIDENT_SET_SIZE)) {
+                    String value = line.substring(RESIDENT_SET_SIZE.length()).trim();
+                    return Long.parseLong(value.substring(0, value.indexOf(' ')));
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            log.debug("Unable to read the resident set size", e);
+        }
+        return -1;
+    }
+
+    /**
+     * Record and log how long the given entry point took to start and how much memory it uses, in
+     * the app.startup latency and the app.residentMemoryKb and app.heapUsedKb {@link Metrics}.
+     */
+    public static void recordStartup(String entryPoint) {
+        long uptimeMs = getUptimeMs();
+        long residentKb = getResidentMemoryKb();
+        Runtime runtime = Runtime.getRuntime();
+        long heapUsedKb = (runtime.totalMemory() - runtime.freeMemory()) / 1024;
+
+        Metrics metrics = Metrics.getInstance();
+        metrics.latency("app.startup").record(uptimeMs);
+        metrics.counter("app.residentMemoryKb").set(residentKb);
+        metrics.counter("app.heapUsedKb").set(heapUsedKb);
+        log.info("{} started in {} ms, resident memory {} kB, heap used {} kB", entryPoint,
+                uptimeMs, residentKb, heapUsedKb);
+    }
+}
@@ -0,0 +1,482 @@
+/**
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * You may not use this file except in compliance with the License. A copy of the License is located the "LICENSE.txt"
+ * file accompanying this source. This file is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.amazon.alexa.avs;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.amazon.alexa.avs.http.MediaServer;
+import com.amazon.alexa.avs.message.request.RequestBody;
+import com.amazon.alexa.avs.message.response.audioplayer.AudioItem;
+import com.amazon.alexa.avs.message.response.audioplayer.Play;
+import com.amazon.alexa.avs.message.response.audioplayer.Stream;
+import com.amazon.alexa.avs.message.response.speechsynthesizer.Speak;
+import com.amazon.alexa.avs.metrics.LatencyRecorder;
+import com.amazon.alexa.avs.metrics.Metrics;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import javazoom.jl.player.AudioDevice;
+import javazoom.jl.player.AudioDeviceFactory;
+import javazoom.jl.player.FactoryRegistry;
+import javazoom.jl.player.JavaSoundAudioDeviceFactory;
+import javazoom.jl.player.NullAudioDevice;
+import uk.co.caprica.vlcj.player.MediaPlayer;
+import uk.co.caprica.vlcj.player.MediaPlayerEventListener;
+
+/**
+ * Drives the audio player with a fake media player and a fake event sender. Measures how long
+ * content waits after speech and after the previous item, and checks that interrupted speech is
+ * not played.
+ */
+public class AVSAudioPlayerTest {
+    // How long the fake event sender takes to send an event
+    private static final long SEND_MS = 50;
+    // The sleep polling this replaced added up to 100 ms
+    private static final long MAX_GAP_MS = 50;
+    private static final long TIMEOUT_MS = 5000;
+    // How long to wait for events that must not be sent
+    private static final long QUIET_MS = 200;
+    private static final long OFFSET_MS = 5000;
+    // Length of the media items that report one
+    private static final long ITEM_MS = 60000;
+
+    private static final AudioDeviceFactory NULL_AUDIO = new AudioDeviceFactory() {
+        @Override
+        public AudioDevice createAudioDevice() {
+            return new NullAudioDevice();
+        }
+    };
+
+    private FakeEventSender sender;
+    private FakeMediaPlayer media;
+    private AVSAudioPlayer player;
+    private MediaServer origin;
+
+    @BeforeClass
+    public static void playSpeechSilently() {
+        FactoryRegistry.systemRegistry().removeFactoryType(JavaSoundAudioDeviceFactory.class);
+        FactoryRegistry.systemRegistry().addFactory(NULL_AUDIO);
+    }
+
+    @AfterClass
+    public static void restoreSpeaker() {
+        FactoryRegistry.systemRegistry().removeFactory(NULL_AUDIO);
+        FactoryRegistry.systemRegistry().addFactory(new JavaSoundAudioDeviceFactory());
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        origin = new MediaServer();
+        origin.start();
+        sender = new FakeEventSender();
+        media = new FakeMediaPlayer();
+        player = new AVSAudioPlayer(sender, media.getProxy());
+        new SpeechRequestAudioPlayerPauseController(player);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        player.shutdown();
+        media.shutdown();
+        sender.shutdown();
+        origin.stop();
+    }
+
+    @Test
+    public void resumesContentRightAfterSpeech() throws Exception {
+        LatencyRecorder speechToContentGap =
+                Metrics.getInstance().latency("audioPlayer.speechToContentGap");
+        long gaps = speechToContentGap.getCount();
+
+        player.handlePlay(play("song", Play.PlayBehavior.REPLACE_ALL));
+        assertEquals(url("song"), media.started.poll(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+        sender.awaitQueued("PlaybackStarted");
+
+        player.handleSpeak(speak("answer"));
+        long speechFinished = sender.awaitQueued("SpeechFinished");
+        Long resumed = media.resumed.poll(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        assertNotNull("content was not resumed after the speech", resumed);
+
+        long gapMs = TimeUnit.NANOSECONDS.toMillis(resumed - speechFinished);
+        assertTrue("content resumed " + gapMs + " ms after the speech", gapMs < MAX_GAP_MS);
+        media.awaitEvents();
+        assertEquals(gaps + 1, speechToContentGap.getCount());
+    }
+
+    @Test
+    public void startsTheNextItemOnceTheEventsOfTheFinishedOneHaveBeenSent() throws Exception {
+        player.handlePlay(play("first", Play.PlayBehavior.REPLACE_ALL));
+        assertEquals(url("first"), media.started.poll(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+        player.handlePlay(play("second", Play.PlayBehavior.ENQUEUE));
+
+        // while PlaybackStarted of the first item is still being sent
+        long finished = media.finish();
+        assertEquals(url("second"), media.started.poll(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+        long started = media.startedNanos;
+
+        assertEquals(Arrays.asList("PlaybackStarted", "PlaybackNearlyFinished",
+                "PlaybackFinished", "PlaybackStarted"), sender.awaitNames(4));
+        assertTrue("the next item started before PlaybackStarted had been sent",
+                started >= sender.sentNanos.get(0));
+        long gapMs = TimeUnit.NANOSECONDS.toMillis(started - finished);
+        assertTrue("the next item started " + gapMs + " ms after the previous one",
+                gapMs < (SEND_MS + MAX_GAP_MS));
+    }
+
+    @Test
+    public void skipsSpeechThatIsInterruptedWhileWaitingForTheSpeaker() throws Exception {
+        ReceivingStream audio = new ReceivingStream();
+        player.handleSpeak(speak("interrupted", audio));
+        sender.awaitQueued("SpeechStarted");
+        player.interruptAllAlexaOutput();
+        assertFalse(player.isSpeaking());
+        audio.receive();
+
+        player.handleSpeak(speak("next"));
+        sender.awaitNames(3);
+        // the interrupted speech would finish the next one and report it a second time
+        Thread.sleep(QUIET_MS);
+        assertEquals(Arrays.asList("SpeechStarted", "SpeechStarted", "SpeechFinished"),
+                sender.awaitNames(3));
+        assertEquals("next", player.getSpeechState().getToken());
+        assertFalse(player.isSpeaking());
+    }
+
+    @Test
+    public void waitsForAnAttachmentBeforePlayingItAtAnOffset() throws Exception {
+        ReceivingStream content = new ReceivingStream();
+        Play play = play("attached", Play.PlayBehavior.REPLACE_ALL);
+        Stream stream = play.getAudioItem().getStream();
+        stream.setUrl("cid:attached");
+        stream.setAttachedContent(content);
+        stream.setOffsetInMilliseconds(OFFSET_MS);
+
+        player.handlePlay(play);
+        assertNull("played before the attachment was complete",
+                media.started.poll(QUIET_MS, TimeUnit.MILLISECONDS));
+        content.receive();
+        assertNotNull(media.started.poll(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+        assertEquals(Long.valueOf(OFFSET_MS), media.seeks.poll(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void playsTheNextItemFromItsPrefetchedCopy() throws Exception {
+        LatencyRecorder interTrackGap = Metrics.getInstance().latency("audioPlayer.interTrackGap");
+        long gaps = interTrackGap.getCount();
+        media.length = ITEM_MS;
+        player.handlePlay(
+                play("first", origin.url("/res/start.mp3"), Play.PlayBehavior.REPLACE_ALL));
+        media.started.poll(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        player.handlePlay(play("second", origin.url("/res/alarm.mp3"), Play.PlayBehavior.ENQUEUE));
+
+        media.play(ITEM_MS - 1000);
+        sender.awaitQueued("PlaybackNearlyFinished");
+        assertEquals("/res/alarm.mp3",
+                origin.getRequests().poll(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+        // the download has been handed to the attachment server and the events have been sent
+        Thread.sleep(QUIET_MS);
+
+        long finished = media.finish();
+        String next = media.started.poll(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        long gapMs = TimeUnit.NANOSECONDS.toMillis(media.startedNanos - finished);
+        assertTrue("the next item started " + gapMs + " ms after the previous one",
+                gapMs < MAX_GAP_MS);
+        assertFalse(next.startsWith(origin.url("/")));
+        assertArrayEquals(MediaServer.resource("res/alarm.mp3"),
+                IOUtils.toByteArray(new URL(next)));
+        media.awaitEvents();
+        assertEquals(gaps + 1, interTrackGap.getCount());
+    }
+
+    @Test
+    public void leavesItemsWithAnOffsetToTheMediaPlayer() throws Exception {
+        media.length = ITEM_MS;
+        player.handlePlay(
+                play("first", origin.url("/res/start.mp3"), Play.PlayBehavior.REPLACE_ALL));
+        media.started.poll(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        Play second = play("second", origin.url("/res/alarm.mp3"), Play.PlayBehavior.ENQUEUE);
+        second.getAudioItem().getStream().setOffsetInMilliseconds(OFFSET_MS);
+        player.handlePlay(second);
+
+        media.play(ITEM_MS - 1000);
+        sender.awaitQueued("PlaybackNearlyFinished");
+        assertNull(origin.getRequests().poll(QUIET_MS, TimeUnit.MILLISECONDS));
+
+        media.finish();
+        assertEquals(origin.url("/res/alarm.mp3"),
+                media.started.poll(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+        assertEquals(Long.valueOf(OFFSET_MS), media.seeks.poll(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+    }
+
+    private static String url(String token) {
+        return "http://127.0.0.1/" + token + ".mp3";
+    }
+
+    private static Play play(String token, Play.PlayBehavior behavior) {
+        return play(token, url(token), behavior);
+    }
+
+    private static Play play(String token, String url, Play.PlayBehavior behavior) {
+        Stream stream = new Stream();
+        stream.setUrl(url);
+        stream.setToken(token);
+        AudioItem item = new AudioItem();
+        item.setAudioItemId(token);
+        item.setStream(stream);
+        Play play = new Play();
+        play.setPlayBehavior(behavior.name());
+        play.setAudioItem(item);
+        return play;
+    }
+
+    private static Speak speak(String token) {
+        // no audio frames, so the speech ends as soon as it starts
+        return speak(token, new ByteArrayInputStream(new byte[0]));
+    }
+
+    private static Speak speak(String token, InputStream audio) {
+        Speak speak = new Speak();
+        speak.setUrl("cid:" + token);
+        speak.setToken(token);
+        speak.setAttachedContent(token, audio);
+        return speak;
+    }
+
+    /**
+     * Audio that is still being received until {@link #receive()} is called.
+     */
+    private static class ReceivingStream extends InputStream {
+        private final CountDownLatch received = new CountDownLatch(1);
+
+        @Override
+        public int read() throws IOException {
+            try {
+                received.await();
+            } catch (InterruptedException e) {
+                throw new InterruptedIOException();
+            }
+            return -1;
+        }
+
+        void receive() {
+            received.countDown();
+        }
+    }
+
+    /**
+     * Sends every event after {@link #SEND_MS}, like an AVSClient with a fast connection.
+     */
+    private static class FakeEventSender implements EventSender {
+        private final ScheduledExecutorService network = Executors.newScheduledThreadPool(4);
+        private final Set<CompletableFuture<Void>> beingSent = ConcurrentHashMap.newKeySet();
+        private final List<String> names = new ArrayList<>();
+        private final Map<String, Long> queuedNanos = new ConcurrentHashMap<>();
+        final List<Long> sentNanos = new CopyOnWriteArrayList<>();
+
+        @Override
+        public void sendRequest(RequestBody body) {
+            String name = body.getEvent().getHeader().getName();
+            CompletableFuture<Void> sent = new CompletableFuture<>();
+            beingSent.add(sent);
+            synchronized (this) {
+                if (network.isShutdown()) {
+                    return;
+                }
+                queuedNanos.put(name, System.nanoTime());
+                names.add(name);
+                notifyAll();
+                network.schedule(() -> {
+                    sentNanos.add(System.nanoTime());
+                    beingSent.remove(sent);
+                    sent.complete(null);
+                }, SEND_MS, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        @Override
+        public CompletableFuture<Void> whenEventsSent() {
+            return CompletableFuture.allOf(beingSent.toArray(new CompletableFuture<?>[0]));
+        }
+
+        /**
+         * @return When the latest event with the given name was queued.
+         */
+        synchronized long awaitQueued(String name) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+            while (!queuedNanos.containsKey(name) && (System.currentTimeMillis() < deadline)) {
+                wait(TIMEOUT_MS);
+            }
+            assertTrue(name + " was not sent", queuedNanos.containsKey(name));
+            return queuedNanos.get(name);
+        }
+
+        synchronized List<String> awaitNames(int count) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+            while ((names.size() < count) && (System.currentTimeMillis() < deadline)) {
+                wait(TIMEOUT_MS);
+            }
+            return new ArrayList<>(names);
+        }
+
+        synchronized void shutdown() {
+            network.shutdownNow();
+        }
+    }
+
+    /**
+     * Stands in for vlc. It plays every url until the test finishes it, and reports the state
+     * changes on its own event thread like vlc does.
+     */
+    private static class FakeMediaPlayer implements InvocationHandler {
+        private final ExecutorService eventThread = Executors.newSingleThreadExecutor();
+        private final List<MediaPlayerEventListener> listeners = new CopyOnWriteArrayList<>();
+        private final MediaPlayer proxy = (MediaPlayer) Proxy.newProxyInstance(
+                MediaPlayer.class.getClassLoader(), new Class<?>[] { MediaPlayer.class }, this);
+        final BlockingQueue<String> started = new LinkedBlockingQueue<>();
+        final BlockingQueue<Long> resumed = new LinkedBlockingQueue<>();
+        volatile long startedNanos;
+        final BlockingQueue<Long> seeks = new LinkedBlockingQueue<>();
+        // unknown, so PlaybackNearlyFinished is only reported when the item finishes
+        volatile long length = -1;
+        private volatile String mrl;
+        private volatile boolean playing;
+
+        MediaPlayer getProxy() {
+            return proxy;
+        }
+
+        @Override
+        public Object invoke(Object self, Method method, Object[] args) {
+            switch (method.getName()) {
+                case "addMediaPlayerEventListener":
+                    listeners.add((MediaPlayerEventListener) args[0]);
+                    return null;
+                case "startMedia":
+                case "playMedia":
+                    startedNanos = System.nanoTime();
+                    mrl = (String) args[0];
+                    playing = true;
+                    fire(l -> {
+                        l.newMedia(proxy);
+                        l.playing(proxy);
+                        l.buffering(proxy, 100.0f);
+                    });
+                    started.add(mrl);
+                    return true;
+                case "pause":
+                    playing = !playing;
+                    if (playing) {
+                        long now = System.nanoTime();
+                        fire(l -> l.playing(proxy));
+                        resumed.add(now);
+                    } else {
+                        fire(l -> l.paused(proxy));
+                    }
+                    return null;
+                case "stop":
+                    playing = false;
+                    fire(l -> l.stopped(proxy));
+                    return null;
+                case "setTime":
+                    seeks.add((Long) args[0]);
+                    return null;
+                case "isPlaying":
+                    return playing;
+                case "mrl":
+                    return mrl;
+                case "subItems":
+                    return Collections.emptyList();
+                case "getLength":
+                    return length;
+                case "getTime":
+                    return 0L;
+                case "getVolume":
+                    return 100;
+                case "isMute":
+                    return false;
+                case "hashCode":
+                    return System.identityHashCode(self);
+                case "equals":
+                    return self == args[0];
+                case "toString":
+                    return "FakeMediaPlayer";
+                default:
+                    return null;
+            }
+        }
+
+        /**
+         * Report that the current item has been played up to the given time.
+         */
+        void play(long time) {
+            fire(l -> l.timeChanged(proxy, time));
+        }
+
+        /**
+         * Finish the current item, as vlc does at the end of the media.
+         *
+         * @return When the item finished.
+         */
+        long finish() {
+            long now = System.nanoTime();
+            playing = false;
+            fire(l -> l.finished(proxy));
+            return now;
+        }
+
+        void awaitEvents() throws Exception {
+            eventThread.submit(() -> {
+            }).get(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        }
+
+        private void fire(Consumer<MediaPlayerEventListener> event) {
+            eventThread.execute(() -> listeners.forEach(event));
+        }
+
+        void shutdown() {
+            eventThread.shutdownNow();
+        }
+    }
+}
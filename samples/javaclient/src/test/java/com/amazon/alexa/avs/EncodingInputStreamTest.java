@@ -0,0 +1,239 @@
+/**
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * You may not use this file except in compliance with the License. A copy of the License is located the "LICENSE.txt"
+ * file accompanying this source. This file is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.amazon.alexa.avs;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.amazon.alexa.avs.http.StreamingAudioContentProvider;
+import com.amazon.alexa.avs.metrics.Metrics;
+
+import org.eclipse.jetty.client.HttpClient;
+import org.eclipse.jetty.client.api.ContentResponse;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Uploads paced microphone audio through a fake 8:1 encoder to a local Jetty endpoint, and checks
+ * the uploaded bytes, the time the frames arrive and the encoder metrics.
+ */
+public class EncodingInputStreamTest {
+    private static final AudioInputFormat FORMAT = AudioInputFormat.OPUS;
+    private static final int CAPTURED_FRAME = FORMAT.getCapturedChunkSizeBytes();
+    private static final int ENCODED_FRAME = FORMAT.getChunkSizeBytes();
+    private static final int FRAMES = 50;
+    // Captured audio ends with a partial frame, which is padded
+    private static final int CAPTURED_BYTES = (FRAMES * CAPTURED_FRAME) + 100;
+
+    private Server server;
+    private HttpClient client;
+    private UploadHandler upload;
+
+    @Before
+    public void setUp() throws Exception {
+        upload = new UploadHandler();
+        server = new Server();
+        ServerConnector connector = new ServerConnector(server);
+        connector.setHost("127.0.0.1");
+        connector.setPort(0);
+        server.addConnector(connector);
+        server.setHandler(upload);
+        server.start();
+
+        client = new HttpClient();
+        client.start();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        client.stop();
+        server.stop();
+    }
+
+    @Test
+    public void uploadsOneEncodedFramePerCapturedFrameAsItIsCaptured() throws Exception {
+        long frames = counter("audioEncoder.frames");
+        long encodedBytes = counter("audioEncoder.encodedBytes");
+        long encodeNanos = counter("audioEncoder.encodeNanos");
+
+        byte[] pcm = pcm(CAPTURED_BYTES);
+        long start = System.nanoTime();
+        EncodingInputStream encoded = new EncodingInputStream(
+                new PacedInputStream(pcm, FORMAT.getChunkSizeMs()), new DecimatingEncoder());
+        ContentResponse response = client
+                .POST("http://127.0.0.1:" + ((ServerConnector) server.getConnectors()[0])
+                        .getLocalPort() + "/recognize")
+                .content(new StreamingAudioContentProvider(FORMAT, encoded, null))
+                .timeout(30, TimeUnit.SECONDS)
+                .send();
+        long captureMs = (long) FRAMES * FORMAT.getChunkSizeMs();
+
+        assertEquals(HttpServletResponse.SC_OK, response.getStatus());
+        int expectedFrames = FRAMES + 1;
+        assertEquals(expectedFrames * ENCODED_FRAME, upload.body.size());
+        assertArrayEquals(encode(pcm, expectedFrames), upload.body.toByteArray());
+
+        // Frames are uploaded while the audio is captured, not after the recording
+        long firstArrivalMs = TimeUnit.NANOSECONDS.toMillis(upload.arrivals.get(0) - start);
+        assertTrue("First frame after " + firstArrivalMs + " ms", firstArrivalMs < captureMs / 2);
+        long maxGapMs = 0;
+        for (int i = 1; i < upload.arrivals.size(); i++) {
+            maxGapMs = Math.max(maxGapMs, TimeUnit.NANOSECONDS
+                    .toMillis(upload.arrivals.get(i) - upload.arrivals.get(i - 1)));
+        }
+        assertTrue("Frames arrived up to " + maxGapMs + " ms apart", maxGapMs < 250);
+
+        assertEquals(expectedFrames, counter("audioEncoder.frames") - frames);
+        assertEquals(expectedFrames * ENCODED_FRAME,
+                counter("audioEncoder.encodedBytes") - encodedBytes);
+        assertTrue(counter("audioEncoder.encodeNanos") > encodeNanos);
+    }
+
+    @Test
+    public void rejectsFramesOfAnotherSize() throws Exception {
+        EncodingInputStream encoded = new EncodingInputStream(
+                new ByteArrayInputStream(pcm(CAPTURED_FRAME)), new DecimatingEncoder() {
+                    @Override
+                    public int encode(byte[] pcm, int offset, byte[] output, int outputOffset) {
+                        return super.encode(pcm, offset, output, outputOffset) - 1;
+                    }
+                });
+        try {
+            encoded.read(new byte[ENCODED_FRAME]);
+            fail("A short frame was uploaded");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+
+    private static long counter(String name) {
+        return Metrics.getInstance().counter(name).get();
+    }
+
+    private static byte[] pcm(int length) {
+        byte[] pcm = new byte[length];
+        for (int i = 0; i < length; i++) {
+            pcm[i] = (byte) (i * 31);
+        }
+        return pcm;
+    }
+
+    private static byte[] encode(byte[] pcm, int frames) {
+        byte[] padded = new byte[frames * CAPTURED_FRAME];
+        System.arraycopy(pcm, 0, padded, 0, pcm.length);
+        byte[] encoded = new byte[frames * ENCODED_FRAME];
+        DecimatingEncoder encoder = new DecimatingEncoder();
+        for (int i = 0; i < frames; i++) {
+            encoder.encode(padded, i * CAPTURED_FRAME, encoded, i * ENCODED_FRAME);
+        }
+        return encoded;
+    }
+
+    /**
+     * Keeps every n-th byte, which turns a captured frame into a frame of the encoded size.
+     */
+    private static class DecimatingEncoder implements AudioEncoder {
+        @Override
+        public AudioInputFormat getFormat() {
+            return FORMAT;
+        }
+
+        @Override
+        public int encode(byte[] pcm, int offset, byte[] output, int outputOffset) {
+            int step = CAPTURED_FRAME / ENCODED_FRAME;
+            for (int i = 0; i < ENCODED_FRAME; i++) {
+                output[outputOffset + i] = pcm[offset + (i * step)];
+            }
+            return ENCODED_FRAME;
+        }
+    }
+
+    /**
+     * Returns one captured frame per frame duration, like the microphone.
+     */
+    private static class PacedInputStream extends InputStream {
+        private final byte[] data;
+        private final long frameNanos;
+        private final long start;
+        private int position;
+
+        PacedInputStream(byte[] data, int frameMs) {
+            this.data = data;
+            this.frameNanos = TimeUnit.MILLISECONDS.toNanos(frameMs);
+            this.start = System.nanoTime();
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            return (read(single, 0, 1) == -1) ? -1 : (single[0] & 0xFF);
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (position >= data.length) {
+                return -1;
+            }
+            int frame = position / CAPTURED_FRAME;
+            long due = start + ((frame + 1) * frameNanos);
+            long wait = due - System.nanoTime();
+            if (wait > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(wait);
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+            }
+            int count = Math.min(len, Math.min(data.length, (frame + 1) * CAPTURED_FRAME)
+                    - position);
+            System.arraycopy(data, position, b, off, count);
+            position += count;
+            return count;
+        }
+    }
+
+    private static class UploadHandler extends AbstractHandler {
+        private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+        private final List<Long> arrivals = new ArrayList<>();
+
+        @Override
+        public void handle(String target, Request baseRequest, HttpServletRequest request,
+                HttpServletResponse response) throws IOException {
+            InputStream input = request.getInputStream();
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = input.read(buffer)) != -1) {
+                synchronized (this) {
+                    arrivals.add(System.nanoTime());
+                    body.write(buffer, 0, read);
+                }
+            }
+            response.setStatus(HttpServletResponse.SC_OK);
+            baseRequest.setHandled(true);
+        }
+    }
+}
@@ -0,0 +1,134 @@
+/**
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * You may not use this file except in compliance with the License. A copy of the License is located the "LICENSE.txt"
+ * file accompanying this source. This file is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.amazon.alexa.avs.http;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.InputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Plays a media file into the attachment server and reads it back over HTTP, while it is received
+ * and once it is complete.
+ */
+public class AttachmentServerTest {
+    private static final long TIMEOUT_MS = 5000;
+    // Small enough that the media file is spilled to disk
+    private static final int MEMORY_BYTES = 4096;
+
+    private AttachmentServer server;
+    private byte[] media;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new AttachmentServer(MEMORY_BYTES, AttachmentServer.DEFAULT_MAX_DISK_BYTES);
+        media = MediaServer.resource("res/alarm.mp3");
+    }
+
+    @After
+    public void tearDown() {
+        server.stop();
+    }
+
+    @Test
+    public void servesAnAttachmentWhileItIsReceived() throws Exception {
+        PipedOutputStream received = new PipedOutputStream();
+        String url = server.serve(new PipedInputStream(received, media.length));
+        int half = media.length / 2;
+        received.write(media, 0, half);
+        received.flush();
+
+        HttpURLConnection connection = open(url, null);
+        assertEquals(HttpURLConnection.HTTP_OK, connection.getResponseCode());
+        assertNull(connection.getHeaderField(HttpHeaders.ACCEPT_RANGES));
+        assertEquals(-1, connection.getContentLengthLong());
+        DataInputStream body = new DataInputStream(connection.getInputStream());
+        try {
+            byte[] first = new byte[half];
+            // the first half is played before the rest has been received
+            body.readFully(first);
+            assertArrayEquals(Arrays.copyOf(media, half), first);
+            assertFalse(server.whenSpooled(url).isDone());
+
+            received.write(media, half, media.length - half);
+            received.close();
+            assertArrayEquals(Arrays.copyOfRange(media, half, media.length),
+                    IOUtils.toByteArray(body));
+        } finally {
+            body.close();
+        }
+        server.whenSpooled(url).get(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+    }
+
+    @Test
+    public void servesRangesOfACompleteAttachment() throws Exception {
+        String url = server.serve(new ByteArrayInputStream(media));
+        server.whenSpooled(url).get(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+
+        HttpURLConnection whole = open(url, null);
+        assertEquals(HttpURLConnection.HTTP_OK, whole.getResponseCode());
+        assertEquals("bytes", whole.getHeaderField(HttpHeaders.ACCEPT_RANGES));
+        assertArrayEquals(media, read(whole));
+
+        int start = media.length - 1000;
+        HttpURLConnection range = open(url, "bytes=" + start + "-");
+        assertEquals(HttpURLConnection.HTTP_PARTIAL, range.getResponseCode());
+        assertEquals("bytes " + start + "-" + (media.length - 1) + "/" + media.length,
+                range.getHeaderField(HttpHeaders.CONTENT_RANGE));
+        assertArrayEquals(Arrays.copyOfRange(media, start, media.length), read(range));
+
+        HttpURLConnection beyond = open(url, "bytes=" + media.length + "-");
+        assertEquals(416, beyond.getResponseCode());
+    }
+
+    @Test
+    public void releasedAttachmentsAreNotFound() throws Exception {
+        PipedOutputStream received = new PipedOutputStream();
+        String url = server.serve(new PipedInputStream(received));
+        CompletableFuture<Void> spooled = server.whenSpooled(url);
+        server.release(url);
+
+        assertEquals(HttpURLConnection.HTTP_NOT_FOUND, open(url, null).getResponseCode());
+        // the rest of the attachment is not waited for
+        spooled.get(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+    }
+
+    private static HttpURLConnection open(String url, String range) throws Exception {
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        if (range != null) {
+            connection.setRequestProperty(HttpHeaders.RANGE, range);
+        }
+        return connection;
+    }
+
+    private static byte[] read(HttpURLConnection connection) throws Exception {
+        InputStream content = connection.getInputStream();
+        try {
+            return IOUtils.toByteArray(content);
+        } finally {
+            content.close();
+        }
+    }
+}
@@ -0,0 +1,107 @@
+/**
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * You may not use this file except in compliance with the License. A copy of the License is located the "LICENSE.txt"
+ * file accompanying this source. This file is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.amazon.alexa.avs.http;
+
+import org.apache.commons.io.IOUtils;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Serves the MP3 resources of the client on the loopback interface, like a media host.
+ *
+ * /res/NAME is served with its length, /live/NAME without one, like a live stream, and
+ * /playlist.m3u is a playlist of /res/start.mp3. The paths that have been requested are queued.
+ */
+public class MediaServer {
+    private final Server server;
+    private final ServerConnector connector;
+    private final BlockingQueue<String> requests;
+
+    public MediaServer() {
+        server = new Server();
+        connector = new ServerConnector(server);
+        connector.setHost("127.0.0.1");
+        connector.setPort(0);
+        server.addConnector(connector);
+        server.setHandler(new MediaHandler());
+        requests = new LinkedBlockingQueue<>();
+    }
+
+    public void start() throws Exception {
+        server.start();
+    }
+
+    public void stop() throws Exception {
+        server.stop();
+    }
+
+    public String url(String path) {
+        return "http://127.0.0.1:" + connector.getLocalPort() + path;
+    }
+
+    public BlockingQueue<String> getRequests() {
+        return requests;
+    }
+
+    /**
+     * @return The content of the resource with the given name, e.g. res/start.mp3.
+     */
+    public static byte[] resource(String name) throws IOException {
+        InputStream content = MediaServer.class.getClassLoader().getResourceAsStream(name);
+        if (content == null) {
+            return null;
+        }
+        try {
+            return IOUtils.toByteArray(content);
+        } finally {
+            content.close();
+        }
+    }
+
+    private class MediaHandler extends AbstractHandler {
+        @Override
+        public void handle(String target, Request baseRequest, HttpServletRequest request,
+                HttpServletResponse response) throws IOException {
+            baseRequest.setHandled(true);
+            requests.add(target);
+            if ("/playlist.m3u".equals(target)) {
+                response.setContentType("audio/x-mpegurl");
+                response.getOutputStream()
+                        .write((url("/res/start.mp3") + "\n").getBytes(StandardCharsets.UTF_8));
+                return;
+            }
+            boolean live = target.startsWith("/live/");
+            byte[] media = (live || target.startsWith("/res/"))
+                    ? resource("res/" + target.substring(target.indexOf('/', 1) + 1)) : null;
+            if (media == null) {
+                response.sendError(HttpServletResponse.SC_NOT_FOUND);
+                return;
+            }
+            response.setContentType("audio/mpeg");
+            if (live) {
+                // commit the response before it is complete, so it has no length
+                response.flushBuffer();
+            } else {
+                response.setContentLength(media.length);
+            }
+            response.getOutputStream().write(media);
+        }
+    }
+}
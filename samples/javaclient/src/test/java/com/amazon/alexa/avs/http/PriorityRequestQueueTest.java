@@ -0,0 +1,114 @@
+/**
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * You may not use this file except in compliance with the License. A copy of the License is located the "LICENSE.txt"
+ * file accompanying this source. This file is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.amazon.alexa.avs.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.amazon.alexa.avs.AVSAPIConstants;
+import com.amazon.alexa.avs.AVSRequest;
+import com.amazon.alexa.avs.RequestListener;
+import com.amazon.alexa.avs.http.AVSClient.Resource;
+import com.amazon.alexa.avs.message.Header;
+import com.amazon.alexa.avs.metrics.Metrics;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Checks that requests the queue will never send are reported to their listeners.
+ */
+public class PriorityRequestQueueTest {
+    private static final String KEY = "AudioPlayer.ProgressReportIntervalElapsed.token";
+
+    private final PriorityRequestQueue queue = new PriorityRequestQueue();
+
+    @Test
+    public void reportsAnErrorForACoalescedRequest() throws Exception {
+        RecordingListener first = new RecordingListener();
+        RecordingListener second = new RecordingListener();
+        AVSRequest latest = request(second);
+
+        assertTrue(queue.offer(request(first), EventClass.PLAYBACK_STATE, KEY));
+        assertTrue(queue.offer(latest, EventClass.PLAYBACK_STATE, KEY));
+
+        assertEquals(1, first.errors.size());
+        assertTrue(second.errors.isEmpty());
+        assertEquals(1, queue.getDepth(EventClass.PLAYBACK_STATE));
+        assertSame(latest, queue.take());
+    }
+
+    @Test
+    public void reportsAnErrorForADroppedRequest() throws Exception {
+        int capacity = EventClass.TELEMETRY.getCapacity();
+        List<RecordingListener> listeners = new ArrayList<>();
+        for (int i = 0; i <= capacity; i++) {
+            RecordingListener listener = new RecordingListener();
+            listeners.add(listener);
+            assertTrue(queue.offer(request(listener), EventClass.TELEMETRY, null));
+        }
+
+        assertEquals(1, listeners.get(0).errors.size());
+        for (RecordingListener listener : listeners.subList(1, listeners.size())) {
+            assertTrue(listener.errors.isEmpty());
+        }
+        assertEquals(capacity, queue.getDepth(EventClass.TELEMETRY));
+    }
+
+    @Test
+    public void neverDropsExceptionEncounteredReports() {
+        assertEquals(EventClass.INTERACTIVE, EventClass.of(new Header(
+                AVSAPIConstants.System.NAMESPACE,
+                AVSAPIConstants.System.Events.ExceptionEncountered.NAME)));
+        assertEquals(EventClass.TELEMETRY, EventClass.of(new Header(
+                AVSAPIConstants.System.NAMESPACE,
+                AVSAPIConstants.System.Events.UserInactivityReport.NAME)));
+
+        int capacity = EventClass.INTERACTIVE.getCapacity();
+        RecordingListener listener = new RecordingListener();
+        for (int i = 0; i < capacity; i++) {
+            assertTrue(queue.offer(request(listener), EventClass.INTERACTIVE, null));
+        }
+
+        assertFalse(queue.offer(request(listener), EventClass.INTERACTIVE, null));
+        assertTrue(listener.errors.isEmpty());
+    }
+
+    @Test
+    public void publishesTheDepthOfEachClass() {
+        queue.offer(request(null), EventClass.ALERTS, null);
+        queue.offer(request(null), EventClass.ALERTS, null);
+
+        assertEquals(Long.valueOf(2),
+                Metrics.getInstance().getGauges().get("requestQueue.alerts.depth"));
+        assertEquals(Long.valueOf(0),
+                Metrics.getInstance().getGauges().get("requestQueue.telemetry.depth"));
+    }
+
+    private static AVSRequest request(RequestListener listener) {
+        return new AVSRequest(Resource.EVENTS, null, null, null, listener);
+    }
+
+    private static class RecordingListener implements RequestListener {
+        private final List<Throwable> errors = new ArrayList<>();
+
+        @Override
+        public void onRequestSuccess() {
+        }
+
+        @Override
+        public void onRequestError(Throwable e) {
+            errors.add(e);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+/**
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * You may not use this file except in compliance with the License. A copy of the License is located the "LICENSE.txt"
+ * file accompanying this source. This file is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.amazon.alexa.avs.http;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.InputStream;
+import java.net.URL;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Prefetches media files from a local media host and reads them back from the attachment server.
+ */
+public class StreamPrefetcherTest {
+    private static final long TIMEOUT_MS = 5000;
+    private static final long MAX_LENGTH = 1024 * 1024;
+
+    private MediaServer origin;
+    private AttachmentServer attachmentServer;
+    private StreamPrefetcher prefetcher;
+
+    @Before
+    public void setUp() throws Exception {
+        origin = new MediaServer();
+        origin.start();
+        attachmentServer = new AttachmentServer();
+        prefetcher = new StreamPrefetcher(attachmentServer, MAX_LENGTH);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        prefetcher.shutdown();
+        attachmentServer.stop();
+        origin.stop();
+    }
+
+    @Test
+    public void servesACopyOfTheMediaFromTheAttachmentServer() throws Exception {
+        String localUrl = prefetch(origin.url("/res/alarm.mp3"));
+
+        assertTrue(localUrl + " is not served locally", attachmentServer.isServed(localUrl));
+        attachmentServer.whenSpooled(localUrl).get(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        assertArrayEquals(MediaServer.resource("res/alarm.mp3"), read(localUrl));
+        assertEquals(1, origin.getRequests().size());
+    }
+
+    @Test
+    public void leavesPlaylistsLiveStreamsAndErrorsToThePlayer() throws Exception {
+        assertNull(prefetch(origin.url("/playlist.m3u")));
+        assertNull(prefetch(origin.url("/live/alarm.mp3")));
+        assertNull(prefetch(origin.url("/res/missing.mp3")));
+        assertNull(prefetch(getClass().getClassLoader().getResource("res/alarm.mp3").toString()));
+    }
+
+    @Test
+    public void leavesMediaOverTheLimitToThePlayer() throws Exception {
+        StreamPrefetcher limited = new StreamPrefetcher(attachmentServer,
+                MediaServer.resource("res/alarm.mp3").length - 1);
+        try {
+            assertNull(limited.prefetch(origin.url("/res/alarm.mp3")).get(TIMEOUT_MS,
+                    TimeUnit.MILLISECONDS));
+        } finally {
+            limited.shutdown();
+        }
+    }
+
+    private String prefetch(String url) throws Exception {
+        return prefetcher.prefetch(url).get(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+    }
+
+    private static byte[] read(String url) throws Exception {
+        InputStream content = new URL(url).openStream();
+        try {
+            return IOUtils.toByteArray(content);
+        } finally {
+            content.close();
+        }
+    }
+}